@@ -30,9 +30,30 @@ android {
         targetCompatibility = JavaVersion.VERSION_1_8
     }
 
+    sourceSets {
+        // Benchmarks time the pipeline and print their figures, so CI never runs them:
+        // ./gradlew testDebugUnitTest -Pbenchmark --tests '*Benchmark'
+        if (project.hasProperty("benchmark")) {
+            getByName("test").java.srcDir("src/benchmark/java")
+        }
+    }
+
     buildFeatures {
         viewBinding = true
     }
+
+    testOptions {
+        unitTests {
+            // Let pipeline classes that touch Log and friends run in local unit tests
+            isReturnDefaultValues = true
+            all { test ->
+                // Forward -Dfalldetection.* options, e.g. benchmark sizes, to the test JVM
+                System.getProperties().stringPropertyNames()
+                    .filter { it.startsWith("falldetection.") }
+                    .forEach { test.systemProperty(it, System.getProperty(it)) }
+            }
+        }
+    }
 }
 
 dependencies {
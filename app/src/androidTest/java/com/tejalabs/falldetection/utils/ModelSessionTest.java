@@ -0,0 +1,71 @@
+package com.tejalabs.falldetection.utils;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs single inputs and partial batches of float and int8 models through a real interpreter
+ */
+@RunWith(AndroidJUnit4.class)
+public class ModelSessionTest {
+
+    @Test
+    public void runsSingleInputsAndPartialBatches() throws Exception {
+        try (ModelSession session = new ModelSession(new Interpreter(TestModels.load(TestModels.FLOAT)), 8)) {
+            assertEquals(150, session.getInputSize());
+            assertEquals(2, session.getOutputSize());
+
+            fill(session, 0, 0.25f);
+            float[] output = session.run();
+            assertEquals(0.25f, output[1], 0.0001f);
+            assertEquals(0.75f, output[0], 0.0001f);
+
+            // Each batch entry gets its own output, whatever size the tensor had before
+            for (int i = 0; i < 3; i++) {
+                fill(session, i, 0.1f * (i + 1));
+            }
+            output = session.run(3);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(0.1f * (i + 1), output[i * session.getOutputSize() + 1], 0.0001f);
+            }
+
+            // And back to a single input
+            fill(session, 0, 0.5f);
+            assertEquals(0.5f, session.run()[1], 0.0001f);
+            assertEquals(3, session.getLatency().getCount());
+        }
+    }
+
+    @Test
+    public void quantizesInputsAndDequantizesOutputs() throws Exception {
+        try (ModelSession session = new ModelSession(new Interpreter(TestModels.load(TestModels.INT8)), 4)) {
+            assertEquals(DataType.INT8, session.getInputSpec().getDataType());
+            assertEquals(1.0f / 128, session.getInputSpec().getScale(), 0.0f);
+            assertEquals(-128, session.getOutputSpec().getZeroPoint());
+            assertEquals(150, session.getInputSize());
+            assertEquals(4 * 150, session.getInput().length);
+
+            fill(session, 0, 0.25f);
+            fill(session, 1, 0.75f);
+            float[] output = session.run(2);
+            // One output step is 1/256
+            assertEquals(0.75f, output[0], 0.008f);
+            assertEquals(0.25f, output[1], 0.008f);
+            assertEquals(0.25f, output[2], 0.008f);
+            assertEquals(0.75f, output[3], 0.008f);
+        }
+    }
+
+    private static void fill(ModelSession session, int entry, float value) {
+        float[] input = session.getInput();
+        for (int i = 0; i < session.getInputSize(); i++) {
+            input[entry * session.getInputSize() + i] = value;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.tejalabs.falldetection.utils.TinyMLProcessor.FallDetectionResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Installs and swaps the processor over to models, and rejects broken ones
+ */
+@RunWith(AndroidJUnit4.class)
+public class ModelSwapTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File(InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir(),
+            "models-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void processorSwapsBetweenWindowsAndRejectsCorruptModels() throws Exception {
+        ModelRegistry registry = new ModelRegistry(directory);
+        TinyMLProcessor processor = new TinyMLProcessor(SharedPreferencesManager.DEFAULT_SENSITIVITY_LEVEL, registry);
+        assertEquals(-1, processor.getActiveModelVersion());
+
+        registry.install(TestModels.open(TestModels.FLOAT), 1, null, "test model");
+        Outcome outcome = new Outcome();
+        processor.swapModel(1, outcome);
+        assertTrue(outcome.await());
+        assertEquals(1, outcome.swapped);
+        assertEquals(1, registry.getActiveVersion());
+
+        // The analysis thread picks the model up with its next window, and runs it
+        assertEquals(-1, processor.getActiveModelVersion());
+        FallDetectionResult result = processor.processSensorData(stillWindow());
+        assertEquals(1, processor.getActiveModelVersion());
+        assertTrue(processor.isModelLoaded());
+        assertEquals(9.81f / 20.0f / 3.0f, result.confidence, 0.001f);
+        result.recycle();
+
+        // A model corrupted on disk is rejected and the running one kept
+        ModelRegistry.ModelVersion second = registry.install(TestModels.open(TestModels.FLOAT), 2, null,
+            "test model");
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "model-v2.tflite"), "rw")) {
+            file.write(0xff);
+        }
+        outcome = new Outcome();
+        processor.swapModel(second.getVersion(), outcome);
+        assertTrue(outcome.await());
+        assertEquals(2, outcome.rejected);
+        assertNull(registry.getVersion(2));
+
+        // So is a file that is not a model at all
+        install(registry, 3, junk());
+        outcome = new Outcome();
+        processor.swapModel(3, outcome);
+        assertTrue(outcome.await());
+        assertEquals(3, outcome.rejected);
+        assertNull(registry.getVersion(3));
+
+        processor.processSensorData(null).recycle();
+        assertEquals(1, processor.getActiveModelVersion());
+        assertEquals(1, registry.getActiveVersion());
+        processor.cleanup();
+    }
+
+    @Test
+    public void cleanupWhileAnalysing() throws Exception {
+        ModelRegistry registry = new ModelRegistry(directory);
+        TinyMLProcessor processor = new TinyMLProcessor(SharedPreferencesManager.DEFAULT_SENSITIVITY_LEVEL, registry);
+        registry.install(TestModels.open(TestModels.FLOAT), 1, null, "test model");
+        Outcome outcome = new Outcome();
+        processor.swapModel(1, outcome);
+        assertTrue(outcome.await());
+
+        // An analysis thread keeps running windows while the processor is cleaned up
+        SensorDataCollector.SensorDataWindow window = stillWindow();
+        CountDownLatch running = new CountDownLatch(1);
+        Throwable[] failure = new Throwable[1];
+        Thread analysis = new Thread(() -> {
+            try {
+                for (int i = 0; i < 2000; i++) {
+                    processor.processSensorData(window).recycle();
+                    running.countDown();
+                }
+            } catch (Throwable t) {
+                failure[0] = t;
+            }
+        });
+        analysis.start();
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        processor.cleanup();
+        analysis.join();
+
+        assertNull(failure[0]);
+        assertFalse(processor.isModelLoaded());
+        FallDetectionResult result = processor.processSensorData(window);
+        assertNotNull(result);
+        result.recycle();
+    }
+
+    @Test
+    public void installsModelsWithTheirInputSpec() throws Exception {
+        ModelRegistry registry = new ModelRegistry(directory);
+        TinyMLProcessor processor = new TinyMLProcessor(SharedPreferencesManager.DEFAULT_SENSITIVITY_LEVEL, registry);
+
+        // The test model reads 150 values: here 25 samples of accelerometer and gyroscope
+        ModelInputSpec spec = new ModelInputSpec.Builder(25)
+            .add(ModelInputSpec.Channel.ACCELEROMETER, 20.0f)
+            .add(ModelInputSpec.Channel.GYROSCOPE, 10.0f)
+            .build();
+        File download = new File(directory, "download.tflite");
+        try (FileOutputStream output = new FileOutputStream(download)) {
+            output.write(TestModels.bytes(TestModels.FLOAT));
+        }
+
+        Outcome outcome = new Outcome();
+        processor.installModel(download, 1, null, spec, outcome);
+        assertTrue(outcome.await());
+        assertEquals(1, outcome.swapped);
+        assertEquals(spec.toString(), processor.getInputSpec().toString());
+        assertArrayEquals(new int[]{Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_GYROSCOPE}, processor.getSensorTypes());
+
+        // The spec is kept with the model across restarts
+        assertEquals(spec.toString(), new ModelRegistry(directory).getVersion(1).getInputSpec().toString());
+        processor.cleanup();
+    }
+
+    private static class Outcome implements TinyMLProcessor.ModelSwapListener {
+        private final CountDownLatch done = new CountDownLatch(1);
+        int swapped = -1;
+        int rejected = -1;
+
+        @Override
+        public void onModelSwapped(int version) {
+            swapped = version;
+            done.countDown();
+        }
+
+        @Override
+        public void onModelRejected(int version, String reason) {
+            rejected = version;
+            done.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            // Calibrating a new model benchmarks every interpreter configuration first
+            return done.await(60, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void install(ModelRegistry registry, int version, byte[] contents) throws IOException {
+        registry.install(new ByteArrayInputStream(contents), version, null, "test model");
+    }
+
+    private static byte[] junk() {
+        byte[] contents = new byte[1024];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = (byte) (i * 31);
+        }
+        return contents;
+    }
+
+    /**
+     * 50 samples of a phone lying flat
+     */
+    private static SensorDataCollector.SensorDataWindow stillWindow() {
+        SensorRingBuffer accelerometer = new SensorRingBuffer(64);
+        SensorRingBuffer orientation = new SensorRingBuffer(64);
+        for (int i = 0; i < 50; i++) {
+            accelerometer.append(i * 20000000L, 0.0f, 0.0f, 9.81f);
+            orientation.append(i * 20000000L, 0.0f, 0.0f, 1.0f);
+        }
+        SensorDataCollector.SensorDataWindow window = new SensorDataCollector.SensorDataWindow(
+            accelerometer.newSlice(), new SensorRingBuffer(64).newSlice(), new SensorRingBuffer(64).newSlice(),
+            orientation.newSlice(), new float[SensorDataCollector.SensorDataWindow.FEATURE_COUNT]);
+        window.accelerometer.setEndingAt(50, 50);
+        window.orientation.setEndingAt(50, 50);
+        return window;
+    }
+}
@@ -0,0 +1,49 @@
+package com.tejalabs.falldetection.utils;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Tiny models in the test assets, written by src/androidTest/tools/make_test_models.py
+ * Each is one fully connected layer from 50 accelerometer samples to (no fall, fall)
+ * with fall = mean of the inputs and no fall = 1 - mean.
+ */
+final class TestModels {
+
+    static final String FLOAT = "test_model_float.tflite";
+    static final String INT8 = "test_model_int8.tflite";
+
+    private TestModels() {
+    }
+
+    static InputStream open(String name) throws IOException {
+        return InstrumentationRegistry.getInstrumentation().getContext().getAssets().open(name);
+    }
+
+    static byte[] bytes(String name) throws IOException {
+        try (InputStream input = open(name)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+
+    /**
+     * Model in a direct buffer, as the interpreter wants it
+     */
+    static ByteBuffer load(String name) throws IOException {
+        byte[] contents = bytes(name);
+        ByteBuffer model = ByteBuffer.allocateDirect(contents.length).order(ByteOrder.nativeOrder());
+        model.put(contents).rewind();
+        return model;
+    }
+}
@@ -0,0 +1,202 @@
+#!/usr/bin/env python3
+"""
+Writes the tiny TFLite models the instrumented tests load from src/androidTest/assets.
+
+Each model is one FULLY_CONNECTED layer from a [1, 150] input (50 accelerometer
+samples) to a [1, 2] output of (no fall, fall) with output[1] = mean(input) and
+output[0] = 1 - mean(input), so tests can check what came out of which batch entry.
+
+    test_model_float.tflite  float32 input and output
+    test_model_int8.tflite   int8 input (scale 1/128), int8 output (scale 1/256, zero point -128)
+
+Needs nothing beyond the standard library: the flatbuffer is laid out by hand
+following the TFLite schema (schema_v3). Run from this directory:
+
+    python3 make_test_models.py
+"""
+
+import struct
+
+INPUT_SIZE = 150
+OUTPUT_SIZE = 2
+
+FLOAT32 = 0
+INT32 = 2
+INT8 = 9
+FULLY_CONNECTED = 9
+FULLY_CONNECTED_OPTIONS = 8
+
+SIZES = {'u8': 1, 'i8': 1, 'u16': 2, 'i32': 4, 'u32': 4, 'f32': 4, 'i64': 8, 'obj': 4}
+FORMATS = {'u8': '<B', 'i8': '<b', 'u16': '<H', 'i32': '<i', 'u32': '<I', 'f32': '<f', 'i64': '<q'}
+
+
+class Table:
+    def __init__(self, **fields):
+        # field id -> (kind, value)
+        self.fields = fields
+
+
+class Vector:
+    def __init__(self, kind, items, align=1):
+        self.kind = kind
+        self.items = items
+        self.align = align
+
+
+class String:
+    def __init__(self, text):
+        self.text = text
+
+
+class Builder:
+    """Writes objects front to back, children after their parent, patching offsets"""
+
+    def __init__(self):
+        self.buf = bytearray()
+
+    def pad(self, alignment, ahead=0):
+        while (len(self.buf) + ahead) % alignment:
+            self.buf.append(0)
+
+    def patch_offset(self, at, target):
+        struct.pack_into('<I', self.buf, at, target - at)
+
+    def write(self, obj):
+        if isinstance(obj, Table):
+            return self.write_table(obj)
+        if isinstance(obj, Vector):
+            return self.write_vector(obj)
+        return self.write_string(obj)
+
+    def write_table(self, table):
+        ids = sorted(int(key[1:]) for key in table.fields)
+        field_count = ids[-1] + 1 if ids else 0
+        # Inline layout after the vtable offset, largest fields first
+        layout = []
+        position = 4
+        for field_id in sorted(ids, key=lambda i: -SIZES[table.fields['f%d' % i][0]]):
+            size = SIZES[table.fields['f%d' % field_id][0]]
+            position = (position + size - 1) // size * size
+            layout.append((field_id, position))
+            position += size
+        table_size = (position + 3) // 4 * 4
+        vtable_size = 4 + 2 * field_count
+
+        self.pad(4, vtable_size)
+        vtable_position = len(self.buf)
+        offsets = dict(layout)
+        self.buf += struct.pack('<HH', vtable_size, table_size)
+        for field_id in range(field_count):
+            self.buf += struct.pack('<H', offsets.get(field_id, 0))
+
+        table_position = len(self.buf)
+        self.buf += bytes(table_size)
+        struct.pack_into('<i', self.buf, table_position, table_position - vtable_position)
+        children = []
+        for field_id, offset in layout:
+            kind, value = table.fields['f%d' % field_id]
+            if kind == 'obj':
+                children.append((table_position + offset, value))
+            else:
+                struct.pack_into(FORMATS[kind], self.buf, table_position + offset, value)
+        for at, child in children:
+            self.patch_offset(at, self.write(child))
+        return table_position
+
+    def write_vector(self, vector):
+        alignment = max(4, SIZES[vector.kind], vector.align)
+        self.pad(alignment, 4)
+        position = len(self.buf)
+        self.buf += struct.pack('<I', len(vector.items))
+        if vector.kind != 'obj':
+            for item in vector.items:
+                self.buf += struct.pack(FORMATS[vector.kind], item)
+            return position
+        slots = []
+        for _ in vector.items:
+            slots.append(len(self.buf))
+            self.buf += bytes(4)
+        for at, child in zip(slots, vector.items):
+            self.patch_offset(at, self.write(child))
+        return position
+
+    def write_string(self, string):
+        self.pad(4)
+        position = len(self.buf)
+        data = string.text.encode('utf-8')
+        self.buf += struct.pack('<I', len(data)) + data + b'\0'
+        return position
+
+    def finish(self, root):
+        self.buf += bytes(4) + b'TFL3'
+        self.patch_offset(0, self.write(root))
+        self.pad(16)
+        return bytes(self.buf)
+
+
+def data_buffer(fmt, values):
+    data = b''.join(struct.pack(fmt, value) for value in values)
+    return Table(f0=('obj', Vector('u8', list(data), align=16)))
+
+
+def quantization(scale, zero_point):
+    return Table(f2=('obj', Vector('f32', [scale])), f3=('obj', Vector('i64', [zero_point])))
+
+
+def tensor(name, shape, tensor_type, buffer, quantized=None):
+    fields = dict(f0=('obj', Vector('i32', shape)), f1=('i8', tensor_type), f2=('u32', buffer),
+                  f3=('obj', String(name)))
+    if quantized is not None:
+        fields['f4'] = ('obj', quantization(*quantized))
+    return Table(**fields)
+
+
+def model(tensor_type, weights, bias, quantization_of, description):
+    bias_type = FLOAT32 if tensor_type == FLOAT32 else INT32
+    tensors = [
+        tensor('input', [1, INPUT_SIZE], tensor_type, 0, quantization_of.get('input')),
+        tensor('weights', [OUTPUT_SIZE, INPUT_SIZE], tensor_type, 1, quantization_of.get('weights')),
+        tensor('bias', [OUTPUT_SIZE], bias_type, 2, quantization_of.get('bias')),
+        tensor('output', [1, OUTPUT_SIZE], tensor_type, 0, quantization_of.get('output')),
+    ]
+    operator = Table(f0=('u32', 0), f1=('obj', Vector('i32', [0, 1, 2])), f2=('obj', Vector('i32', [3])),
+                     f3=('u8', FULLY_CONNECTED_OPTIONS), f4=('obj', Table(f0=('i8', 0))))
+    subgraph = Table(f0=('obj', Vector('obj', tensors)), f1=('obj', Vector('i32', [0])),
+                     f2=('obj', Vector('i32', [3])), f3=('obj', Vector('obj', [operator])),
+                     f4=('obj', String('main')))
+    # int8 kernels of FULLY_CONNECTED are version 4 and up
+    opcode = Table(f0=('i8', FULLY_CONNECTED), f2=('i32', 1 if tensor_type == FLOAT32 else 4),
+                   f3=('i32', FULLY_CONNECTED))
+    buffers = [Table(), weights, bias]
+    root = Table(f0=('u32', 3), f1=('obj', Vector('obj', [opcode])), f2=('obj', Vector('obj', [subgraph])),
+                 f3=('obj', String(description)), f4=('obj', Vector('obj', buffers)))
+    return Builder().finish(root)
+
+
+def float_model():
+    weights = [-1.0 / INPUT_SIZE] * INPUT_SIZE + [1.0 / INPUT_SIZE] * INPUT_SIZE
+    return model(FLOAT32, data_buffer('<f', weights), data_buffer('<f', [1.0, 0.0]), {},
+                 'Test model: mean of the input')
+
+
+def int8_model():
+    input_scale = 1.0 / 128
+    # ±127 stands for ±1/150
+    weight_scale = 1.0 / (INPUT_SIZE * 127)
+    bias_scale = input_scale * weight_scale
+    weights = [-127] * INPUT_SIZE + [127] * INPUT_SIZE
+    quantization_of = {
+        'input': (input_scale, 0),
+        'weights': (weight_scale, 0),
+        'bias': (bias_scale, 0),
+        'output': (1.0 / 256, -128),
+    }
+    return model(INT8, data_buffer('<b', weights), data_buffer('<i', [round(1.0 / bias_scale), 0]),
+                 quantization_of, 'Test model: mean of the int8 input')
+
+
+if __name__ == '__main__':
+    for name, contents in (('test_model_float.tflite', float_model()), ('test_model_int8.tflite', int8_model())):
+        with open('../assets/' + name, 'wb') as out:
+            out.write(contents)
+        print(name, len(contents), 'bytes')
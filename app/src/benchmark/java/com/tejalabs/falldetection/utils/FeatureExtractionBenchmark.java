@@ -0,0 +1,119 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times the legacy boxed-list feature extraction against the streamed features and
+ * {@link TinyMLProcessor#extractMotionFeatures} on windows of 50, 250 and 1000
+ * samples. Not part of the unit tests; run it with
+ * {@code ./gradlew testDebugUnitTest -Pbenchmark --tests '*Benchmark'}.
+ */
+public class FeatureExtractionBenchmark {
+
+    private static final long PERIOD_NS = 20000000L; // 50Hz
+    private static final int WINDOWS = 200;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    private float sink;
+
+    @Test
+    public void legacyAgainstStreamed() {
+        for (int size : new int[]{50, 250, 1000}) {
+            int hop = size / 2;
+            int samples = size + hop * (WINDOWS - 1);
+            float[] x = new float[samples];
+            float[] y = new float[samples];
+            float[] z = new float[samples];
+            walking(new Random(size), x, y, z);
+
+            long legacyNs = Long.MAX_VALUE;
+            long streamedNs = Long.MAX_VALUE;
+            for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+                long legacy = legacy(x, y, z, size, hop);
+                long streamed = streamed(x, y, z, size, hop);
+                if (round >= WARMUP_ROUNDS) {
+                    legacyNs = Math.min(legacyNs, legacy);
+                    streamedNs = Math.min(streamedNs, streamed);
+                }
+            }
+
+            // The streamed figure covers everything per hop: orientation, features, cascade
+            // bookkeeping and window hand-over, not just the extraction
+            System.out.println(String.format("Window of %d samples (hop %d): legacy %d ns/window, "
+                    + "streamed %d ns/window, %.1fx",
+                size, hop, legacyNs / WINDOWS, streamedNs / WINDOWS, (double) legacyNs / streamedNs));
+        }
+        assertFalse(Float.isNaN(sink));
+    }
+
+    /**
+     * Copies every window into boxed samples and extracts its features the old way
+     */
+    private long legacy(float[] x, float[] y, float[] z, int size, int hop) {
+        long start = System.nanoTime();
+        for (int w = 0; w < WINDOWS; w++) {
+            List<Float[]> window = LegacyFeatureExtractor.copyWindow(x, y, z, w * hop, size);
+            sink += LegacyFeatureExtractor.extractMotionFeatures(window)[3];
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Feeds the samples through the collector and reads each window's features the way
+     * the processor does
+     */
+    private long streamed(float[] x, float[] y, float[] z, int size, int hop) {
+        final TinyMLProcessor processor = new TinyMLProcessor(SharedPreferencesManager.DEFAULT_SENSITIVITY_LEVEL);
+        final TinyMLProcessor.MotionFeatures features = new TinyMLProcessor.MotionFeatures();
+        final int[] windows = new int[1];
+
+        SensorDataCollector collector = new SensorDataCollector(new ManualSensorSource());
+        collector.setWindowSpec(new WindowSpec("benchmark", size, hop));
+        collector.setCascadeEnabled(false);
+        collector.setAdaptiveSamplingEnabled(false);
+        collector.setAnalysisExecutor(Runnable::run);
+        collector.setDataListener(new SensorDataCollector.SensorDataListener() {
+            @Override
+            public void onDataProcessed(SensorDataCollector.SensorDataWindow window) {
+                sink += processor.extractMotionFeatures(window, features).standardDeviation;
+                windows[0]++;
+            }
+
+            @Override
+            public void onFallDetected(float confidence) {
+            }
+        });
+        assertTrue(collector.startCollection());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < x.length; i++) {
+            collector.onSensorSample(Sensor.TYPE_ACCELEROMETER, i * PERIOD_NS, x[i], y[i], z[i]);
+            collector.onBatchComplete();
+        }
+        long elapsed = System.nanoTime() - start;
+        collector.stopCollection();
+
+        assertEquals(WINDOWS, windows[0]);
+        return elapsed;
+    }
+
+    /**
+     * Walking-like motion with noise
+     */
+    private static void walking(Random random, float[] x, float[] y, float[] z) {
+        for (int i = 0; i < x.length; i++) {
+            float phase = (float) (2 * Math.PI * 1.8 * i / 50.0);
+            x[i] = 0.8f * (float) Math.sin(phase) + 0.3f * (float) random.nextGaussian();
+            y[i] = 0.3f * (float) random.nextGaussian();
+            z[i] = 9.81f + 2.5f * (float) Math.sin(2 * phase) + 0.3f * (float) random.nextGaussian();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.tejalabs.falldetection.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The feature extraction the app shipped before the collector streamed its window
+ * features: every window is copied into boxed samples and walked once per feature.
+ * Kept only as the baseline of {@link FeatureExtractionBenchmark}.
+ */
+class LegacyFeatureExtractor {
+
+    /**
+     * Window as the collector used to hand it over, one boxed x, y, z triple per sample
+     */
+    static List<Float[]> copyWindow(float[] x, float[] y, float[] z, int from, int size) {
+        List<Float[]> accelerometerData = new ArrayList<>();
+        for (int i = from; i < from + size; i++) {
+            accelerometerData.add(new Float[]{x[i], y[i], z[i]});
+        }
+        return accelerometerData;
+    }
+
+    /**
+     * Max, min, mean and standard deviation of the magnitude, largest jerk,
+     * orientation change, dominant frequency, mean vertical and mean horizontal
+     * acceleration
+     */
+    static float[] extractMotionFeatures(List<Float[]> accelerometerData) {
+        List<Float> magnitudes = new ArrayList<>();
+        List<Float> verticalAccel = new ArrayList<>();
+        List<Float> horizontalMagnitudes = new ArrayList<>();
+
+        float totalMagnitude = 0.0f;
+        float maxMagnitude = 0.0f;
+        float minMagnitude = Float.MAX_VALUE;
+
+        for (Float[] sample : accelerometerData) {
+            float magnitude = (float) Math.sqrt(
+                sample[0] * sample[0] +
+                sample[1] * sample[1] +
+                sample[2] * sample[2]
+            );
+
+            float horizontalMag = (float) Math.sqrt(sample[0] * sample[0] + sample[1] * sample[1]);
+
+            magnitudes.add(magnitude);
+            verticalAccel.add(Math.abs(sample[2]));
+            horizontalMagnitudes.add(horizontalMag);
+
+            maxMagnitude = Math.max(maxMagnitude, magnitude);
+            minMagnitude = Math.min(minMagnitude, magnitude);
+            totalMagnitude += magnitude;
+        }
+
+        float avgMagnitude = totalMagnitude / magnitudes.size();
+        float standardDeviation = (float) Math.sqrt(calculateVariance(magnitudes, avgMagnitude));
+
+        return new float[]{
+            maxMagnitude, minMagnitude, avgMagnitude, standardDeviation,
+            calculateMaxJerk(magnitudes), calculateOrientationChange(accelerometerData),
+            calculateDominantFrequency(magnitudes),
+            calculateMean(verticalAccel), calculateMean(horizontalMagnitudes)
+        };
+    }
+
+    private static float calculateVariance(List<Float> values, float mean) {
+        float sum = 0.0f;
+        for (float value : values) {
+            float diff = value - mean;
+            sum += diff * diff;
+        }
+        return sum / values.size();
+    }
+
+    private static float calculateMaxJerk(List<Float> magnitudes) {
+        if (magnitudes.size() < 2) return 0.0f;
+
+        float maxJerk = 0.0f;
+        for (int i = 1; i < magnitudes.size(); i++) {
+            float jerk = Math.abs(magnitudes.get(i) - magnitudes.get(i - 1));
+            maxJerk = Math.max(maxJerk, jerk);
+        }
+        return maxJerk;
+    }
+
+    private static float calculateOrientationChange(List<Float[]> accelerometerData) {
+        if (accelerometerData.size() < 2) return 0.0f;
+
+        Float[] first = accelerometerData.get(0);
+        Float[] last = accelerometerData.get(accelerometerData.size() - 1);
+
+        float dot = first[0] * last[0] + first[1] * last[1] + first[2] * last[2];
+        float mag1 = (float) Math.sqrt(first[0] * first[0] + first[1] * first[1] + first[2] * first[2]);
+        float mag2 = (float) Math.sqrt(last[0] * last[0] + last[1] * last[1] + last[2] * last[2]);
+
+        if (mag1 == 0 || mag2 == 0) return 0.0f;
+
+        float cosAngle = dot / (mag1 * mag2);
+        cosAngle = Math.max(-1.0f, Math.min(1.0f, cosAngle));
+
+        return (float) Math.toDegrees(Math.acos(cosAngle));
+    }
+
+    private static float calculateDominantFrequency(List<Float> magnitudes) {
+        if (magnitudes.size() < 4) return 0.0f;
+
+        // Simple peak counting approach
+        int peaks = 0;
+        for (int i = 1; i < magnitudes.size() - 1; i++) {
+            if (magnitudes.get(i) > magnitudes.get(i - 1) &&
+                magnitudes.get(i) > magnitudes.get(i + 1)) {
+                peaks++;
+            }
+        }
+
+        float samplingRate = 50.0f;
+        float windowDuration = magnitudes.size() / samplingRate;
+        return peaks / windowDuration;
+    }
+
+    private static float calculateMean(List<Float> values) {
+        if (values.isEmpty()) return 0.0f;
+
+        float sum = 0.0f;
+        for (float value : values) {
+            sum += value;
+        }
+        return sum / values.size();
+    }
+}
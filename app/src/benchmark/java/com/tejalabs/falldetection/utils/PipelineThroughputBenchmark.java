@@ -0,0 +1,62 @@
+package com.tejalabs.falldetection.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times synthetic daily activities with occasional falls through the collector and
+ * the rule-based detector, every window analysed. Defaults to 20000 windows, pass a
+ * count for a longer run:
+ * {@code ./gradlew testDebugUnitTest -Pbenchmark --tests '*Benchmark' -Dfalldetection.benchmark.windows=2000000}
+ */
+public class PipelineThroughputBenchmark {
+
+    @Test
+    public void throughput() throws Exception {
+        long windows = Long.getLong("falldetection.benchmark.windows", 20000);
+        SyntheticTraceGenerator generator = new SyntheticTraceGenerator.Builder()
+            .randomActivities(0.05)
+            .noise(0.2f)
+            .seed(5)
+            .build();
+        // 25 new samples (0.5s) per window at a fixed 50Hz
+        SyntheticSensorSource source = new SyntheticSensorSource(generator, (windows * 500 + 1000) * 1000000L,
+            PlaybackSensorSource.Speed.AS_FAST_AS_POSSIBLE);
+
+        final TinyMLProcessor processor = new TinyMLProcessor(SharedPreferencesManager.DEFAULT_SENSITIVITY_LEVEL);
+        final long[] analysed = new long[1];
+        final long[] detections = new long[1];
+        SensorDataCollector collector = new SensorDataCollector(source);
+        collector.setDataListener(new SensorDataCollector.SensorDataListener() {
+            @Override
+            public void onDataProcessed(SensorDataCollector.SensorDataWindow dataWindow) {
+                analysed[0]++;
+                TinyMLProcessor.FallDetectionResult result = processor.processSensorData(dataWindow);
+                if (result.isFall) {
+                    detections[0]++;
+                }
+                result.recycle();
+            }
+
+            @Override
+            public void onFallDetected(float confidence) {
+            }
+        });
+        collector.setAnalysisExecutor(Runnable::run);
+        collector.setCascadeEnabled(false);
+        collector.setAdaptiveSamplingEnabled(false);
+
+        long start = System.nanoTime();
+        assertTrue(collector.startCollection());
+        assertTrue(source.awaitFinished(60 * 60 * 1000));
+        long elapsedNs = System.nanoTime() - start;
+        collector.stopCollection();
+
+        System.out.println(String.format("Pipeline throughput: %d windows in %d ms (%.0f windows/s), "
+                + "falls generated %d, fall windows %d",
+            analysed[0], elapsedNs / 1000000, analysed[0] * 1e9 / elapsedNs,
+            generator.getFallCount(), detections[0]));
+        assertTrue(analysed[0] >= windows);
+    }
+}
@@ -5,24 +5,33 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.os.Binder;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.PowerManager;
 import android.util.Log;
 
 import com.tejalabs.falldetection.utils.DataLogger;
 import com.tejalabs.falldetection.utils.EmergencyManager;
+import com.tejalabs.falldetection.utils.FallConfirmationStage;
+import com.tejalabs.falldetection.utils.ModelInputSpec;
 import com.tejalabs.falldetection.utils.NotificationHelper;
 import com.tejalabs.falldetection.utils.SensorDataCollector;
+import com.tejalabs.falldetection.utils.SensorHealthMonitor;
 import com.tejalabs.falldetection.utils.SharedPreferencesManager;
 import com.tejalabs.falldetection.utils.TinyMLProcessor;
+import com.tejalabs.falldetection.utils.WakeLockTracker;
+
+import java.io.File;
 
 /**
  * Foreground service for continuous fall detection monitoring
  * Handles sensor data collection, ML processing, and emergency response
  */
 public class FallDetectionService extends Service implements
-    SensorDataCollector.SensorDataListener,
+    SensorDataCollector.BatchDataListener,
     EmergencyManager.EmergencyListener {
 
     private static final String TAG = "FallDetectionService";
@@ -34,7 +43,7 @@ public class FallDetectionService extends Service implements
     public static final String ACTION_ACTIVATE_EMERGENCY = "com.tejalabs.falldetection.ACTIVATE_EMERGENCY";
 
     // Service state
-    private boolean isMonitoring = false;
+    private volatile boolean isMonitoring = false;
     private boolean isServiceRunning = false;
 
     // Core components
@@ -45,10 +54,35 @@ public class FallDetectionService extends Service implements
     private SharedPreferencesManager prefsManager;
     private DataLogger dataLogger;
 
+    // Candidate falls wait here for stillness and posture to confirm them (analysis
+    // thread), or for the deadline if the windows stop coming (main thread)
+    private volatile FallConfirmationStage fallConfirmation = new FallConfirmationStage();
+    private volatile SensorDataCollector.SensorDataWindow pendingFallData;
+    private final Runnable confirmationDeadlineTask = this::checkConfirmationDeadline;
+
+    // Results of a window batch (analysis thread)
+    private final TinyMLProcessor.FallDetectionResult[] batchResults =
+        new TinyMLProcessor.FallDetectionResult[SensorDataCollector.MAX_ANALYSIS_BATCH];
+
+    // Sensor delivery is checked periodically while monitoring (main thread)
+    private static final long SENSOR_HEALTH_CHECK_INTERVAL_MS = 10000;
+    private final Runnable sensorHealthCheckTask = this::checkSensorHealth;
+    private SensorHealthMonitor.Status sensorHealthStatus = SensorHealthMonitor.Status.OK;
+
     // System components
-    private PowerManager.WakeLock wakeLock;
+    private WakeLockTracker serviceWakeLock;
+    private WakeLockTracker analysisWakeLock;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private BroadcastReceiver emergencyCancelReceiver;
 
+    // The cascade trigger follows the sensitivity setting while monitoring (main thread)
+    private final SharedPreferences.OnSharedPreferenceChangeListener preferenceListener =
+        (preferences, key) -> {
+            if (SharedPreferencesManager.KEY_SENSITIVITY_LEVEL.equals(key) && mlProcessor != null) {
+                applyTriggerThresholds();
+            }
+        };
+
     // Service binder for UI communication
     private final IBinder binder = new FallDetectionBinder();
 
@@ -78,6 +112,7 @@ public class FallDetectionService extends Service implements
 
         // Register broadcast receivers
         registerReceivers();
+        prefsManager.registerChangeListener(preferenceListener);
 
         // Acquire wake lock
         acquireWakeLock();
@@ -144,6 +179,7 @@ public class FallDetectionService extends Service implements
 
         // Unregister receivers
         unregisterReceivers();
+        prefsManager.unregisterChangeListener(preferenceListener);
 
         // Release wake lock
         releaseWakeLock();
@@ -169,8 +205,10 @@ public class FallDetectionService extends Service implements
 
             sensorCollector = new SensorDataCollector(this);
             sensorCollector.setDataListener(this);
+            sensorCollector.addWindowListener(FallConfirmationStage.WINDOW, this::onConfirmationWindow);
 
             mlProcessor = new TinyMLProcessor(this);
+            sensorCollector.setRequiredSensors(mlProcessor.getSensorTypes());
 
             emergencyManager = new EmergencyManager(this);
             emergencyManager.setEmergencyListener(this);
@@ -253,25 +291,149 @@ public class FallDetectionService extends Service implements
     private void acquireWakeLock() {
         PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
         if (powerManager != null) {
-            wakeLock = powerManager.newWakeLock(
-                PowerManager.PARTIAL_WAKE_LOCK,
-                "FallDetection::ServiceWakeLock"
-            );
-            wakeLock.acquire(10*60*1000L /*10 minutes*/);
+            serviceWakeLock = new WakeLockTracker(powerManager, "FallDetection::ServiceWakeLock");
+            analysisWakeLock = new WakeLockTracker(powerManager, "FallDetection::AnalysisWakeLock");
+            updateServiceWakeLock();
+        }
+    }
+
+    /**
+     * Hold the permanent wake lock while monitoring, unless the sensor pipeline runs in
+     * low-power mode, where wake-up sensors wake the CPU and analysis holds its own
+     * short wake lock. The permanent lock is held without a timeout: a timed acquire
+     * silently stopped keeping the CPU awake after 10 minutes.
+     */
+    private void updateServiceWakeLock() {
+        if (serviceWakeLock == null) return;
+
+        boolean needed = isServiceWakeLockNeeded(isMonitoring,
+            sensorCollector != null && sensorCollector.isLowPowerActive());
+        if (needed && !serviceWakeLock.isHeld()) {
+            serviceWakeLock.acquire();
             Log.d(TAG, "Wake lock acquired");
+        } else if (!needed && serviceWakeLock.isHeld()) {
+            serviceWakeLock.release();
+            Log.d(TAG, isMonitoring ? "Wake lock released, low-power mode active"
+                : "Wake lock released, monitoring stopped");
         }
     }
 
+    /**
+     * Whether the permanent wake lock is needed. Nothing has to run while monitoring is
+     * stopped or paused, so the lock is only held for monitoring without wake-up sensors.
+     */
+    static boolean isServiceWakeLockNeeded(boolean monitoring, boolean lowPowerActive) {
+        return monitoring && !lowPowerActive;
+    }
+
     /**
      * Release wake lock
      */
     private void releaseWakeLock() {
-        if (wakeLock != null && wakeLock.isHeld()) {
-            wakeLock.release();
+        if (serviceWakeLock != null && serviceWakeLock.isHeld()) {
+            serviceWakeLock.release();
             Log.d(TAG, "Wake lock released");
         }
     }
 
+    /**
+     * Wake lock held time of the permanent and the per-analysis lock, for comparing
+     * the legacy and low-power modes
+     */
+    public String getWakeLockStats() {
+        if (serviceWakeLock == null) {
+            return "Wake locks unavailable";
+        }
+        return "service: " + serviceWakeLock.getSummary() + "; analysis: " + analysisWakeLock.getSummary();
+    }
+
+    /**
+     * Periodic sensor delivery check. Alerts once when delivery degrades and logs the
+     * recovery; the collector re-registers the sensors if it does not recover.
+     */
+    private void checkSensorHealth() {
+        if (!isMonitoring) {
+            return;
+        }
+
+        SensorHealthMonitor.Status status = sensorCollector.checkHealth();
+        if (status != sensorHealthStatus) {
+            String summary = sensorCollector.getHealthMonitor().getSummary();
+            if (sensorHealthStatus == SensorHealthMonitor.Status.OK) {
+                Log.w(TAG, "Sensor delivery " + status + ": " + summary);
+                dataLogger.logServiceEvent("FallDetectionService", "sensor_health_degraded", summary);
+                notificationHelper.showStatusUpdate("Sensor problem",
+                    "Motion sensors are not delivering normally, fall detection may be affected");
+            } else if (status == SensorHealthMonitor.Status.OK) {
+                Log.i(TAG, "Sensor delivery recovered");
+                dataLogger.logServiceEvent("FallDetectionService", "sensor_health_recovered", summary);
+            }
+            sensorHealthStatus = status;
+        }
+
+        mainHandler.postDelayed(sensorHealthCheckTask, SENSOR_HEALTH_CHECK_INTERVAL_MS);
+    }
+
+    // Logs the outcome of model updates and registers the sensors a new model reads
+    // (model loader thread)
+    private final TinyMLProcessor.ModelSwapListener modelSwapListener = new TinyMLProcessor.ModelSwapListener() {
+        @Override
+        public void onModelSwapped(int version) {
+            sensorCollector.setRequiredSensors(mlProcessor.getSensorTypes());
+            dataLogger.logServiceEvent("FallDetectionService", "model_swapped", "Version: " + version);
+        }
+
+        @Override
+        public void onModelRejected(int version, String reason) {
+            dataLogger.logServiceEvent("FallDetectionService", "model_rejected",
+                "Version: " + version + ", reason: " + reason);
+        }
+    };
+
+    /**
+     * Install a downloaded model that reads the same input as the bundled one
+     *
+     * @see #installModel(File, int, String, ModelInputSpec)
+     */
+    public void installModel(File modelFile, int version, String sha256) {
+        installModel(modelFile, version, sha256, ModelInputSpec.DEFAULT);
+    }
+
+    /**
+     * Install a downloaded model as {@code version} and switch to it without pausing
+     * detection. A model that fails its checks is dropped and the current one kept.
+     * The sensors are re-registered for the channels {@code inputSpec} declares once
+     * the model is in use.
+     */
+    public void installModel(File modelFile, int version, String sha256, ModelInputSpec inputSpec) {
+        mlProcessor.installModel(modelFile, version, sha256, inputSpec, modelSwapListener);
+    }
+
+    /**
+     * Switch back to the model that was active before the current one
+     */
+    public void rollbackModel() {
+        mlProcessor.rollbackModel(modelSwapListener);
+    }
+
+    /**
+     * Per-sensor delivery statistics of the current session, for field diagnostics
+     */
+    public SensorHealthMonitor getSensorHealth() {
+        return sensorCollector != null ? sensorCollector.getHealthMonitor() : null;
+    }
+
+    /**
+     * Sensor delivery rate, jitter, gaps and stalls of the current session as text
+     */
+    public String getSensorHealthReport() {
+        if (sensorCollector == null) {
+            return "Sensors unavailable";
+        }
+        return sensorCollector.getHealthMonitor().getSummary()
+            + "\nre-registrations: " + sensorCollector.getRegistrationRestartCount();
+    }
+
     /**
      * Start fall detection monitoring
      */
@@ -289,6 +451,13 @@ public class FallDetectionService extends Service implements
         Log.i(TAG, "Starting fall detection monitoring");
 
         // Start sensor data collection
+        sensorCollector.setBatchingEnabled(prefsManager.isSensorBatchingEnabled());
+        sensorCollector.setCascadeEnabled(prefsManager.isCascadeTriggerEnabled());
+        sensorCollector.setAdaptiveSamplingEnabled(prefsManager.isAdaptiveSamplingEnabled());
+        sensorCollector.setLowPowerMode(prefsManager.isLowPowerModeEnabled(), analysisWakeLock);
+        applyTriggerThresholds();
+        fallConfirmation = new FallConfirmationStage(prefsManager.getFallConfirmationSeconds() * 1000L);
+        pendingFallData = null;
         boolean sensorStarted = sensorCollector.startCollection();
         if (!sensorStarted) {
             Log.e(TAG, "Failed to start sensor collection");
@@ -297,6 +466,9 @@ public class FallDetectionService extends Service implements
         }
 
         isMonitoring = true;
+        updateServiceWakeLock();
+        sensorHealthStatus = SensorHealthMonitor.Status.OK;
+        mainHandler.postDelayed(sensorHealthCheckTask, SENSOR_HEALTH_CHECK_INTERVAL_MS);
 
         // Update notification
         notificationHelper.updateForegroundServiceNotification("Monitoring for falls...");
@@ -313,6 +485,16 @@ public class FallDetectionService extends Service implements
         Log.i(TAG, "Fall detection monitoring started");
     }
 
+    /**
+     * Point the collector's cascade trigger at the thresholds for the current sensitivity
+     */
+    private void applyTriggerThresholds() {
+        sensorCollector.setTriggerThresholds(mlProcessor.getTriggerImpactThreshold(),
+            mlProcessor.getTriggerFreeFallThreshold());
+        Log.d(TAG, "Trigger thresholds: impact " + mlProcessor.getTriggerImpactThreshold()
+            + ", free fall " + mlProcessor.getTriggerFreeFallThreshold());
+    }
+
     /**
      * Stop fall detection monitoring
      */
@@ -325,12 +507,15 @@ public class FallDetectionService extends Service implements
         Log.i(TAG, "Stopping fall detection monitoring");
 
         // Stop sensor data collection
+        mainHandler.removeCallbacks(sensorHealthCheckTask);
+        mainHandler.removeCallbacks(confirmationDeadlineTask);
         sensorCollector.stopCollection();
 
         // Cancel any active emergency
         emergencyManager.cancelEmergencyResponse();
 
         isMonitoring = false;
+        updateServiceWakeLock();
 
         // Update notification
         notificationHelper.updateForegroundServiceNotification("Monitoring paused");
@@ -340,8 +525,21 @@ public class FallDetectionService extends Service implements
             serviceListener.onServiceStateChanged(isServiceRunning, isMonitoring);
         }
 
-        // Log monitoring stop
-        dataLogger.logServiceEvent("FallDetectionService", "monitoring_stopped", "User requested");
+        // Log monitoring stop, with how much work the cascade trigger saved
+        dataLogger.logServiceEvent("FallDetectionService", "monitoring_stopped",
+            "User requested - windows analysed: " + sensorCollector.getWindowsAnalyzed()
+                + ", skipped by trigger: " + sensorCollector.getWindowsSkipped()
+                + ", coalesced: " + sensorCollector.getCoalescedWindowCount()
+                + ", dropped: " + sensorCollector.getDroppedWindowCount()
+                + " (triggered: " + sensorCollector.getDroppedTriggeredWindowCount() + ")"
+                + ", max queue depth: " + sensorCollector.getMaxQueueDepth()
+                + ", fall candidates: " + fallConfirmation.getCandidateCount()
+                + " (confirmed " + fallConfirmation.getConfirmedCount()
+                + ", rejected " + fallConfirmation.getRejectedCount()
+                + ", at the deadline " + fallConfirmation.getDeadlineCount() + ")"
+                + ", sampling rate switches: " + sensorCollector.getSamplingRateSwitchCount()
+                + ", sensor re-registrations: " + sensorCollector.getRegistrationRestartCount()
+                + ", wake locks: " + getWakeLockStats());
 
         Log.i(TAG, "Fall detection monitoring stopped");
     }
@@ -386,7 +584,7 @@ public class FallDetectionService extends Service implements
         }
     }
 
-    // SensorDataListener implementation
+    // SensorDataListener implementation (called on the collector's analysis thread)
     @Override
     public void onDataProcessed(SensorDataCollector.SensorDataWindow dataWindow) {
         if (!isMonitoring) {
@@ -394,15 +592,102 @@ public class FallDetectionService extends Service implements
         }
 
         // Process data with ML model
-        TinyMLProcessor.FallDetectionResult result = mlProcessor.processSensorData(dataWindow);
+        onDetectionResult(dataWindow, mlProcessor.processSensorData(dataWindow));
+    }
 
+    /**
+     * Windows queued together, run through the model in one invocation (analysis thread)
+     */
+    @Override
+    public void onDataBatch(SensorDataCollector.SensorDataWindow[] windows, int count) {
+        if (!isMonitoring) {
+            return;
+        }
+
+        mlProcessor.processSensorData(windows, count, batchResults);
+        for (int i = 0; i < count; i++) {
+            onDetectionResult(windows[i], batchResults[i]);
+            batchResults[i] = null;
+        }
+    }
+
+    private void onDetectionResult(SensorDataCollector.SensorDataWindow dataWindow,
+                                   TinyMLProcessor.FallDetectionResult result) {
         // Log sensor data occasionally
         dataLogger.logSensorData(dataWindow);
 
-        // Check for fall detection
+        // A detection is a candidate until the confirmation stage has seen what follows
+        // (the window is reused, keep a copy of the candidate's for learning)
         if (result.isFall) {
-            onFallDetected(result.confidence, dataWindow);
+            FallConfirmationStage stage = fallConfirmation;
+            boolean wasIdle = stage.getState() == FallConfirmationStage.State.IDLE;
+            FallConfirmationStage.Outcome outcome = stage.onCandidate(result.confidence,
+                dataWindow.t(dataWindow.size() - 1));
+
+            if (outcome == FallConfirmationStage.Outcome.CONFIRMED) {
+                promoteFall(stage, pendingFallData != null ? pendingFallData : dataWindow.snapshot());
+            } else if (wasIdle && stage.getState() == FallConfirmationStage.State.CONFIRMING) {
+                pendingFallData = dataWindow.snapshot();
+                Log.i(TAG, "Fall candidate with confidence " + result.confidence + ", waiting for confirmation");
+                mainHandler.removeCallbacks(confirmationDeadlineTask);
+                mainHandler.postDelayed(confirmationDeadlineTask, stage.getDeadlineMs());
+            }
         }
+
+        // Results are pooled, nothing above holds on to this one
+        result.recycle();
+    }
+
+    /**
+     * Windows of the confirmation resolution (analysis thread). Constant time unless a
+     * pending candidate is decided.
+     */
+    private void onConfirmationWindow(SensorDataCollector.SensorDataWindow window) {
+        if (!isMonitoring) {
+            return;
+        }
+
+        FallConfirmationStage stage = fallConfirmation;
+        onConfirmationOutcome(stage, stage.onWindow(window.features, window.t(window.size() - 1)));
+    }
+
+    /**
+     * Decide a candidate whose confirmation windows stopped arriving (main thread)
+     */
+    private void checkConfirmationDeadline() {
+        if (!isMonitoring) {
+            return;
+        }
+
+        FallConfirmationStage stage = fallConfirmation;
+        FallConfirmationStage.Outcome outcome = stage.onDeadline(sensorCollector.getClockNanos());
+        if (outcome != FallConfirmationStage.Outcome.NONE) {
+            Log.w(TAG, "Confirmation windows stopped arriving, fall candidate decided at the deadline");
+            dataLogger.logServiceEvent("FallDetectionService", "fall_candidate_deadline", "Outcome: " + outcome);
+        }
+        onConfirmationOutcome(stage, outcome);
+    }
+
+    private void onConfirmationOutcome(FallConfirmationStage stage, FallConfirmationStage.Outcome outcome) {
+        if (outcome == FallConfirmationStage.Outcome.CONFIRMED) {
+            promoteFall(stage, pendingFallData);
+        } else if (outcome == FallConfirmationStage.Outcome.REJECTED) {
+            Log.i(TAG, "Fall candidate rejected, movement resumed or posture unchanged");
+            pendingFallData = null;
+            dataLogger.logServiceEvent("FallDetectionService", "fall_candidate_rejected",
+                "Confidence: " + stage.getCandidateConfidence());
+        }
+    }
+
+    /**
+     * Hand a confirmed fall to the emergency response (analysis or main thread)
+     */
+    private void promoteFall(FallConfirmationStage stage, final SensorDataCollector.SensorDataWindow fallData) {
+        final float confidence = stage.getCandidateConfidence();
+        pendingFallData = null;
+
+        // Emergency handling and UI callbacks belong on the main thread
+        mainHandler.post(() -> onFallDetected(confidence, fallData));
     }
 
     @Override
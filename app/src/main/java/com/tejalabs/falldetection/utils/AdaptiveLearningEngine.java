@@ -26,6 +26,13 @@ public class AdaptiveLearningEngine {
         falseAlarmPatterns = new ArrayList<>();
         loadLearnedPatterns();
     }
+
+    /**
+     * Engine without stored preferences, for offline evaluation
+     */
+    AdaptiveLearningEngine() {
+        falseAlarmPatterns = new ArrayList<>();
+    }
     
     /**
      * Learn from a false alarm by storing the motion pattern
@@ -68,8 +75,9 @@ public class AdaptiveLearningEngine {
             return false;
         }
         
-        // Check similarity with all learned false alarm patterns
-        for (FalseAlarmPattern pattern : falseAlarmPatterns) {
+        // Check similarity with all learned false alarm patterns (indexed, this runs per window)
+        for (int i = 0; i < falseAlarmPatterns.size(); i++) {
+            FalseAlarmPattern pattern = falseAlarmPatterns.get(i);
             float similarity = calculateSimilarity(features, confidence, pattern);
             
             if (similarity > SIMILARITY_THRESHOLD) {
@@ -119,7 +127,8 @@ public class AdaptiveLearningEngine {
         }
         
         float maxSimilarity = 0.0f;
-        for (FalseAlarmPattern pattern : falseAlarmPatterns) {
+        for (int i = 0; i < falseAlarmPatterns.size(); i++) {
+            FalseAlarmPattern pattern = falseAlarmPatterns.get(i);
             float similarity = calculateSimilarity(features, originalConfidence, pattern);
             maxSimilarity = Math.max(maxSimilarity, similarity);
         }
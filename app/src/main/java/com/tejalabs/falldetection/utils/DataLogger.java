@@ -31,6 +31,10 @@ public class DataLogger {
     private static final String EMERGENCY_LOG = "emergency_events.log";
     private static final String SYSTEM_LOG = "system_events.log";
 
+    // At most one sensor data sample per interval
+    private static final long SENSOR_LOG_INTERVAL_MS = 60000;
+    private long lastSensorLogTime = 0;
+
     private Context context;
     private File logDirectory;
     private Gson gson;
@@ -178,34 +182,22 @@ public class DataLogger {
      * Log sensor data (for debugging and analysis)
      */
     public void logSensorData(SensorDataCollector.SensorDataWindow dataWindow) {
-        if (dataWindow == null || dataWindow.accelerometerData.isEmpty()) {
+        if (dataWindow == null || dataWindow.isEmpty()) {
             return;
         }
 
-        // Log only a sample of sensor data to avoid excessive file sizes
-        if (Math.random() < 0.1) { // Log 10% of sensor data
-            // Convert Float[] to float[] for the first sample
-            Float[] accelSample = dataWindow.accelerometerData.get(0);
-            float[] accelArray = new float[]{accelSample[0], accelSample[1], accelSample[2]};
-
-            float[] gyroArray = null;
-            if (!dataWindow.gyroscopeData.isEmpty()) {
-                Float[] gyroSample = dataWindow.gyroscopeData.get(0);
-                gyroArray = new float[]{gyroSample[0], gyroSample[1], gyroSample[2]};
-            }
-
-            float[] magArray = null;
-            if (!dataWindow.magnetometerData.isEmpty()) {
-                Float[] magSample = dataWindow.magnetometerData.get(0);
-                magArray = new float[]{magSample[0], magSample[1], magSample[2]};
-            }
-
+        // Log only a sample of sensor data to avoid excessive file sizes. Time based, so
+        // monitoring does not allocate and write a log entry several times a second.
+        long now = System.currentTimeMillis();
+        if (now - lastSensorLogTime >= SENSOR_LOG_INTERVAL_MS) {
+            lastSensorLogTime = now;
+            // Copy the first sample of each sensor, the window itself is reused
             SensorDataEntry entry = new SensorDataEntry(
-                System.currentTimeMillis(),
-                accelArray,
-                gyroArray,
-                magArray,
-                dataWindow.features
+                now,
+                firstSample(dataWindow.accelerometer),
+                firstSample(dataWindow.gyroscope),
+                firstSample(dataWindow.magnetometer),
+                dataWindow.features.clone()
             );
 
             LogEntry logEntry = new LogEntry("SENSOR_DATA", "Sensor data sample", entry);
@@ -213,6 +205,13 @@ public class DataLogger {
         }
     }
 
+    private static float[] firstSample(SensorRingBuffer.Slice slice) {
+        if (slice.isEmpty()) {
+            return null;
+        }
+        return new float[]{slice.x(0), slice.y(0), slice.z(0)};
+    }
+
     /**
      * Log system events
      */
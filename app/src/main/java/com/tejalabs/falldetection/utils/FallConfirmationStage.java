@@ -0,0 +1,286 @@
+package com.tejalabs.falldetection.utils;
+
+/**
+ * Last stage of the detection cascade: watches what happens after a candidate fall
+ * A person who fell usually stays down and still for a while, someone who sat down
+ * hard gets up and moves on. After a candidate the stage follows stillness and
+ * posture for a confirmation period, reading only the statistics the collector
+ * already keeps for its {@link #WINDOW} resolution, and then confirms or rejects it.
+ * Very confident candidates are confirmed straight away. If the windows stop
+ * arriving, a timer calling {@link #onDeadline} decides the candidate instead.
+ *
+ * Candidates and windows come from the analysis thread, the deadline from a timer
+ * on another one; the methods that change state are synchronized.
+ */
+public class FallConfirmationStage {
+
+    /** Resolution the stage reads: 1 second windows, one per second */
+    public static final WindowSpec WINDOW = new WindowSpec("confirmation", 50, 50);
+
+    public static final long DEFAULT_CONFIRMATION_MS = 10000;
+
+    // Candidates at least this confident skip the confirmation period. The rule-based
+    // score reaches 0.9 with a single indicator missing, so only near-complete
+    // evidence qualifies.
+    public static final float EARLY_CONFIRMATION_CONFIDENCE = 0.95f;
+
+    // Further candidates this soon after a confirmation belong to the same event
+    private static final long REFRACTORY_NS = 5000000000L;
+
+    // Time after the candidate ignored while the impact settles
+    private static final long SETTLE_NS = 1000000000L;
+
+    // Posture before the fall is read from a window ending this long before the candidate
+    private static final long REFERENCE_LEAD_NS = 2500000000L;
+
+    // Magnitude standard deviation below which a window counts as still (m/s²)
+    private static final float STILL_STD = 0.8f;
+
+    // Share of the confirmation period that must be still
+    private static final float MIN_STILL_FRACTION = 0.7f;
+
+    // Posture change (degrees) from before the fall that counts as being down
+    private static final float MIN_POSTURE_CHANGE_DEGREES = 65.0f;
+
+    // This much movement during the confirmation period rejects the candidate early
+    private static final long MAX_MOVING_NS = 3000000000L;
+
+    // Longest gap credited for one window, in case windows stop arriving for a while
+    private static final long MAX_WINDOW_GAP_NS = 5000000000L;
+
+    // Wait past the end of the confirmation period before deciding without windows,
+    // longer than the 10s low-power batching latency so a late batch still decides
+    private static final long DEADLINE_GRACE_NS = 15000000000L;
+
+    public enum State { IDLE, CONFIRMING }
+
+    public enum Outcome { NONE, CONFIRMED, REJECTED }
+
+    private final long confirmationNs;
+    private final float minPostureCos;
+
+    private State state = State.IDLE;
+    private float candidateConfidence;
+    private long candidateTimeNs;
+    private long lastWindowEndNs;
+    private long lastConfirmedNs = Long.MIN_VALUE;
+    private long stillNs;
+    private long movingNs;
+    private boolean postureChanged;
+
+    // Gravity direction (window means) of recent windows, to find the posture before a fall
+    private static final int HISTORY = 8;
+    private final long[] historyEndNs = new long[HISTORY];
+    private final float[] historyGravity = new float[HISTORY * 3];
+    private int historyCount = 0;
+    private int historyNext = 0;
+    private final float[] reference = new float[3];
+    private boolean hasReference;
+
+    // Statistics
+    private long candidateCount = 0;
+    private long confirmedCount = 0;
+    private long earlyConfirmedCount = 0;
+    private long rejectedCount = 0;
+    private long deadlineCount = 0;
+
+    public FallConfirmationStage() {
+        this(DEFAULT_CONFIRMATION_MS);
+    }
+
+    public FallConfirmationStage(long confirmationMs) {
+        this.confirmationNs = Math.max(0, confirmationMs) * 1000000L;
+        this.minPostureCos = (float) Math.cos(Math.toRadians(MIN_POSTURE_CHANGE_DEGREES));
+    }
+
+    /**
+     * Report a candidate fall detected in a window ending at {@code timestampNs}
+     *
+     * @return CONFIRMED if it is confident enough to promote now, otherwise NONE
+     *         while the stage watches the following seconds
+     */
+    public synchronized Outcome onCandidate(float confidence, long timestampNs) {
+        if (state == State.CONFIRMING) {
+            // More of the same event: keep the strongest evidence, the clock keeps running
+            candidateConfidence = Math.max(candidateConfidence, confidence);
+            if (candidateConfidence >= EARLY_CONFIRMATION_CONFIDENCE) {
+                earlyConfirmedCount++;
+                return finish(Outcome.CONFIRMED);
+            }
+            return Outcome.NONE;
+        }
+
+        if (lastConfirmedNs != Long.MIN_VALUE && timestampNs - lastConfirmedNs < REFRACTORY_NS) {
+            return Outcome.NONE;
+        }
+
+        candidateCount++;
+        candidateConfidence = confidence;
+        candidateTimeNs = timestampNs;
+        if (confidence >= EARLY_CONFIRMATION_CONFIDENCE || confirmationNs == 0) {
+            earlyConfirmedCount++;
+            return finish(Outcome.CONFIRMED);
+        }
+
+        state = State.CONFIRMING;
+        lastWindowEndNs = timestampNs + SETTLE_NS;
+        stillNs = 0;
+        movingNs = 0;
+        postureChanged = false;
+        hasReference = findReference(timestampNs - REFERENCE_LEAD_NS);
+        return Outcome.NONE;
+    }
+
+    /**
+     * Feed the features of one {@link #WINDOW} window ending at {@code endTimestampNs}.
+     * Constant time; windows arrive whether or not a candidate is pending.
+     */
+    public synchronized Outcome onWindow(float[] features, long endTimestampNs) {
+        float gx = features[SensorDataCollector.SensorDataWindow.FEATURE_X_MEAN];
+        float gy = features[SensorDataCollector.SensorDataWindow.FEATURE_Y_MEAN];
+        float gz = features[SensorDataCollector.SensorDataWindow.FEATURE_Z_MEAN];
+        boolean still = features[SensorDataCollector.SensorDataWindow.FEATURE_MAGNITUDE_STD] < STILL_STD;
+
+        if (state == State.IDLE) {
+            remember(endTimestampNs, gx, gy, gz);
+            return Outcome.NONE;
+        }
+
+        if (endTimestampNs <= lastWindowEndNs) {
+            return Outcome.NONE; // Still settling
+        }
+        long duration = Math.min(endTimestampNs - lastWindowEndNs, MAX_WINDOW_GAP_NS);
+        lastWindowEndNs = endTimestampNs;
+
+        if (still) {
+            stillNs += duration;
+            postureChanged = !hasReference || cosine(reference, gx, gy, gz) < minPostureCos;
+        } else {
+            movingNs += duration;
+            if (movingNs >= MAX_MOVING_NS) {
+                return finish(Outcome.REJECTED); // Got up and moved on
+            }
+        }
+
+        if (endTimestampNs - candidateTimeNs < SETTLE_NS + confirmationNs) {
+            return Outcome.NONE;
+        }
+        return decide();
+    }
+
+    /**
+     * Time from a candidate until {@link #onDeadline} decides it without further windows
+     */
+    public long getDeadlineMs() {
+        return (SETTLE_NS + confirmationNs + DEADLINE_GRACE_NS) / 1000000L;
+    }
+
+    /**
+     * Decide a pending candidate whose windows stopped arriving, from a timer started
+     * with the candidate. Nothing observed since the candidate confirms it: sensors
+     * going quiet after an impact are no reason to drop the alarm. Otherwise it is
+     * decided on the part of the confirmation period that was observed.
+     *
+     * @param nowNs current time on the sample timestamp base
+     * @return NONE if nothing is pending or the deadline has not passed yet
+     */
+    public synchronized Outcome onDeadline(long nowNs) {
+        if (state != State.CONFIRMING || nowNs - candidateTimeNs < getDeadlineMs() * 1000000L) {
+            return Outcome.NONE;
+        }
+        deadlineCount++;
+        return stillNs + movingNs == 0 ? finish(Outcome.CONFIRMED) : decide();
+    }
+
+    private Outcome decide() {
+        long observed = stillNs + movingNs;
+        boolean stayedStill = observed > 0 && stillNs >= MIN_STILL_FRACTION * observed;
+        return finish(stayedStill && postureChanged ? Outcome.CONFIRMED : Outcome.REJECTED);
+    }
+
+    private Outcome finish(Outcome outcome) {
+        state = State.IDLE;
+        if (outcome == Outcome.CONFIRMED) {
+            confirmedCount++;
+            lastConfirmedNs = candidateTimeNs;
+        } else {
+            rejectedCount++;
+        }
+        return outcome;
+    }
+
+    private void remember(long endNs, float gx, float gy, float gz) {
+        historyEndNs[historyNext] = endNs;
+        historyGravity[historyNext * 3] = gx;
+        historyGravity[historyNext * 3 + 1] = gy;
+        historyGravity[historyNext * 3 + 2] = gz;
+        historyNext = (historyNext + 1) % HISTORY;
+        historyCount = Math.min(historyCount + 1, HISTORY);
+    }
+
+    /**
+     * Take the posture of the newest remembered window ending at or before {@code timeNs}
+     */
+    private boolean findReference(long timeNs) {
+        for (int i = 1; i <= historyCount; i++) {
+            int slot = (historyNext - i + HISTORY) % HISTORY;
+            if (historyEndNs[slot] <= timeNs) {
+                System.arraycopy(historyGravity, slot * 3, reference, 0, 3);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static float cosine(float[] a, float x, float y, float z) {
+        double norms = Math.sqrt((a[0] * a[0] + a[1] * a[1] + a[2] * a[2]) * (double) (x * x + y * y + z * z));
+        return norms == 0.0 ? 1.0f : (float) ((a[0] * x + a[1] * y + a[2] * z) / norms);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Confidence of the pending (or last) candidate
+     */
+    public float getCandidateConfidence() {
+        return candidateConfidence;
+    }
+
+    public long getCandidateCount() {
+        return candidateCount;
+    }
+
+    public long getConfirmedCount() {
+        return confirmedCount;
+    }
+
+    /**
+     * Confirmations that skipped the confirmation period
+     */
+    public long getEarlyConfirmedCount() {
+        return earlyConfirmedCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Candidates decided by the deadline rather than a window
+     */
+    public long getDeadlineCount() {
+        return deadlineCount;
+    }
+
+    /**
+     * Drop any pending candidate and the posture history
+     */
+    public synchronized void reset() {
+        state = State.IDLE;
+        lastConfirmedNs = Long.MIN_VALUE;
+        historyCount = 0;
+        historyNext = 0;
+    }
+}
@@ -0,0 +1,72 @@
+package com.tejalabs.falldetection.utils;
+
+/**
+ * First stage of the detection cascade: a per-sample check for a candidate event
+ * An accelerometer magnitude above the impact threshold or below the free-fall
+ * threshold marks the sample as a trigger. Windows that contain no trigger sample
+ * cannot be a fall and can skip full analysis.
+ */
+public class ImpactTrigger {
+
+    // Defaults sit below the most sensitive detector settings so no fall is gated out
+    public static final float DEFAULT_IMPACT_THRESHOLD = 12.0f; // m/s²
+    public static final float DEFAULT_FREE_FALL_THRESHOLD = 6.0f; // m/s²
+
+    private volatile float impactThreshold = DEFAULT_IMPACT_THRESHOLD;
+    private volatile float freeFallThreshold = DEFAULT_FREE_FALL_THRESHOLD;
+
+    // Sequence of the most recent trigger sample, -1 if none yet
+    private long lastTriggerSequence = -1;
+    private boolean wasTriggered = false;
+    private volatile long triggerCount = 0;
+
+    /**
+     * Check one accelerometer sample
+     *
+     * @return true if the sample is a trigger
+     */
+    public boolean onSample(long sequence, float magnitude) {
+        boolean triggered = magnitude > impactThreshold || magnitude < freeFallThreshold;
+        if (triggered) {
+            lastTriggerSequence = sequence;
+            if (!wasTriggered) {
+                triggerCount++;
+            }
+        }
+        wasTriggered = triggered;
+        return triggered;
+    }
+
+    /**
+     * Whether any sample at or after {@code sequence} was a trigger
+     */
+    public boolean hasTriggeredSince(long sequence) {
+        return lastTriggerSequence >= sequence;
+    }
+
+    public void setThresholds(float impactThreshold, float freeFallThreshold) {
+        this.impactThreshold = impactThreshold;
+        this.freeFallThreshold = freeFallThreshold;
+    }
+
+    public float getImpactThreshold() {
+        return impactThreshold;
+    }
+
+    public float getFreeFallThreshold() {
+        return freeFallThreshold;
+    }
+
+    /**
+     * Number of separate trigger events (runs of consecutive trigger samples count once)
+     */
+    public long getTriggerCount() {
+        return triggerCount;
+    }
+
+    public void reset() {
+        lastTriggerSequence = -1;
+        wasTriggered = false;
+        triggerCount = 0;
+    }
+}
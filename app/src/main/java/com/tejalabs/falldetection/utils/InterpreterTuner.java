@@ -0,0 +1,273 @@
+package com.tejalabs.falldetection.utils;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Picks the fastest interpreter configuration for a model on this device
+ * Each candidate (CPU with 1, 2 or 4 threads with and without XNNPACK, and NNAPI) runs
+ * the reference inputs after a warmup, and the one with the lowest mean plus two
+ * standard deviations wins, so a fast but jittery delegate does not beat a steady one.
+ * The winner is stored per model checksum together with the build fingerprint; a new
+ * model or a system update (new NNAPI drivers) gets calibrated again.
+ */
+public class InterpreterTuner {
+
+    private static final String TAG = "InterpreterTuner";
+
+    private static final String TUNING_FILE = "interpreter_tuning.json";
+
+    // Inferences per candidate before and during measurement
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 60;
+
+    /**
+     * One interpreter configuration
+     */
+    public static class Config {
+        /** Used until a model has been calibrated */
+        public static final Config DEFAULT = new Config(2, true, false);
+
+        final int threads;
+        final boolean xnnpack;
+        final boolean nnapi;
+
+        Config(int threads, boolean xnnpack, boolean nnapi) {
+            this.threads = threads;
+            this.xnnpack = xnnpack;
+            this.nnapi = nnapi;
+        }
+
+        public Interpreter.Options toOptions() {
+            Interpreter.Options options = new Interpreter.Options();
+            options.setNumThreads(threads);
+            options.setUseXNNPACK(xnnpack);
+            options.setUseNNAPI(nnapi);
+            return options;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Config)) {
+                return false;
+            }
+            Config other = (Config) o;
+            return threads == other.threads && xnnpack == other.xnnpack && nnapi == other.nnapi;
+        }
+
+        @Override
+        public int hashCode() {
+            return threads * 4 + (xnnpack ? 2 : 0) + (nnapi ? 1 : 0);
+        }
+
+        @Override
+        public String toString() {
+            return nnapi ? "NNAPI" : "CPU " + threads + "t" + (xnnpack ? " XNNPACK" : "");
+        }
+    }
+
+    static final Config[] CANDIDATES = {
+        new Config(1, false, false), new Config(1, true, false),
+        new Config(2, false, false), new Config(2, true, false),
+        new Config(4, false, false), new Config(4, true, false),
+        new Config(1, false, true)
+    };
+
+    /**
+     * Measured latency of one configuration, in nanoseconds per inference
+     */
+    static class Benchmark {
+        final Config config;
+        final long meanNs;
+        final long stdDevNs;
+        final long p90Ns;
+
+        Benchmark(Config config, long meanNs, long stdDevNs, long p90Ns) {
+            this.config = config;
+            this.meanNs = meanNs;
+            this.stdDevNs = stdDevNs;
+            this.p90Ns = p90Ns;
+        }
+
+        long score() {
+            return meanNs + 2 * stdDevNs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: mean %dus sd %dus p90 %dus", config, meanNs / 1000, stdDevNs / 1000,
+                p90Ns / 1000);
+        }
+    }
+
+    // Persisted as JSON, keyed by model checksum
+    private static class Entry {
+        String fingerprint;
+        Config config;
+        long meanNs;
+        long p90Ns;
+        long calibratedAt;
+    }
+
+    private final File file;
+    private final String fingerprint;
+    private final Gson gson = new Gson();
+    private Map<String, Entry> entries;
+
+    /**
+     * @param directory where the results are stored, next to the models
+     * @param fingerprint build fingerprint of the device, null where there is none
+     *                    (local unit tests)
+     */
+    public InterpreterTuner(File directory, String fingerprint) {
+        this.file = new File(directory, TUNING_FILE);
+        this.fingerprint = fingerprint != null ? fingerprint : "";
+        entries = read();
+    }
+
+    /**
+     * Calibrated configuration for a model on this device, or null if it has none yet
+     */
+    public synchronized Config lookup(String modelSha256) {
+        Entry entry = entries.get(modelSha256);
+        if (entry == null || entry.config == null || !fingerprint.equals(entry.fingerprint)) {
+            return null;
+        }
+        return entry.config;
+    }
+
+    /**
+     * Calibrated configuration for a model, benchmarking the candidates first if the
+     * model has not been calibrated on this device. Takes a few seconds on the first
+     * call, so only call it off the analysis thread.
+     *
+     * @param referenceSamples samples to time, each repeated across a whole model input
+     */
+    public Config getConfig(String modelSha256, ByteBuffer model, float[][] referenceSamples) {
+        Config config = lookup(modelSha256);
+        if (config != null) {
+            return config;
+        }
+
+        Benchmark best = null;
+        for (Config candidate : CANDIDATES) {
+            Benchmark result;
+            try {
+                result = measure(candidate, model, referenceSamples);
+            } catch (Exception e) {
+                // A delegate the device does not support
+                Log.w(TAG, "Cannot benchmark " + candidate + ": " + e.getMessage());
+                continue;
+            }
+            Log.i(TAG, "Benchmark " + result);
+            if (best == null || result.score() < best.score()) {
+                best = result;
+            }
+        }
+        if (best == null) {
+            Log.e(TAG, "No interpreter configuration works, using " + Config.DEFAULT);
+            return Config.DEFAULT;
+        }
+
+        Log.i(TAG, "Calibrated model " + modelSha256.substring(0, 12) + ": " + best);
+        store(modelSha256, best);
+        return best.config;
+    }
+
+    /**
+     * Time one configuration on the reference inputs
+     */
+    Benchmark measure(Config config, ByteBuffer model, float[][] referenceSamples) {
+        long[] times = new long[MEASURED_RUNS];
+        try (ModelSession session = new ModelSession(new Interpreter(model, config.toOptions()))) {
+            float[] input = session.getInput();
+            for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+                float[] sample = referenceSamples[run % referenceSamples.length];
+                for (int i = 0; i < session.getInputSize(); i++) {
+                    input[i] = sample[i % sample.length];
+                }
+                long start = System.nanoTime();
+                session.run();
+                if (run >= WARMUP_RUNS) {
+                    times[run - WARMUP_RUNS] = System.nanoTime() - start;
+                }
+            }
+        }
+        return summarize(config, times);
+    }
+
+    static Benchmark summarize(Config config, long[] times) {
+        double sum = 0;
+        for (long time : times) {
+            sum += time;
+        }
+        double mean = sum / times.length;
+        double squares = 0;
+        for (long time : times) {
+            squares += (time - mean) * (time - mean);
+        }
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        long p90 = sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.9))];
+        return new Benchmark(config, Math.round(mean), Math.round(Math.sqrt(squares / times.length)), p90);
+    }
+
+    private synchronized void store(String modelSha256, Benchmark best) {
+        // Results from another build no longer apply
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            if (!fingerprint.equals(it.next().fingerprint)) {
+                it.remove();
+            }
+        }
+        Entry entry = new Entry();
+        entry.fingerprint = fingerprint;
+        entry.config = best.config;
+        entry.meanNs = best.meanNs;
+        entry.p90Ns = best.p90Ns;
+        entry.calibratedAt = System.currentTimeMillis();
+        entries.put(modelSha256, entry);
+        write();
+    }
+
+    private Map<String, Entry> read() {
+        if (!file.exists()) {
+            return new HashMap<>();
+        }
+        try (Reader reader = new FileReader(file)) {
+            Map<String, Entry> read = gson.fromJson(reader, new TypeToken<Map<String, Entry>>() { }.getType());
+            return read != null ? read : new HashMap<>();
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading interpreter tuning, calibrating again", e);
+            return new HashMap<>();
+        }
+    }
+
+    private void write() {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (Writer writer = new FileWriter(temporary)) {
+            gson.toJson(entries, writer);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing interpreter tuning", e);
+            return;
+        }
+        if (!temporary.renameTo(file)) {
+            Log.e(TAG, "Cannot replace interpreter tuning");
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.tejalabs.falldetection.utils;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.hardware.TriggerEvent;
+import android.hardware.TriggerEventListener;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Sensor source backed by the device's SensorManager
+ * Events are delivered on a dedicated high-priority thread. When batching, the
+ * hardware FIFO report latency is capped so the FIFO cannot overflow. In low-power
+ * mode the batching wake-up accelerometer is used and the significant-motion sensor
+ * flushes the FIFO early once the user starts moving; the optional non-wake-up
+ * sensors may lose events while the CPU sleeps (see registerSensors).
+ */
+public class LiveSensorSource implements SensorSource, SensorEventListener {
+
+    private static final String TAG = "LiveSensorSource";
+
+    // Below this batching is not worth it
+    private static final int MIN_REPORT_LATENCY_US = 100000;
+
+    // Low-power mode: the wake-up accelerometer wakes the CPU when its FIFO is due
+    private static final int LOW_POWER_REPORT_LATENCY_US = 10000000; // 10 seconds
+
+    // Sampling rate the FIFO headroom is computed for
+    private static final int NOMINAL_RATE_HZ = 50;
+
+    private final SensorManager sensorManager;
+    private final Sensor accelerometer;
+    private final Sensor wakeUpAccelerometer;
+    private final Sensor significantMotion;
+    private final Sensor gyroscope;
+    private final Sensor magnetometer;
+
+    // Accelerometer used by the current session (the wake-up variant in low-power mode)
+    private Sensor activeAccelerometer;
+
+    private HandlerThread sensorThread;
+    private Handler sensorHandler;
+    private Listener listener;
+    private volatile boolean isRunning = false;
+
+    private int samplingPeriodUs;
+    private int reportLatencyUs = 0;
+
+    // Optional sensors to register, null for all available
+    private volatile int[] optionalSensors;
+    private boolean lowPowerActive = false;
+
+    // The batch-complete task runs once the framework has dispatched every event it read
+    private final Runnable batchCompleteTask = this::onBatchComplete;
+    private boolean isBatchCompletePosted = false;
+
+    private final Runnable reregisterTask = this::reregister;
+
+    private final TriggerEventListener significantMotionListener = new TriggerEventListener() {
+        @Override
+        public void onTrigger(TriggerEvent event) {
+            onSignificantMotion();
+        }
+    };
+
+    public LiveSensorSource(Context context) {
+        sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+
+        // Initialize sensors
+        accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        wakeUpAccelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER, true);
+        significantMotion = sensorManager.getDefaultSensor(Sensor.TYPE_SIGNIFICANT_MOTION);
+        gyroscope = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+        magnetometer = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+    }
+
+    @Override
+    public boolean hasSensor(int sensorType) {
+        switch (sensorType) {
+            case Sensor.TYPE_ACCELEROMETER:
+                return accelerometer != null;
+            case Sensor.TYPE_GYROSCOPE:
+                return gyroscope != null;
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                return magnetometer != null;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public boolean start(Listener listener, int samplingPeriodUs, int maxReportLatencyUs, boolean lowPower) {
+        if (isRunning) {
+            return true;
+        }
+        if (accelerometer == null) {
+            Log.e(TAG, "Accelerometer not available");
+            return false;
+        }
+
+        this.listener = listener;
+        this.samplingPeriodUs = samplingPeriodUs;
+        isBatchCompletePosted = false;
+
+        sensorThread = new HandlerThread("FallDetection-Sensors", Process.THREAD_PRIORITY_URGENT_DISPLAY);
+        sensorThread.start();
+        sensorHandler = new Handler(sensorThread.getLooper());
+
+        configureLowPower(lowPower, maxReportLatencyUs);
+
+        // Mark running before registering, events may arrive immediately
+        isRunning = true;
+        boolean success = registerSensors();
+
+        if (success && lowPowerActive) {
+            armSignificantMotion();
+        }
+
+        if (!success) {
+            Log.e(TAG, "Failed to register sensors");
+            stop();
+        }
+        return success;
+    }
+
+    @Override
+    public void stop() {
+        if (sensorThread == null) {
+            return;
+        }
+
+        isRunning = false;
+        sensorManager.unregisterListener(this);
+        if (lowPowerActive && significantMotion != null) {
+            sensorManager.cancelTriggerSensor(significantMotionListener, significantMotion);
+        }
+        sensorThread.quitSafely();
+        sensorThread = null;
+        sensorHandler = null;
+    }
+
+    /**
+     * Re-registers the sensors when running, posted like a period change
+     */
+    @Override
+    public void setOptionalSensors(int[] sensorTypes) {
+        optionalSensors = sensorTypes.clone();
+        Handler handler = sensorHandler;
+        if (handler != null) {
+            handler.post(reregisterTask);
+        }
+    }
+
+    /**
+     * Re-registers the sensors at the new period. The switch is posted so listeners are
+     * not swapped in the middle of a dispatch.
+     */
+    @Override
+    public void setSamplingPeriod(int samplingPeriodUs) {
+        this.samplingPeriodUs = samplingPeriodUs;
+        Handler handler = sensorHandler;
+        if (handler != null) {
+            handler.post(reregisterTask);
+        }
+    }
+
+    @Override
+    public long getClockNanos() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    @Override
+    public int getReportLatencyUs() {
+        return reportLatencyUs;
+    }
+
+    @Override
+    public boolean isLowPowerActive() {
+        return lowPowerActive;
+    }
+
+    @Override
+    public String getName() {
+        return "live";
+    }
+
+    /**
+     * Pick the accelerometer and report latency for this session. Low-power mode needs
+     * the wake-up variant, a non-wake-up sensor would stop delivering as soon as the CPU
+     * suspends. It is only used if its FIFO can batch: a streaming wake-up sensor would
+     * wake the CPU on every sample, which costs more than the service wake lock it
+     * replaces. Otherwise the session falls back to the normal accelerometer.
+     */
+    private void configureLowPower(boolean requested, int maxReportLatencyUs) {
+        lowPowerActive = false;
+
+        if (requested && wakeUpAccelerometer != null) {
+            activeAccelerometer = wakeUpAccelerometer;
+            configureBatching(LOW_POWER_REPORT_LATENCY_US);
+            if (reportLatencyUs > 0) {
+                lowPowerActive = true;
+                if (significantMotion == null) {
+                    Log.w(TAG, "Significant motion sensor not available, relying on FIFO wake-ups only");
+                }
+                Log.i(TAG, "Low-power mode enabled");
+                return;
+            }
+        }
+
+        if (requested) {
+            Log.w(TAG, "No batching wake-up accelerometer, low-power mode unavailable");
+        }
+        activeAccelerometer = accelerometer;
+        configureBatching(maxReportLatencyUs);
+    }
+
+    /**
+     * Decide whether batching can be used and with what report latency.
+     * The latency is capped so that the accelerometer FIFO cannot overflow.
+     */
+    private void configureBatching(int maxReportLatencyUs) {
+        reportLatencyUs = 0;
+
+        if (maxReportLatencyUs <= 0) {
+            return;
+        }
+
+        int fifoSize = activeAccelerometer.getFifoMaxEventCount();
+        if (fifoSize <= 0) {
+            Log.w(TAG, "Sensor FIFO not supported, using streaming mode");
+            return;
+        }
+
+        // Leave headroom for the other sensors sharing the FIFO
+        long fifoLatencyUs = (long) fifoSize * 1000000L / (NOMINAL_RATE_HZ * 3) * 8 / 10;
+        int latencyUs = (int) Math.min(maxReportLatencyUs, fifoLatencyUs);
+        if (latencyUs < MIN_REPORT_LATENCY_US) {
+            Log.w(TAG, "Sensor FIFO too small for batching (" + fifoSize + " events), using streaming mode");
+            return;
+        }
+
+        reportLatencyUs = latencyUs;
+        Log.i(TAG, "Sensor batching enabled - FIFO: " + fifoSize + " events, report latency: "
+            + (reportLatencyUs / 1000) + "ms");
+    }
+
+    private boolean registerSensors() {
+        boolean success = registerSensor(activeAccelerometer);
+
+        // Gyroscope and magnetometer are optional, and only registered when wanted.
+        // In low-power mode they stay non-wake-up sensors and loss is accepted: their
+        // FIFO keeps filling while the CPU sleeps, and once it is full the oldest events
+        // are lost until the wake-up accelerometer wakes the CPU and flushes it. The
+        // aligner bridges the loss from the samples either side and the accelerometer
+        // keeps correcting the orientation estimate; keeping them costs less than
+        // their wake-up variants would in wake-ups.
+        if (!isWanted(Sensor.TYPE_GYROSCOPE)) {
+            Log.d(TAG, "Gyroscope not needed");
+        } else if (gyroscope != null) {
+            success &= registerSensor(gyroscope);
+        } else {
+            Log.w(TAG, "Gyroscope not available");
+        }
+        if (!isWanted(Sensor.TYPE_MAGNETIC_FIELD)) {
+            Log.d(TAG, "Magnetometer not needed");
+        } else if (magnetometer != null) {
+            success &= registerSensor(magnetometer);
+        } else {
+            Log.w(TAG, "Magnetometer not available");
+        }
+        return success;
+    }
+
+    private boolean isWanted(int sensorType) {
+        int[] wanted = optionalSensors;
+        if (wanted == null) {
+            return true;
+        }
+        for (int type : wanted) {
+            if (type == sensorType) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean registerSensor(Sensor sensor) {
+        if (reportLatencyUs > 0) {
+            return sensorManager.registerListener(this, sensor, samplingPeriodUs, reportLatencyUs, sensorHandler);
+        }
+        return sensorManager.registerListener(this, sensor, samplingPeriodUs, sensorHandler);
+    }
+
+    private void reregister() {
+        if (!isRunning) {
+            return;
+        }
+        sensorManager.unregisterListener(this);
+        registerSensors();
+        listener.onSensorsRegistered();
+    }
+
+    /**
+     * Request the one-shot significant-motion trigger (it disarms itself after firing)
+     */
+    private void armSignificantMotion() {
+        if (significantMotion != null
+                && !sensorManager.requestTriggerSensor(significantMotionListener, significantMotion)) {
+            Log.w(TAG, "Failed to arm significant motion trigger");
+        }
+    }
+
+    /**
+     * The user started moving: deliver the batched samples now instead of waiting for
+     * the report latency, then re-arm for the next motion
+     */
+    private void onSignificantMotion() {
+        if (!isRunning) return;
+
+        sensorManager.flush(this);
+        armSignificantMotion();
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        if (!isRunning) return;
+
+        if (!isBatchCompletePosted) {
+            isBatchCompletePosted = true;
+            sensorHandler.post(batchCompleteTask);
+        }
+
+        listener.onSensorSample(event.sensor.getType(), event.timestamp,
+            event.values[0], event.values[1], event.values[2]);
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        Log.d(TAG, "Sensor accuracy changed: " + sensor.getName() + " accuracy: " + accuracy);
+    }
+
+    private void onBatchComplete() {
+        isBatchCompletePosted = false;
+        if (isRunning) {
+            listener.onBatchComplete();
+        }
+    }
+}
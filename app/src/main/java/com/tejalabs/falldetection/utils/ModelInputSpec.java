@@ -0,0 +1,288 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a model reads from a window: its length in samples and, per sample, the
+ * channels it expects in order, three values each
+ * Every value is divided by its channel's range and clamped to ±1. The input is
+ * assembled straight from the window's ring buffer slices, newest samples last and
+ * zero-padded when the window is short. Installed models store their spec in the
+ * registry index; the bundled model reads raw accelerometer samples. Immutable,
+ * built with {@link Builder}.
+ */
+public final class ModelInputSpec {
+
+    public static final int VALUES_PER_CHANNEL = 3;
+
+    // Models read the primary analysis window, so they cannot ask for more samples
+    // than it holds; a longer input would only ever be zero-padded
+    public static final int MAX_WINDOW_SAMPLES = WindowSpec.IMPACT.getSize();
+
+    public enum Channel {
+        // Accelerometer x, y, z including gravity (m/s²)
+        ACCELEROMETER(Sensor.TYPE_ACCELEROMETER),
+        // Accelerometer with gravity along the estimated up direction removed (m/s²).
+        // The estimate integrates the gyroscope, without it it lags every rotation.
+        LINEAR_ACCELERATION(Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_GYROSCOPE),
+        // Angular velocity resampled onto the accelerometer timeline (rad/s)
+        GYROSCOPE(Sensor.TYPE_GYROSCOPE),
+        // Estimated up direction in the device frame (unit vector), see LINEAR_ACCELERATION
+        TILT(Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_GYROSCOPE),
+        // Magnetic field resampled onto the accelerometer timeline (µT)
+        MAGNETIC_FIELD(Sensor.TYPE_MAGNETIC_FIELD);
+
+        final int[] sensorTypes;
+
+        Channel(int... sensorTypes) {
+            this.sensorTypes = sensorTypes;
+        }
+    }
+
+    /**
+     * One channel of the input with its normalisation
+     */
+    public static final class Input {
+        private final Channel channel;
+        private final float range;
+
+        Input(Channel channel, float range) {
+            this.channel = channel;
+            this.range = range;
+        }
+
+        public Channel getChannel() {
+            return channel;
+        }
+
+        public float getRange() {
+            return range;
+        }
+    }
+
+    /** Input of the bundled model: the last 50 raw accelerometer samples, ±20 m/s² */
+    public static final ModelInputSpec DEFAULT = new Builder(50).add(Channel.ACCELEROMETER, 20.0f).build();
+
+    private final int windowSamples;
+    private final List<Input> channels;
+
+    private ModelInputSpec(int windowSamples, List<Input> channels) {
+        if (windowSamples < 1 || windowSamples > MAX_WINDOW_SAMPLES) {
+            throw new IllegalArgumentException("Window must hold 1 to " + MAX_WINDOW_SAMPLES + " samples: "
+                + windowSamples);
+        }
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("No channels");
+        }
+        for (Input input : channels) {
+            if (input == null || input.channel == null) {
+                throw new IllegalArgumentException("Unknown channel");
+            }
+            if (!(input.range > 0.0f)) {
+                throw new IllegalArgumentException("Range of " + input.channel + " must be positive: " + input.range);
+            }
+        }
+        this.windowSamples = windowSamples;
+        this.channels = Collections.unmodifiableList(new ArrayList<>(channels));
+    }
+
+    /**
+     * Checked copy of a spec read back from JSON, which fills the fields without
+     * going through the constructor
+     *
+     * @throws IllegalArgumentException if the spec read is not valid
+     */
+    static ModelInputSpec validated(ModelInputSpec read) {
+        return new ModelInputSpec(read.windowSamples,
+            read.channels != null ? read.channels : Collections.<Input>emptyList());
+    }
+
+    public static class Builder {
+        private final int windowSamples;
+        private final List<Input> channels = new ArrayList<>();
+
+        public Builder(int windowSamples) {
+            this.windowSamples = windowSamples;
+        }
+
+        /**
+         * Append a channel whose values are divided by {@code range}
+         */
+        public Builder add(Channel channel, float range) {
+            channels.add(new Input(channel, range));
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the window is empty or longer than the
+         *                                  primary window, there are no channels or a
+         *                                  range is not positive
+         */
+        public ModelInputSpec build() {
+            return new ModelInputSpec(windowSamples, channels);
+        }
+    }
+
+    public int getWindowSamples() {
+        return windowSamples;
+    }
+
+    public List<Input> getChannels() {
+        return channels;
+    }
+
+    public int getValuesPerSample() {
+        return channels.size() * VALUES_PER_CHANNEL;
+    }
+
+    /**
+     * Values of one model input
+     */
+    public int getInputSize() {
+        return windowSamples * getValuesPerSample();
+    }
+
+    /**
+     * Sensor types the channels read, directly or through the orientation estimate,
+     * each once
+     */
+    public int[] getSensorTypes() {
+        int[] types = new int[channels.size() * 2];
+        int count = 0;
+        for (Input input : channels) {
+            for (int type : input.channel.sensorTypes) {
+                boolean seen = false;
+                for (int i = 0; i < count; i++) {
+                    seen |= types[i] == type;
+                }
+                if (!seen) {
+                    types[count++] = type;
+                }
+            }
+        }
+        int[] distinct = new int[count];
+        System.arraycopy(types, 0, distinct, 0, count);
+        return distinct;
+    }
+
+    /**
+     * Write the model input for the newest samples of {@code window} at {@code offset}
+     */
+    public void fill(SensorDataCollector.SensorDataWindow window, float[] input, int offset) {
+        int sampleCount = Math.min(windowSamples, window.size());
+        int first = window.size() - sampleCount;
+        int valuesPerSample = getValuesPerSample();
+        int valueEnd = offset + sampleCount * valuesPerSample;
+
+        if (channels.size() == 1 && channels.get(0).channel == Channel.ACCELEROMETER) {
+            // Raw accelerometer only: the slice already holds the interleaved layout
+            window.accelerometer.copyValues(first, sampleCount, input, offset);
+            float scale = 1.0f / channels.get(0).range;
+            for (int i = offset; i < valueEnd; i++) {
+                input[i] = clamp(input[i] * scale);
+            }
+        } else {
+            for (int c = 0; c < channels.size(); c++) {
+                Input channel = channels.get(c);
+                int index = offset + c * VALUES_PER_CHANNEL;
+                for (int s = first; s < first + sampleCount; s++, index += valuesPerSample) {
+                    fillSample(channel, window, s, input, index);
+                }
+            }
+        }
+
+        // Pad with zeros if the window is shorter than the model input
+        for (int i = valueEnd; i < offset + getInputSize(); i++) {
+            input[i] = 0.0f;
+        }
+    }
+
+    private static void fillSample(Input channel, SensorDataCollector.SensorDataWindow window, int s,
+                                   float[] input, int index) {
+        // The streams share the accelerometer's sequence numbers, but the gyroscope and
+        // magnetometer slices can start later or end earlier: no sample reads as zero
+        SensorRingBuffer.Slice stream = streamOf(channel.channel, window);
+        long sequence = window.accelerometer.getStartSequence() + s;
+        long i = sequence - stream.getStartSequence();
+        if (i < 0 || i >= stream.size()) {
+            input[index] = 0.0f;
+            input[index + 1] = 0.0f;
+            input[index + 2] = 0.0f;
+            return;
+        }
+        float x = stream.x((int) i);
+        float y = stream.y((int) i);
+        float z = stream.z((int) i);
+        if (channel.channel == Channel.LINEAR_ACCELERATION) {
+            // Gravity along the orientation estimate's up vector
+            x = window.accelerometer.x(s) - OrientationEstimator.GRAVITY * x;
+            y = window.accelerometer.y(s) - OrientationEstimator.GRAVITY * y;
+            z = window.accelerometer.z(s) - OrientationEstimator.GRAVITY * z;
+        }
+        float scale = 1.0f / channel.range;
+        input[index] = clamp(x * scale);
+        input[index + 1] = clamp(y * scale);
+        input[index + 2] = clamp(z * scale);
+    }
+
+    private static SensorRingBuffer.Slice streamOf(Channel channel, SensorDataCollector.SensorDataWindow window) {
+        switch (channel) {
+            case ACCELEROMETER:
+                return window.accelerometer;
+            case GYROSCOPE:
+                return window.gyroscope;
+            case MAGNETIC_FIELD:
+                return window.magnetometer;
+            default:
+                // Linear acceleration and tilt read the orientation estimate
+                return window.orientation;
+        }
+    }
+
+    /**
+     * Values of one sample of a device lying still with {@code gravity} (m/s²) on its
+     * axes, used to warm up and check a model
+     */
+    public float[] stillSample(float[] gravity) {
+        float magnitude = (float) Math.sqrt(gravity[0] * gravity[0] + gravity[1] * gravity[1]
+            + gravity[2] * gravity[2]);
+        float[] sample = new float[getValuesPerSample()];
+        for (int c = 0; c < channels.size(); c++) {
+            Input channel = channels.get(c);
+            for (int axis = 0; axis < VALUES_PER_CHANNEL; axis++) {
+                float value;
+                switch (channel.channel) {
+                    case ACCELEROMETER:
+                        value = gravity[axis];
+                        break;
+                    case TILT:
+                        value = gravity[axis] / magnitude;
+                        break;
+                    default:
+                        // No linear acceleration or rotation while still, and no particular heading
+                        value = 0.0f;
+                        break;
+                }
+                sample[c * VALUES_PER_CHANNEL + axis] = clamp(value / channel.range);
+            }
+        }
+        return sample;
+    }
+
+    private static float clamp(float value) {
+        return Math.max(-1.0f, Math.min(1.0f, value));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder().append(windowSamples).append(" samples of");
+        for (Input input : channels) {
+            text.append(' ').append(input.channel).append("/").append(input.range);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,397 @@
+package com.tejalabs.falldetection.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Versioned TFLite models in app storage
+ * Each installed model is a file with a SHA-256 checksum and metadata in an index.
+ * Installing never changes the active model; the processor activates a version
+ * once it has loaded and checked it. Version 0 stands for the model bundled in the
+ * APK assets. Files and the index are written to a temporary file first and renamed,
+ * so a crash never leaves a half-written model or index behind.
+ */
+public class ModelRegistry {
+
+    private static final String TAG = "ModelRegistry";
+
+    private static final String DIRECTORY = "models";
+    private static final String INDEX_FILE = "models.json";
+
+    /** Version number of the model bundled in the assets */
+    public static final int BUNDLED_VERSION = 0;
+
+    // Installed versions kept on disk, besides the active and previous one
+    private static final int KEEP_VERSIONS = 3;
+
+    /**
+     * Metadata of one installed model
+     */
+    public static class ModelVersion {
+        private int version;
+        private String fileName;
+        private String sha256;
+        private long sizeBytes;
+        private long installedAt;
+        private String description;
+        private ModelInputSpec inputSpec;
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public long getSizeBytes() {
+            return sizeBytes;
+        }
+
+        public long getInstalledAt() {
+            return installedAt;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        /**
+         * What the model reads from a window; models installed without a spec read
+         * what the bundled one does
+         */
+        public ModelInputSpec getInputSpec() {
+            return inputSpec != null ? inputSpec : ModelInputSpec.DEFAULT;
+        }
+
+        @Override
+        public String toString() {
+            return "v" + version + " (" + sizeBytes + " bytes, " + sha256.substring(0, 12) + ")";
+        }
+    }
+
+    // Persisted as JSON
+    private static class Index {
+        int activeVersion = BUNDLED_VERSION;
+        int previousVersion = BUNDLED_VERSION;
+        List<ModelVersion> versions = new ArrayList<>();
+    }
+
+    private final File directory;
+    private final Gson gson = new Gson();
+    private Index index;
+
+    public ModelRegistry(Context context) {
+        this(new File(context.getFilesDir(), DIRECTORY));
+    }
+
+    public ModelRegistry(File directory) {
+        this.directory = directory;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(TAG, "Cannot create model directory " + directory);
+        }
+        index = readIndex();
+    }
+
+    /**
+     * Copy a model that reads the same input as the bundled one into the registry
+     *
+     * @see #install(InputStream, int, String, String, ModelInputSpec)
+     */
+    public ModelVersion install(InputStream input, int version, String expectedSha256,
+                                String description) throws IOException {
+        return install(input, version, expectedSha256, description, ModelInputSpec.DEFAULT);
+    }
+
+    /**
+     * Copy a model into the registry as {@code version}
+     *
+     * @param expectedSha256 hex checksum the file must have, or null to accept any
+     * @param inputSpec what the model reads from a window
+     * @throws IOException if copying fails or the checksum does not match
+     */
+    public synchronized ModelVersion install(InputStream input, int version, String expectedSha256,
+                                             String description, ModelInputSpec inputSpec) throws IOException {
+        if (version <= BUNDLED_VERSION) {
+            throw new IllegalArgumentException("Model versions start at 1: " + version);
+        }
+        if (find(version) != null) {
+            throw new IllegalArgumentException("Model version already installed: " + version);
+        }
+
+        String fileName = "model-v" + version + ".tflite";
+        File temporary = new File(directory, fileName + ".tmp");
+        MessageDigest digest = newDigest();
+        long size = 0;
+        try (FileOutputStream output = new FileOutputStream(temporary)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                output.write(buffer, 0, read);
+                size += read;
+            }
+            output.getFD().sync();
+        } catch (IOException e) {
+            temporary.delete();
+            throw e;
+        }
+
+        String sha256 = toHex(digest.digest());
+        if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+            temporary.delete();
+            throw new IOException("Checksum mismatch for model v" + version + ": " + sha256);
+        }
+        if (!temporary.renameTo(new File(directory, fileName))) {
+            temporary.delete();
+            throw new IOException("Cannot move model v" + version + " into place");
+        }
+
+        ModelVersion entry = new ModelVersion();
+        entry.version = version;
+        entry.fileName = fileName;
+        entry.sha256 = sha256;
+        entry.sizeBytes = size;
+        entry.installedAt = System.currentTimeMillis();
+        entry.description = description;
+        entry.inputSpec = inputSpec;
+        index.versions.add(entry);
+        writeIndex();
+
+        Log.i(TAG, "Installed model " + entry);
+        return entry;
+    }
+
+    /**
+     * Map an installed model into memory after checking its file against the checksum
+     *
+     * @throws IOException if the file is missing or corrupt
+     */
+    public MappedByteBuffer load(ModelVersion entry) throws IOException {
+        File file = new File(directory, entry.fileName);
+        String sha256 = checksum(file);
+        if (!sha256.equalsIgnoreCase(entry.sha256)) {
+            throw new IOException("Model v" + entry.version + " is corrupt: " + sha256);
+        }
+        try (FileInputStream input = new FileInputStream(file)) {
+            FileChannel channel = input.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Make {@code version} the active model, remembering the current one to roll back to
+     */
+    public synchronized void activate(int version) {
+        if (version != BUNDLED_VERSION && find(version) == null) {
+            throw new IllegalArgumentException("Model version not installed: " + version);
+        }
+        if (version == index.activeVersion) {
+            return;
+        }
+        index.previousVersion = index.activeVersion;
+        index.activeVersion = version;
+        prune();
+        writeIndex();
+        Log.i(TAG, "Active model v" + version + ", previous v" + index.previousVersion);
+    }
+
+    /**
+     * Drop a version that failed to load or check. If it was active, the previous
+     * version becomes active again.
+     */
+    public synchronized void remove(int version) {
+        ModelVersion entry = find(version);
+        if (entry == null) {
+            return;
+        }
+        if (index.activeVersion == version) {
+            index.activeVersion = index.previousVersion;
+            index.previousVersion = BUNDLED_VERSION;
+        } else if (index.previousVersion == version) {
+            index.previousVersion = BUNDLED_VERSION;
+        }
+        index.versions.remove(entry);
+        new File(directory, entry.fileName).delete();
+        writeIndex();
+        Log.w(TAG, "Removed model v" + version);
+    }
+
+    /**
+     * Active model, or null for the bundled one
+     */
+    public synchronized ModelVersion getActive() {
+        return find(index.activeVersion);
+    }
+
+    public synchronized int getActiveVersion() {
+        return index.activeVersion;
+    }
+
+    /**
+     * Version to roll back to, {@link #BUNDLED_VERSION} for the bundled model
+     */
+    public synchronized int getPreviousVersion() {
+        return index.previousVersion;
+    }
+
+    /**
+     * Installed version, or null
+     */
+    public synchronized ModelVersion getVersion(int version) {
+        return find(version);
+    }
+
+    public synchronized List<ModelVersion> getVersions() {
+        return new ArrayList<>(index.versions);
+    }
+
+    /**
+     * Directory holding the models and their index
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Hex SHA-256 of a model already in memory, such as the bundled one
+     */
+    public static String checksum(ByteBuffer model) {
+        ByteBuffer contents = model.duplicate();
+        contents.rewind();
+        MessageDigest digest = newDigest();
+        digest.update(contents);
+        return toHex(digest.digest());
+    }
+
+    private ModelVersion find(int version) {
+        for (ModelVersion entry : index.versions) {
+            if (entry.version == version) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Delete the oldest installed versions beyond the ones kept, never the active or previous one
+     */
+    private void prune() {
+        int excess = index.versions.size() - KEEP_VERSIONS;
+        for (int i = 0; i < index.versions.size() && excess > 0; ) {
+            ModelVersion entry = index.versions.get(i);
+            if (entry.version == index.activeVersion || entry.version == index.previousVersion) {
+                i++;
+                continue;
+            }
+            index.versions.remove(i);
+            new File(directory, entry.fileName).delete();
+            excess--;
+        }
+    }
+
+    private Index readIndex() {
+        File file = new File(directory, INDEX_FILE);
+        if (!file.exists()) {
+            return new Index();
+        }
+        try (Reader reader = new FileReader(file)) {
+            Index read = gson.fromJson(reader, Index.class);
+            if (read == null || read.versions == null) {
+                return new Index();
+            }
+            checkInputSpecs(read);
+            return read;
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading model index, starting from the bundled model", e);
+            return new Index();
+        }
+    }
+
+    /**
+     * Gson fills the input specs without their constructor checks: replace each with a
+     * checked copy, and drop versions whose spec is not valid like {@link #remove}
+     */
+    private void checkInputSpecs(Index read) {
+        for (int i = read.versions.size() - 1; i >= 0; i--) {
+            ModelVersion entry = read.versions.get(i);
+            if (entry.inputSpec == null) {
+                continue;
+            }
+            try {
+                entry.inputSpec = ModelInputSpec.validated(entry.inputSpec);
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "Invalid input spec of model v" + entry.version + ", removing it", e);
+                if (read.activeVersion == entry.version) {
+                    read.activeVersion = read.previousVersion;
+                    read.previousVersion = BUNDLED_VERSION;
+                } else if (read.previousVersion == entry.version) {
+                    read.previousVersion = BUNDLED_VERSION;
+                }
+                read.versions.remove(i);
+                new File(directory, entry.fileName).delete();
+            }
+        }
+    }
+
+    private void writeIndex() {
+        File file = new File(directory, INDEX_FILE);
+        File temporary = new File(directory, INDEX_FILE + ".tmp");
+        try (Writer writer = new FileWriter(temporary)) {
+            gson.toJson(index, writer);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing model index", e);
+            return;
+        }
+        if (!temporary.renameTo(file)) {
+            Log.e(TAG, "Cannot replace model index");
+        }
+    }
+
+    private static String checksum(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (FileInputStream input = new FileInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+}
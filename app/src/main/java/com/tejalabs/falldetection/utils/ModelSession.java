@@ -0,0 +1,196 @@
+package com.tejalabs.falldetection.utils;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * One TFLite interpreter with its input and output buffers, set up once
+ * Sizes, types and quantization come from the model's first input and output tensor.
+ * Callers fill the primitive float {@link #getInput()} array; {@link #run()} writes it
+ * to a direct buffer (one bulk put for float32, a quantizing pass for int8 and uint8),
+ * invokes the single-input {@code run} API and reads the output back as floats.
+ * Nothing is allocated per inference. Each call's wall time is recorded so latency
+ * percentiles can be compared between builds.
+ *
+ * Up to {@code maxBatch} inputs can go through one invocation: the batch dimension of
+ * the input tensor is resized, which only reallocates tensors when it changes. The
+ * interpreter requires a buffer's capacity to match the tensor exactly, so every batch
+ * size gets its own view of the shared direct buffers.
+ *
+ * Not thread-safe: one session per analysis thread.
+ */
+public class ModelSession implements AutoCloseable {
+
+    private final Interpreter interpreter;
+    private final TensorSpec inputSpec;
+    private final TensorSpec outputSpec;
+    private final int inputSize;
+    private final int outputSize;
+    private final int maxBatch;
+    private final float[] input;
+    private final float[] output;
+
+    // Batch size the input tensor currently has
+    private int tensorBatch = 1;
+    private final int[] batchShape;
+
+    // Direct native-order buffers handed to the interpreter, indexed by batch size - 1,
+    // with float views for float32 tensors
+    private final ByteBuffer[] inputBuffers;
+    private final FloatBuffer[] inputFloats;
+    private final ByteBuffer[] outputBuffers;
+    private final FloatBuffer[] outputFloats;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private long invocationCount = 0;
+    private long batchedInputCount = 0;
+
+    public ModelSession(Interpreter interpreter) {
+        this(interpreter, 1);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the model's tensors are of a type or shape
+     *                                  the session cannot feed
+     */
+    public ModelSession(Interpreter interpreter, int maxBatch) {
+        this(interpreter, TensorSpec.of(interpreter.getInputTensor(0)),
+            TensorSpec.of(interpreter.getOutputTensor(0)), maxBatch);
+    }
+
+    ModelSession(Interpreter interpreter, TensorSpec inputSpec, TensorSpec outputSpec, int maxBatch) {
+        this.interpreter = interpreter;
+        this.inputSpec = inputSpec;
+        this.outputSpec = outputSpec;
+        this.inputSize = inputSpec.getElements();
+        this.outputSize = outputSpec.getElements();
+        this.maxBatch = Math.max(1, maxBatch);
+        input = new float[this.maxBatch * inputSize];
+        output = new float[this.maxBatch * outputSize];
+        batchShape = new int[inputSpec.getRank()];
+
+        inputBuffers = batchViews(inputSize * inputSpec.getBytesPerElement(), this.maxBatch);
+        outputBuffers = batchViews(outputSize * outputSpec.getBytesPerElement(), this.maxBatch);
+        inputFloats = new FloatBuffer[this.maxBatch];
+        outputFloats = new FloatBuffer[this.maxBatch];
+        for (int i = 0; i < this.maxBatch; i++) {
+            inputFloats[i] = inputBuffers[i].asFloatBuffer();
+            outputFloats[i] = outputBuffers[i].asFloatBuffer();
+        }
+    }
+
+    /**
+     * Views of one direct buffer sized for {@code maxBatch} entries, view {@code i}
+     * covering exactly the first {@code i + 1}
+     */
+    private static ByteBuffer[] batchViews(int bytesPerEntry, int maxBatch) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytesPerEntry * maxBatch);
+        ByteBuffer[] views = new ByteBuffer[maxBatch];
+        for (int i = 0; i < maxBatch; i++) {
+            ByteBuffer view = buffer.duplicate();
+            view.limit(bytesPerEntry * (i + 1));
+            views[i] = view.slice().order(ByteOrder.nativeOrder());
+        }
+        return views;
+    }
+
+    /**
+     * Staging array for the next inference, filled by the caller. Input {@code i} of a
+     * batch starts at {@code i * getInputSize()}.
+     */
+    public float[] getInput() {
+        return input;
+    }
+
+    /**
+     * Run one inference on the first input
+     *
+     * @return the output values, overwritten by the next call
+     */
+    public float[] run() {
+        return run(1);
+    }
+
+    /**
+     * Run the first {@code batchSize} inputs in one invocation
+     *
+     * @return the outputs, output {@code i} starting at {@code i * getOutputSize()};
+     *         overwritten by the next call
+     */
+    public float[] run(int batchSize) {
+        if (batchSize < 1 || batchSize > maxBatch) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + maxBatch + ": " + batchSize);
+        }
+        long start = System.nanoTime();
+
+        if (batchSize != tensorBatch) {
+            inputSpec.batchShape(batchSize, batchShape);
+            interpreter.resizeInput(0, batchShape);
+            interpreter.allocateTensors();
+            tensorBatch = batchSize;
+        }
+
+        int inputCount = batchSize * inputSize;
+        int outputCount = batchSize * outputSize;
+        ByteBuffer inputBuffer = inputBuffers[batchSize - 1];
+        ByteBuffer outputBuffer = outputBuffers[batchSize - 1];
+        inputSpec.write(input, inputCount, inputBuffer, inputFloats[batchSize - 1]);
+        inputBuffer.clear();
+        outputBuffer.clear();
+
+        interpreter.run(inputBuffer, outputBuffer);
+
+        outputSpec.read(outputBuffer, outputFloats[batchSize - 1], outputCount, output);
+
+        latency.record((System.nanoTime() - start) / batchSize);
+        invocationCount++;
+        batchedInputCount += batchSize;
+        return output;
+    }
+
+    /**
+     * Wall time per input including the buffer copies, in nanoseconds. A batch records
+     * its time divided by its size.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Average number of inputs per interpreter invocation
+     */
+    public float getAverageBatchSize() {
+        return invocationCount == 0 ? 0.0f : (float) batchedInputCount / invocationCount;
+    }
+
+    public TensorSpec getInputSpec() {
+        return inputSpec;
+    }
+
+    public TensorSpec getOutputSpec() {
+        return outputSpec;
+    }
+
+    /**
+     * Values per input, the staging array holds {@code getMaxBatch()} of them
+     */
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    public int getOutputSize() {
+        return outputSize;
+    }
+
+    public int getMaxBatch() {
+        return maxBatch;
+    }
+
+    @Override
+    public void close() {
+        interpreter.close();
+    }
+}
@@ -0,0 +1,57 @@
+package com.tejalabs.falldetection.utils;
+
+/**
+ * Small fixed-capacity pool of reusable objects
+ * {@link #acquire()} hands out a free object or creates one when the pool is empty;
+ * {@link #release(Object)} returns it, dropping it if the pool is already full.
+ * Safe to use from several threads.
+ */
+public class ObjectPool<T> {
+
+    public interface Factory<T> {
+        T create();
+    }
+
+    private final Factory<T> factory;
+    private final Object[] free;
+    private int freeCount = 0;
+    private long createdCount = 0;
+
+    public ObjectPool(int capacity, Factory<T> factory) {
+        this.factory = factory;
+        this.free = new Object[capacity];
+    }
+
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        synchronized (this) {
+            if (freeCount > 0) {
+                T object = (T) free[--freeCount];
+                free[freeCount] = null;
+                return object;
+            }
+            createdCount++;
+        }
+        return factory.create();
+    }
+
+    public synchronized void release(T object) {
+        if (object == null || freeCount == free.length) {
+            return;
+        }
+        for (int i = 0; i < freeCount; i++) {
+            if (free[i] == object) {
+                return; // Released twice
+            }
+        }
+        free[freeCount++] = object;
+    }
+
+    /**
+     * Objects created because the pool was empty. Stops growing once the pool covers
+     * the number of objects in use at the same time.
+     */
+    public synchronized long getCreatedCount() {
+        return createdCount;
+    }
+}
@@ -0,0 +1,151 @@
+package com.tejalabs.falldetection.utils;
+
+/**
+ * Per-sample orientation estimate from accelerometer and gyroscope
+ * Complementary filter on the "up" direction in the device frame: the gyroscope
+ * rotates the estimate between samples, the accelerometer pulls it back towards the
+ * measured gravity with a time constant of about a second. Accelerometer samples far
+ * from 1g (impacts, free fall) are not trusted for the correction. Without a
+ * gyroscope this reduces to a low-pass filter on the accelerometer.
+ *
+ * From the estimate it derives the earth-frame vertical and horizontal acceleration
+ * of each sample and how far the device tilted since the previous one. Everything is
+ * kept in fields, nothing is allocated per sample. Not thread-safe.
+ */
+public class OrientationEstimator {
+
+    public static final float GRAVITY = 9.81f;
+
+    // Correction time constant: larger trusts the gyroscope longer
+    private static final float TIME_CONSTANT_S = 1.0f;
+
+    // Accelerometer samples within this distance of 1g are used for correction (m/s²)
+    private static final float CORRECTION_TOLERANCE = 2.0f;
+
+    // Longest gap integrated in one step, longer gaps restart from the accelerometer
+    private static final float MAX_STEP_S = 1.0f;
+
+    // Estimated up direction in the device frame (unit vector)
+    private float upX, upY, upZ;
+    private boolean initialized = false;
+    private long lastTimestampNs;
+
+    // Latest gyroscope rate (rad/s)
+    private float rateX, rateY, rateZ;
+
+    // Derived from the latest accelerometer sample
+    private float verticalAcceleration;
+    private float horizontalAcceleration;
+    private float tiltStepDegrees;
+
+    /**
+     * Latest rotation rate (rad/s), applied between the following accelerometer samples
+     */
+    public void onGyroscope(float x, float y, float z) {
+        rateX = x;
+        rateY = y;
+        rateZ = z;
+    }
+
+    /**
+     * Advance the estimate to {@code timestampNs} and correct it with this sample
+     */
+    public void onAccelerometer(long timestampNs, float x, float y, float z) {
+        float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+        float previousX = upX, previousY = upY, previousZ = upZ;
+        float dt = initialized ? (timestampNs - lastTimestampNs) / 1e9f : 0.0f;
+        lastTimestampNs = timestampNs;
+
+        if (!initialized || dt < 0.0f || dt > MAX_STEP_S) {
+            if (magnitude > 0.0f) {
+                upX = x / magnitude;
+                upY = y / magnitude;
+                upZ = z / magnitude;
+                initialized = true;
+            }
+            previousX = upX;
+            previousY = upY;
+            previousZ = upZ;
+        } else {
+            // A world-fixed vector seen from the device turns the other way: d(up)/dt = up × ω
+            float nx = upX + (upY * rateZ - upZ * rateY) * dt;
+            float ny = upY + (upZ * rateX - upX * rateZ) * dt;
+            float nz = upZ + (upX * rateY - upY * rateX) * dt;
+
+            if (magnitude > 0.0f && Math.abs(magnitude - GRAVITY) < CORRECTION_TOLERANCE) {
+                float gain = dt / (TIME_CONSTANT_S + dt);
+                nx += gain * (x / magnitude - nx);
+                ny += gain * (y / magnitude - ny);
+                nz += gain * (z / magnitude - nz);
+            }
+
+            float norm = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (norm > 0.0f) {
+                upX = nx / norm;
+                upY = ny / norm;
+                upZ = nz / norm;
+            }
+        }
+
+        tiltStepDegrees = angleBetween(previousX, previousY, previousZ, upX, upY, upZ);
+
+        // Specific force along up is 1g at rest; the rest of the vector is horizontal
+        float along = x * upX + y * upY + z * upZ;
+        verticalAcceleration = along - GRAVITY;
+        horizontalAcceleration = (float) Math.sqrt(Math.max(0.0f, magnitude * magnitude - along * along));
+    }
+
+    public float getUpX() {
+        return upX;
+    }
+
+    public float getUpY() {
+        return upY;
+    }
+
+    public float getUpZ() {
+        return upZ;
+    }
+
+    /**
+     * Earth-frame vertical acceleration of the latest sample with gravity removed
+     * (m/s², positive up): about 0 at rest, -1g in free fall
+     */
+    public float getVerticalAcceleration() {
+        return verticalAcceleration;
+    }
+
+    /**
+     * Magnitude of the latest sample's acceleration in the horizontal plane (m/s²)
+     */
+    public float getHorizontalAcceleration() {
+        return horizontalAcceleration;
+    }
+
+    /**
+     * Degrees the up direction moved with the latest sample
+     */
+    public float getTiltStepDegrees() {
+        return tiltStepDegrees;
+    }
+
+    /**
+     * Angle in degrees between two unit up vectors
+     */
+    public static float angleBetween(float x1, float y1, float z1, float x2, float y2, float z2) {
+        float crossX = y1 * z2 - z1 * y2;
+        float crossY = z1 * x2 - x1 * z2;
+        float crossZ = x1 * y2 - y1 * x2;
+        float cross = (float) Math.sqrt(crossX * crossX + crossY * crossY + crossZ * crossZ);
+        return (float) Math.toDegrees(Math.atan2(cross, x1 * x2 + y1 * y2 + z1 * z2));
+    }
+
+    public void reset() {
+        initialized = false;
+        upX = upY = upZ = 0.0f;
+        rateX = rateY = rateZ = 0.0f;
+        verticalAcceleration = 0.0f;
+        horizontalAcceleration = 0.0f;
+        tiltStepDegrees = 0.0f;
+    }
+}
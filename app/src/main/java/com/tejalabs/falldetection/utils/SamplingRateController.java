@@ -0,0 +1,100 @@
+package com.tejalabs.falldetection.utils;
+
+/**
+ * Decides when the accelerometer can drop to a low sampling rate
+ * Motion energy is tracked as a smoothed deviation of the acceleration magnitude
+ * from gravity. After a sustained period of stillness the controller asks for the
+ * low rate; any single sample that deviates clearly from gravity switches back to
+ * full rate, so the return latency is bounded by one low-rate sample period.
+ */
+public class SamplingRateController {
+
+    public enum Mode { FULL, LOW }
+
+    private static final float GRAVITY = 9.81f;
+
+    // Smoothed |magnitude - g| below this counts as still (m/s²)
+    private static final float STILL_ENERGY_THRESHOLD = 0.4f;
+
+    // A single sample deviating more than this from g wakes up to full rate (m/s²)
+    private static final float WAKE_DEVIATION_THRESHOLD = 1.5f;
+
+    // How long the device must stay still before dropping the rate
+    private static final long STILL_DURATION_NS = 30L * 1000000000L;
+
+    // Smoothing factor of the motion energy
+    private static final float ENERGY_ALPHA = 0.1f;
+
+    private volatile Mode mode = Mode.FULL;
+    private float energy = 0.0f;
+    private long stillSince = -1;
+
+    // Statistics
+    private volatile long switchCount = 0;
+    private long lowModeEnteredAt = -1;
+    private long lowModeDurationNs = 0;
+
+    /**
+     * Feed one accelerometer sample
+     *
+     * @return the mode the sensors should be running in after this sample
+     */
+    public Mode onSample(long timestampNs, float magnitude) {
+        float deviation = Math.abs(magnitude - GRAVITY);
+        energy += ENERGY_ALPHA * (deviation - energy);
+
+        if (mode == Mode.FULL) {
+            if (energy < STILL_ENERGY_THRESHOLD) {
+                if (stillSince < 0) {
+                    stillSince = timestampNs;
+                } else if (timestampNs - stillSince >= STILL_DURATION_NS) {
+                    mode = Mode.LOW;
+                    switchCount++;
+                    lowModeEnteredAt = timestampNs;
+                }
+            } else {
+                stillSince = -1;
+            }
+        } else if (deviation > WAKE_DEVIATION_THRESHOLD) {
+            mode = Mode.FULL;
+            switchCount++;
+            stillSince = -1;
+            energy = deviation;
+            lowModeDurationNs += timestampNs - lowModeEnteredAt;
+            lowModeEnteredAt = -1;
+        }
+
+        return mode;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Number of rate switches in either direction
+     */
+    public long getSwitchCount() {
+        return switchCount;
+    }
+
+    /**
+     * Total time spent at the low rate, up to {@code nowNs} if currently low
+     */
+    public long getLowModeDurationNs(long nowNs) {
+        long total = lowModeDurationNs;
+        if (mode == Mode.LOW && lowModeEnteredAt >= 0) {
+            total += nowNs - lowModeEnteredAt;
+        }
+        return total;
+    }
+
+    public void reset() {
+        mode = Mode.FULL;
+        energy = 0.0f;
+        stillSince = -1;
+        switchCount = 0;
+        lowModeEnteredAt = -1;
+        lowModeDurationNs = 0;
+    }
+}
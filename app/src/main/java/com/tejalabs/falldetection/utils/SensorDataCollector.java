@@ -2,86 +2,493 @@ package com.tejalabs.falldetection.utils;
 
 import android.content.Context;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * Collects and processes sensor data for fall detection
  * Handles accelerometer, gyroscope, and magnetometer data
+ *
+ * Samples come from a {@link SensorSource}: the device sensors in production, a
+ * recording or a generator in tests. The source's delivery thread only stores
+ * samples. Window analysis and listener callbacks run on a separate analysis thread,
+ * so neither competes with the main looper.
  */
-public class SensorDataCollector implements SensorEventListener {
+public class SensorDataCollector implements SensorSource.Listener {
 
     private static final String TAG = "SensorDataCollector";
 
     // Sensor sampling rate (microseconds)
-    private static final int SENSOR_DELAY = SensorManager.SENSOR_DELAY_GAME; // ~50Hz
-
-    // Data window size for analysis (number of samples)
-    private static final int WINDOW_SIZE = 50; // 1 second at 50Hz
-    private static final int OVERLAP_SIZE = 25; // 50% overlap
-
-    // Sensor data storage
-    private List<Float[]> accelerometerData;
-    private List<Float[]> gyroscopeData;
-    private List<Float[]> magnetometerData;
-    private List<Long> timestamps;
-
-    // Sensor managers and sensors
-    private SensorManager sensorManager;
-    private Sensor accelerometer;
-    private Sensor gyroscope;
-    private Sensor magnetometer;
+    private static final int FULL_RATE_PERIOD_US = 20000; // 50Hz, same as SENSOR_DELAY_GAME
+    private static final int SAMPLING_RATE_HZ = 50;
+
+    // Reduced rate used during sustained stillness. 10Hz still resolves a free-fall dip,
+    // which is what brings the sensors back to full rate before the impact.
+    private static final int LOW_RATE_PERIOD_US = 100000; // 10Hz
+
+    // Batching: longest time the sensor hub may hold samples before delivering them
+    private static final int MAX_REPORT_LATENCY_US = 2000000; // 2 seconds
+
+    // Low-power mode: the source delivers through wake-up sensors, analysis runs under
+    // a short wake lock
+    private static final long ANALYSIS_WAKE_LOCK_TIMEOUT_MS = 5000;
+
+    // Largest window the collector can serve (20 seconds at 50Hz)
+    private static final int MAX_WINDOW_SIZE = SAMPLING_RATE_HZ * 20;
+
+
+    // Sample storage capacity per sensor (rounded up to a power of two). Windows are only
+    // handed over once their batch is complete, so this must cover the largest window
+    // plus the longest report latency (10s in low-power mode).
+    private static final int BUFFER_CAPACITY = MAX_WINDOW_SIZE + SAMPLING_RATE_HZ * 10;
+
+    // Sensor data storage (fixed-capacity primitive rings, oldest samples evicted on append).
+    // Timestamps are SensorEvent.timestamp nanoseconds. Gyroscope and magnetometer samples
+    // are resampled onto the accelerometer timeline and share its sequence numbers.
+    private SensorRingBuffer accelerometerBuffer;
+    private SensorStreamAligner gyroscopeAligner;
+    private SensorStreamAligner magnetometerAligner;
+
+    // Orientation: estimated up direction (unit vector, device frame) for every
+    // accelerometer sample, sharing its sequence numbers (sensor thread only)
+    private final OrientationEstimator orientationEstimator = new OrientationEstimator();
+
+    private SensorRingBuffer orientationBuffer;
+
+    // Delivery health: rate, jitter, gaps and stalls per sensor
+    private final SensorHealthMonitor healthMonitor = new SensorHealthMonitor();
+
+    // Sensors registered besides the accelerometer, only those detection reads (see
+    // setRequiredSensors). Until told otherwise the gyroscope, for the orientation
+    // estimate behind the rule-based features.
+    private static final int[] OPTIONAL_SENSORS = { Sensor.TYPE_GYROSCOPE, Sensor.TYPE_MAGNETIC_FIELD };
+    private volatile int[] optionalSensors = { Sensor.TYPE_GYROSCOPE };
+
+    // Unhealthy checks in a row before the sensors are re-registered, and how often
+    private static final int UNHEALTHY_CHECKS_BEFORE_RESTART = 2;
+    private static final long RESTART_BACKOFF_NS = 60000000000L;
+    private int unhealthyChecksInRow = 0;
+    private long lastRestartNs = 0;
+    private volatile long registrationRestarts = 0;
+
+    // Window resolutions, all reading the same sample storage. The primary stream goes
+    // through the cascade to the data listener, extra streams go to their own listeners.
+    // Configuration changes take effect on the next start.
+    private WindowSpec requestedWindowSpec = WindowSpec.IMPACT;
+    private final List<WindowStream> extraStreams = new ArrayList<>();
+    private WindowStream primaryStream;
+    private WindowStream[] activeStreams;
+
+    // Cascade: windows without a trigger sample skip full analysis when enabled
+    private final ImpactTrigger impactTrigger = new ImpactTrigger();
+    private volatile boolean cascadeEnabled = true;
+    private volatile long windowsAnalyzed = 0;
+    private volatile long windowsSkipped = 0;
+
+    // Adaptive sampling: drop to a low rate while the device is still
+    private final SamplingRateController rateController = new SamplingRateController();
+    private boolean adaptiveSamplingEnabled = SharedPreferencesManager.DEFAULT_ADAPTIVE_SAMPLING_ENABLED;
+    private SamplingRateController.Mode registeredMode = SamplingRateController.Mode.FULL;
+
+    // Hand-off from the sensor thread to the analysis thread. Windows are claimed when
+    // due and published once their batch is complete. Windows without a trigger sample
+    // may only fill part of the queue, the rest is reserved for triggered windows.
+    private static final int WINDOW_QUEUE_CAPACITY = 32;
+    private static final int UNTRIGGERED_WINDOW_LIMIT = 16;
+
+    private SpscSlotQueue<PendingWindow> windowQueue;
+    private final Runnable analysisTask = this::processPendingWindows;
+
+    // Back-pressure metrics
+    private volatile long droppedWindows = 0; // Untriggered, queue over its limit (sensor thread)
+    private volatile long droppedTriggeredWindows = 0; // Queue completely full (sensor thread)
+    private volatile long coalescedWindows = 0; // Stale, skipped for a newer one (analysis thread)
+    private volatile int maxQueueDepth = 0;
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+
+    // Accelerometer samples in the delivery currently being received
+    private int currentBatchSize = 0;
+
+    // Batching mode configuration and statistics
+    private boolean batchingRequested = false;
+    private volatile int lastBatchSize = 0;
+    private volatile int maxBatchSize = 0;
+    private volatile long batchCount = 0;
+    private volatile long batchedSampleCount = 0;
+
+    // Window analysis runs on its own thread, or on an executor supplied for replay runs.
+    // Stopping waits this long for the thread to finish the windows already queued.
+    private static final long ANALYSIS_STOP_TIMEOUT_MS = 2000;
+    private HandlerThread analysisThread;
+    private Executor analysisExecutor;
+    private Executor externalAnalysisExecutor;
+
+    // Delay between the sensor event timestamp and its delivery to us (nanoseconds)
+    private final LatencyHistogram deliveryLatency = new LatencyHistogram();
+
+    // Low-power mode configuration
+    private boolean lowPowerRequested = false;
+    private WakeLockTracker analysisWakeLock;
+
+    // Where samples come from: the device sensors, a recording or a generator
+    private final SensorSource source;
 
     // Data processing
-    private boolean isCollecting = false;
+    private volatile boolean isCollecting = false;
     private SensorDataListener dataListener;
-    private long lastProcessingTime = 0;
-    private static final long PROCESSING_INTERVAL = 100; // Process every 100ms
-
-    // Gravity and linear acceleration
-    private float[] gravity = new float[3];
-    private float[] linearAcceleration = new float[3];
-    private static final float ALPHA = 0.8f; // Low-pass filter constant
 
     public interface SensorDataListener {
         void onDataProcessed(SensorDataWindow dataWindow);
         void onFallDetected(float confidence);
     }
 
+    /**
+     * Data listener that takes consecutive queued primary windows together, so a model
+     * can run them in one invocation. Only windows that own their samples (triggered
+     * windows while the cascade is on) are batched, others still arrive one at a time
+     * through {@link #onDataProcessed}. The array is reused after the call returns.
+     */
+    public interface BatchDataListener extends SensorDataListener {
+        void onDataBatch(SensorDataWindow[] windows, int count);
+    }
+
+    // Most windows handed to a batch listener at once
+    public static final int MAX_ANALYSIS_BATCH = 8;
+    private final SensorDataWindow[] windowBatch = new SensorDataWindow[MAX_ANALYSIS_BATCH];
+
+    /**
+     * Receives the windows of an extra resolution, see {@link #addWindowListener}
+     */
+    public interface WindowListener {
+        void onWindow(SensorDataWindow window);
+    }
+
+    /**
+     * Read-only view of one analysis window over the collector's sample storage
+     * The window does not own its samples: it is reused for every hop and only
+     * valid for the duration of the listener callback.
+     * Call {@link #snapshot()} to keep the data beyond that.
+     *
+     * Gyroscope and magnetometer samples are aligned to the accelerometer: index i of
+     * every stream refers to the same instant, t(i), in SensorEvent.timestamp nanoseconds.
+     * They are empty when the sensor is not available.
+     */
     public static class SensorDataWindow {
-        public List<Float[]> accelerometerData;
-        public List<Float[]> gyroscopeData;
-        public List<Float[]> magnetometerData;
-        public List<Long> timestamps;
-        public float[] features;
+        // Layout of the features array, computed by the collector's streaming statistics
+        public static final int FEATURE_MAGNITUDE_MEAN = 0;
+        public static final int FEATURE_MAGNITUDE_STD = 1;
+        public static final int FEATURE_MAGNITUDE_MAX = 2;
+        public static final int FEATURE_MAGNITUDE_MIN = 3;
+        public static final int FEATURE_MAGNITUDE_RANGE = 4;
+        public static final int FEATURE_X_MEAN = 5;
+        public static final int FEATURE_X_STD = 6;
+        public static final int FEATURE_Y_MEAN = 7;
+        public static final int FEATURE_Y_STD = 8;
+        public static final int FEATURE_Z_MEAN = 9;
+        public static final int FEATURE_Z_STD = 10;
+        public static final int FEATURE_MAX_JERK = 11;
+        // Earth-frame acceleration from the orientation estimate. Vertical is linear
+        // acceleration along up with gravity removed (m/s², -1g in free fall).
+        public static final int FEATURE_VERTICAL_MEAN = 12;
+        public static final int FEATURE_HORIZONTAL_MEAN = 13;
+        public static final int FEATURE_VERTICAL_MIN = 14;
+        public static final int FEATURE_VERTICAL_MAX = 15;
+        // Degrees between the up direction at the start and the end of the window
+        public static final int FEATURE_TILT_CHANGE = 16;
+        // Degrees the up direction travelled over the window, however it turned
+        public static final int FEATURE_CUMULATIVE_TILT = 17;
+        // Strongest frequency of the magnitude spectrum (Hz)
+        public static final int FEATURE_DOMINANT_FREQUENCY = 18;
+        // Power of the magnitude spectrum per band ((m/s²)²): body movement below
+        // 3Hz, tremor and stumbling up to 8Hz, vibration above
+        public static final int FEATURE_BAND_POWER_LOW = 19;
+        public static final int FEATURE_BAND_POWER_MID = 20;
+        public static final int FEATURE_BAND_POWER_HIGH = 21;
+        public static final int FEATURE_COUNT = 22;
+
+        // Band edges of the spectrum features (Hz)
+        public static final float BAND_LOW_MIN_HZ = 0.5f;
+        public static final float BAND_MID_MIN_HZ = 3.0f;
+        public static final float BAND_HIGH_MIN_HZ = 8.0f;
+
+        // Rate the feature thresholds were tuned for
+        public static final float NOMINAL_SAMPLE_RATE_HZ = SAMPLING_RATE_HZ;
+
+        public final SensorRingBuffer.Slice accelerometer;
+        public final SensorRingBuffer.Slice gyroscope;
+        public final SensorRingBuffer.Slice magnetometer;
+        // Estimated up direction per sample (unit vector in the device frame)
+        public final SensorRingBuffer.Slice orientation;
+        public final float[] features;
+
+        // Whether the cascade trigger fired on any sample of this window
+        boolean triggered;
+
+        // Resolution this window was cut at
+        WindowSpec spec;
+
+        SensorDataWindow(SensorRingBuffer.Slice accelerometer, SensorRingBuffer.Slice gyroscope,
+                         SensorRingBuffer.Slice magnetometer, SensorRingBuffer.Slice orientation,
+                         float[] features) {
+            this.accelerometer = accelerometer;
+            this.gyroscope = gyroscope;
+            this.magnetometer = magnetometer;
+            this.orientation = orientation;
+            this.features = features;
+        }
+
+        // Accelerometer shortcuts, the primary stream of every window
+        public int size() {
+            return accelerometer.size();
+        }
+
+        public boolean isEmpty() {
+            return accelerometer.isEmpty();
+        }
+
+        public float x(int i) {
+            return accelerometer.x(i);
+        }
+
+        public float y(int i) {
+            return accelerometer.y(i);
+        }
+
+        public float z(int i) {
+            return accelerometer.z(i);
+        }
+
+        public long t(int i) {
+            return accelerometer.t(i);
+        }
+
+        /**
+         * Sampling rate measured from the window's own timestamps. The collector
+         * changes rate with activity, so consumers should not assume 50Hz.
+         */
+        public float getSampleRateHz() {
+            int n = size();
+            if (n < 2) return NOMINAL_SAMPLE_RATE_HZ;
+            long span = t(n - 1) - t(0);
+            return span > 0 ? (n - 1) * 1e9f / span : NOMINAL_SAMPLE_RATE_HZ;
+        }
+
+        /**
+         * Whether the window contains a candidate impact or free-fall sample
+         */
+        public boolean isTriggered() {
+            return triggered;
+        }
+
+        public WindowSpec getSpec() {
+            return spec;
+        }
+
+        /**
+         * Copy this window into private storage so it can be kept after the callback
+         */
+        public SensorDataWindow snapshot() {
+            SensorDataWindow copy = new SensorDataWindow(accelerometer.copy(), gyroscope.copy(),
+                magnetometer.copy(), orientation.copy(), features.clone());
+            copy.triggered = triggered;
+            copy.spec = spec;
+            return copy;
+        }
+    }
+
+    /**
+     * One window resolution: streaming statistics over its last {@code spec.getSize()}
+     * accelerometer samples (sensor thread) and the reusable view handed to its
+     * listener (analysis thread)
+     */
+    private final class WindowStream {
+        final WindowSpec spec;
+        final WindowListener listener; // null for the primary stream
+        final SensorDataWindow window;
+        int samplesSinceLastWindow = 0;
+
+        final SlidingWindowStats magnitudeStats;
+        final SlidingWindowStats xStats;
+        final SlidingWindowStats yStats;
+        final SlidingWindowStats zStats;
+        final SlidingWindowStats verticalStats;
+        final SlidingWindowStats horizontalStats;
+        final SlidingWindowStats tiltStats;
+        final SlidingDft magnitudeSpectrum;
+
+        WindowStream(WindowSpec spec, WindowListener listener) {
+            this.spec = spec;
+            this.listener = listener;
+            window = new SensorDataWindow(accelerometerBuffer.newSlice(),
+                gyroscopeAligner.getAlignedBuffer().newSlice(),
+                magnetometerAligner.getAlignedBuffer().newSlice(),
+                orientationBuffer.newSlice(),
+                new float[SensorDataWindow.FEATURE_COUNT]);
+            window.spec = spec;
+            magnitudeStats = new SlidingWindowStats(spec.getSize());
+            xStats = new SlidingWindowStats(spec.getSize());
+            yStats = new SlidingWindowStats(spec.getSize());
+            zStats = new SlidingWindowStats(spec.getSize());
+            verticalStats = new SlidingWindowStats(spec.getSize());
+            horizontalStats = new SlidingWindowStats(spec.getSize());
+            tiltStats = new SlidingWindowStats(spec.getSize());
+            magnitudeSpectrum = new SlidingDft(spec.getSize(), firstSpectrumBin(spec.getSize()));
+        }
+
+        /**
+         * Feed one accelerometer sample and its orientation estimate, returns true when
+         * a window is due
+         */
+        boolean add(float x, float y, float z, float magnitude, OrientationEstimator orientation) {
+            magnitudeStats.add(magnitude);
+            magnitudeSpectrum.add(magnitude);
+            xStats.add(x);
+            yStats.add(y);
+            zStats.add(z);
+            verticalStats.add(orientation.getVerticalAcceleration());
+            horizontalStats.add(orientation.getHorizontalAcceleration());
+            tiltStats.add(orientation.getTiltStepDegrees());
+
+            if (++samplesSinceLastWindow >= spec.getHop() && magnitudeStats.isFull()) {
+                samplesSinceLastWindow = 0;
+                return true;
+            }
+            return false;
+        }
 
-        public SensorDataWindow() {
-            accelerometerData = new ArrayList<>();
-            gyroscopeData = new ArrayList<>();
-            magnetometerData = new ArrayList<>();
-            timestamps = new ArrayList<>();
+        /**
+         * Copy the current window statistics into {@code target} (constant time)
+         */
+        void captureFeatures(float[] target) {
+            target[SensorDataWindow.FEATURE_MAGNITUDE_MEAN] = magnitudeStats.getMean();
+            target[SensorDataWindow.FEATURE_MAGNITUDE_STD] = magnitudeStats.getStandardDeviation();
+            target[SensorDataWindow.FEATURE_MAGNITUDE_MAX] = magnitudeStats.getMax();
+            target[SensorDataWindow.FEATURE_MAGNITUDE_MIN] = magnitudeStats.getMin();
+            target[SensorDataWindow.FEATURE_MAGNITUDE_RANGE] = magnitudeStats.getMax() - magnitudeStats.getMin();
+            target[SensorDataWindow.FEATURE_X_MEAN] = xStats.getMean();
+            target[SensorDataWindow.FEATURE_X_STD] = xStats.getStandardDeviation();
+            target[SensorDataWindow.FEATURE_Y_MEAN] = yStats.getMean();
+            target[SensorDataWindow.FEATURE_Y_STD] = yStats.getStandardDeviation();
+            target[SensorDataWindow.FEATURE_Z_MEAN] = zStats.getMean();
+            target[SensorDataWindow.FEATURE_Z_STD] = zStats.getStandardDeviation();
+            target[SensorDataWindow.FEATURE_MAX_JERK] = magnitudeStats.getMaxStep();
+            target[SensorDataWindow.FEATURE_VERTICAL_MEAN] = verticalStats.getMean();
+            target[SensorDataWindow.FEATURE_HORIZONTAL_MEAN] = horizontalStats.getMean();
+            target[SensorDataWindow.FEATURE_VERTICAL_MIN] = verticalStats.getMin();
+            target[SensorDataWindow.FEATURE_VERTICAL_MAX] = verticalStats.getMax();
+            target[SensorDataWindow.FEATURE_TILT_CHANGE] = tiltChange();
+            // Sum of the per-sample steps (the first one leads into the window)
+            target[SensorDataWindow.FEATURE_CUMULATIVE_TILT] = tiltStats.getMean() * tiltStats.getCount();
+
+            float sampleRate = sampleRateHz();
+            target[SensorDataWindow.FEATURE_DOMINANT_FREQUENCY] = magnitudeSpectrum.getDominantFrequency(sampleRate);
+            target[SensorDataWindow.FEATURE_BAND_POWER_LOW] = magnitudeSpectrum.getBandPower(
+                SensorDataWindow.BAND_LOW_MIN_HZ, SensorDataWindow.BAND_MID_MIN_HZ, sampleRate);
+            target[SensorDataWindow.FEATURE_BAND_POWER_MID] = magnitudeSpectrum.getBandPower(
+                SensorDataWindow.BAND_MID_MIN_HZ, SensorDataWindow.BAND_HIGH_MIN_HZ, sampleRate);
+            target[SensorDataWindow.FEATURE_BAND_POWER_HIGH] = magnitudeSpectrum.getBandPower(
+                SensorDataWindow.BAND_HIGH_MIN_HZ, Float.MAX_VALUE, sampleRate);
+        }
+
+        /**
+         * Lowest DFT bin any band reaches: BAND_LOW_MIN_HZ at the full rate. At lower
+         * rates the same frequency sits on a higher bin, so it is covered too.
+         */
+        private int firstSpectrumBin(int size) {
+            int bin = (int) Math.ceil(SensorDataWindow.BAND_LOW_MIN_HZ * size / SAMPLING_RATE_HZ);
+            return Math.max(1, Math.min(bin, size / 2));
+        }
+
+        /**
+         * Rate the window was sampled at, from its first and last timestamp. The
+         * collector slows down during stillness, so the spectrum bins move with it.
+         */
+        private float sampleRateHz() {
+            long last = accelerometerBuffer.getNextSequence() - 1;
+            long first = last - spec.getSize() + 1;
+            if (!accelerometerBuffer.contains(first)) {
+                return SensorDataWindow.NOMINAL_SAMPLE_RATE_HZ;
+            }
+            long span = accelerometerBuffer.getTimestamp(last) - accelerometerBuffer.getTimestamp(first);
+            return span > 0 ? (spec.getSize() - 1) * 1e9f / span : SensorDataWindow.NOMINAL_SAMPLE_RATE_HZ;
+        }
+
+        /**
+         * Angle between the up direction of the window's first and last sample
+         */
+        private float tiltChange() {
+            long last = orientationBuffer.getNextSequence() - 1;
+            long first = last - spec.getSize() + 1;
+            if (!orientationBuffer.contains(first)) {
+                return 0.0f;
+            }
+            return OrientationEstimator.angleBetween(
+                orientationBuffer.getX(first), orientationBuffer.getY(first), orientationBuffer.getZ(first),
+                orientationBuffer.getX(last), orientationBuffer.getY(last), orientationBuffer.getZ(last));
+        }
+
+        void clear() {
+            samplesSinceLastWindow = 0;
+            magnitudeStats.clear();
+            xStats.clear();
+            yStats.clear();
+            zStats.clear();
+            verticalStats.clear();
+            horizontalStats.clear();
+            tiltStats.clear();
+            magnitudeSpectrum.clear();
+        }
+    }
+
+    /**
+     * One queued window. Windows are normally read in place from the collector's
+     * buffers. Triggered primary windows are copied into the slot's own storage when
+     * published, so they survive however far the analysis thread falls behind.
+     */
+    private static class PendingWindow {
+        WindowStream stream;
+        long end;
+        boolean triggered;
+        boolean owned;
+        long publishedAtNs;
+        final float[] features = new float[SensorDataWindow.FEATURE_COUNT];
+
+        final SensorRingBuffer accelerometer;
+        final SensorRingBuffer gyroscope;
+        final SensorRingBuffer magnetometer;
+        final SensorRingBuffer orientation;
+        final SensorDataWindow copy;
+
+        PendingWindow(int ownedSize) {
+            accelerometer = new SensorRingBuffer(ownedSize);
+            gyroscope = new SensorRingBuffer(ownedSize);
+            magnetometer = new SensorRingBuffer(ownedSize);
+            orientation = new SensorRingBuffer(ownedSize);
+            copy = new SensorDataWindow(accelerometer.newSlice(), gyroscope.newSlice(),
+                magnetometer.newSlice(), orientation.newSlice(), features);
         }
     }
 
     public SensorDataCollector(Context context) {
-        sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        this(new LiveSensorSource(context));
+    }
 
-        // Initialize sensors
-        accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
-        gyroscope = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
-        magnetometer = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+    public SensorDataCollector(SensorSource source) {
+        this.source = source;
 
         // Initialize data storage
-        accelerometerData = new CopyOnWriteArrayList<>();
-        gyroscopeData = new CopyOnWriteArrayList<>();
-        magnetometerData = new CopyOnWriteArrayList<>();
-        timestamps = new CopyOnWriteArrayList<>();
+        accelerometerBuffer = new SensorRingBuffer(BUFFER_CAPACITY);
+        orientationBuffer = new SensorRingBuffer(BUFFER_CAPACITY);
+        gyroscopeAligner = new SensorStreamAligner(accelerometerBuffer, BUFFER_CAPACITY);
+        magnetometerAligner = new SensorStreamAligner(accelerometerBuffer, BUFFER_CAPACITY);
+        configureStreams();
 
         Log.d(TAG, "SensorDataCollector initialized");
     }
@@ -90,41 +497,83 @@ public class SensorDataCollector implements SensorEventListener {
         this.dataListener = listener;
     }
 
+    /**
+     * Register the optional sensors among {@code sensorTypes}, typically
+     * {@link TinyMLProcessor#getSensorTypes()}, and unregister the others. Without the
+     * gyroscope the orientation estimate falls back to filtering the accelerometer.
+     * Applies immediately while collecting.
+     */
+    public synchronized void setRequiredSensors(int[] sensorTypes) {
+        int[] wanted = new int[OPTIONAL_SENSORS.length];
+        int count = 0;
+        for (int type : OPTIONAL_SENSORS) {
+            boolean read = false;
+            for (int required : sensorTypes) {
+                read |= required == type;
+            }
+            if (read) {
+                wanted[count++] = type;
+            }
+        }
+        int[] types = new int[count];
+        System.arraycopy(wanted, 0, types, 0, count);
+        if (Arrays.equals(types, optionalSensors)) {
+            return;
+        }
+
+        optionalSensors = types;
+        Log.i(TAG, "Optional sensors: " + Arrays.toString(types));
+        if (isCollecting) {
+            long now = source.getClockNanos();
+            for (int type : OPTIONAL_SENSORS) {
+                healthMonitor.setExpected(type, isOptionalSensorUsed(type), now);
+            }
+            source.setOptionalSensors(types);
+        }
+    }
+
+    private boolean isOptionalSensorUsed(int sensorType) {
+        if (!source.hasSensor(sensorType)) {
+            return false;
+        }
+        for (int type : optionalSensors) {
+            if (type == sensorType) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public boolean startCollection() {
         if (isCollecting) {
             Log.w(TAG, "Sensor collection already started");
             return true;
         }
 
-        boolean success = true;
-
-        // Register accelerometer
-        if (accelerometer != null) {
-            success &= sensorManager.registerListener(this, accelerometer, SENSOR_DELAY);
-        } else {
+        if (!source.hasSensor(Sensor.TYPE_ACCELEROMETER)) {
             Log.e(TAG, "Accelerometer not available");
             return false;
         }
 
-        // Register gyroscope (optional)
-        if (gyroscope != null) {
-            success &= sensorManager.registerListener(this, gyroscope, SENSOR_DELAY);
-        } else {
-            Log.w(TAG, "Gyroscope not available");
-        }
+        configureStreams();
+        clearData();
+        startThreads();
+        registeredMode = SamplingRateController.Mode.FULL;
+        startHealthMonitor();
 
-        // Register magnetometer (optional)
-        if (magnetometer != null) {
-            success &= sensorManager.registerListener(this, magnetometer, SENSOR_DELAY);
-        } else {
-            Log.w(TAG, "Magnetometer not available");
-        }
+        // Mark collecting before starting the source, samples may arrive immediately
+        isCollecting = true;
+        source.setOptionalSensors(optionalSensors);
+        boolean success = source.start(this, FULL_RATE_PERIOD_US,
+            batchingRequested ? MAX_REPORT_LATENCY_US : 0, lowPowerRequested);
 
         if (success) {
-            isCollecting = true;
-            Log.d(TAG, "Sensor collection started");
+            Log.d(TAG, "Sensor collection started from " + source.getName() + " source, "
+                + activeStreams.length + " window resolution(s), primary " + primaryStream.spec);
         } else {
             Log.e(TAG, "Failed to start sensor collection");
+            isCollecting = false;
+            stopThreads();
         }
 
         return success;
@@ -135,133 +584,505 @@ public class SensorDataCollector implements SensorEventListener {
             return;
         }
 
-        sensorManager.unregisterListener(this);
         isCollecting = false;
-        clearData();
-        Log.d(TAG, "Sensor collection stopped");
+        source.stop();
+        stopThreads();
+        Log.d(TAG, "Sensor collection stopped - delivery latency " + deliveryLatency.getSummary(1000000, "ms")
+            + ", average batch: " + getAverageBatchSize() + ", max batch: " + maxBatchSize
+            + ", windows analysed: " + windowsAnalyzed + ", skipped by trigger: " + windowsSkipped
+            + ", coalesced: " + coalescedWindows + ", dropped: " + droppedWindows
+            + ", max queue depth: " + maxQueueDepth + ", queue wait " + queueLatency.getSummary(1000000, "ms")
+            + ", low rate for " + getLowRateDurationMs() + "ms"
+            + ", sensor re-registrations: " + registrationRestarts + ", health " + healthMonitor.getSummary());
+    }
+
+    private void startHealthMonitor() {
+        int[] types = new int[OPTIONAL_SENSORS.length + 1];
+        types[0] = Sensor.TYPE_ACCELEROMETER;
+        int expected = 1;
+        for (int type : OPTIONAL_SENSORS) {
+            if (isOptionalSensorUsed(type)) {
+                types[expected++] = type;
+            }
+        }
+        int[] expectedTypes = new int[expected];
+        System.arraycopy(types, 0, expectedTypes, 0, expected);
+        healthMonitor.start(source.getClockNanos(), FULL_RATE_PERIOD_US * 1000L, expectedTypes);
+        unhealthyChecksInRow = 0;
+        lastRestartNs = 0;
+        registrationRestarts = 0;
+    }
+
+    /**
+     * Check sensor delivery. Call periodically while collecting, from any single thread.
+     * When delivery stays degraded or a sensor stalls over consecutive checks the
+     * sensors are re-registered, at most once per backoff period.
+     *
+     * @return the status of this check
+     */
+    public SensorHealthMonitor.Status checkHealth() {
+        if (!isCollecting) {
+            return SensorHealthMonitor.Status.OK;
+        }
+
+        long now = source.getClockNanos();
+        SensorHealthMonitor.Status status = healthMonitor.check(now, source.getReportLatencyUs() * 1000L);
+        if (status == SensorHealthMonitor.Status.OK) {
+            unhealthyChecksInRow = 0;
+            return status;
+        }
+
+        unhealthyChecksInRow++;
+        if (unhealthyChecksInRow >= UNHEALTHY_CHECKS_BEFORE_RESTART
+                && (registrationRestarts == 0 || now - lastRestartNs >= RESTART_BACKOFF_NS)) {
+            Log.w(TAG, "Sensor delivery " + status + ", re-registering sensors: " + healthMonitor.getSummary());
+            lastRestartNs = now;
+            registrationRestarts++;
+            unhealthyChecksInRow = 0;
+            // Re-registering at the current period unregisters and registers every sensor
+            source.setSamplingPeriod(registeredMode == SamplingRateController.Mode.LOW
+                ? LOW_RATE_PERIOD_US : FULL_RATE_PERIOD_US);
+        }
+        return status;
+    }
+
+    /**
+     * Geometry of the windows handed to the data listener. Takes effect on the next start.
+     */
+    public void setWindowSpec(WindowSpec spec) {
+        checkWindowSize(spec);
+        this.requestedWindowSpec = spec;
+    }
+
+    public WindowSpec getWindowSpec() {
+        return requestedWindowSpec;
+    }
+
+    /**
+     * Deliver windows of another resolution to {@code listener}, on the analysis thread.
+     * All resolutions share the collector's sample storage, nothing is copied per window.
+     * These windows bypass the cascade trigger. Takes effect on the next start.
+     */
+    public void addWindowListener(WindowSpec spec, WindowListener listener) {
+        checkWindowSize(spec);
+        synchronized (extraStreams) {
+            extraStreams.add(new WindowStream(spec, listener));
+        }
+    }
+
+    public void removeWindowListener(WindowListener listener) {
+        synchronized (extraStreams) {
+            for (int i = extraStreams.size() - 1; i >= 0; i--) {
+                if (extraStreams.get(i).listener == listener) {
+                    extraStreams.remove(i);
+                }
+            }
+        }
+    }
+
+    private static void checkWindowSize(WindowSpec spec) {
+        if (spec.getSize() > MAX_WINDOW_SIZE) {
+            throw new IllegalArgumentException("Window larger than " + MAX_WINDOW_SIZE + " samples: " + spec);
+        }
+    }
+
+    /**
+     * Build the window streams for the next session. The queue slots hold copies of
+     * primary windows, so they are rebuilt when the primary size changes.
+     */
+    private void configureStreams() {
+        if (primaryStream == null || !primaryStream.spec.equals(requestedWindowSpec)) {
+            final int ownedSize = requestedWindowSpec.getSize();
+            primaryStream = new WindowStream(requestedWindowSpec, null);
+            windowQueue = new SpscSlotQueue<>(WINDOW_QUEUE_CAPACITY, () -> new PendingWindow(ownedSize));
+        }
+        synchronized (extraStreams) {
+            WindowStream[] streams = new WindowStream[extraStreams.size() + 1];
+            streams[0] = primaryStream;
+            for (int i = 0; i < extraStreams.size(); i++) {
+                streams[i + 1] = extraStreams.get(i);
+            }
+            activeStreams = streams;
+        }
+    }
+
+    /**
+     * Enable or disable hardware FIFO batching. Takes effect on the next start.
+     */
+    public void setBatchingEnabled(boolean enabled) {
+        this.batchingRequested = enabled;
+    }
+
+    /**
+     * Enable or disable low-power mode. Takes effect on the next start.
+     * In low-power mode the source batches on wake-up sensors and the collector holds
+     * {@code analysisWakeLock} only while queued windows are analysed, so the caller
+     * does not need a permanent wake lock.
+     */
+    public void setLowPowerMode(boolean enabled, WakeLockTracker analysisWakeLock) {
+        this.lowPowerRequested = enabled && analysisWakeLock != null;
+        this.analysisWakeLock = analysisWakeLock;
+    }
+
+    public boolean isLowPowerActive() {
+        return isCollecting && source.isLowPowerActive();
+    }
+
+    /**
+     * Enable or disable dropping to a low sampling rate during stillness
+     */
+    public void setAdaptiveSamplingEnabled(boolean enabled) {
+        this.adaptiveSamplingEnabled = enabled;
+    }
+
+    /**
+     * Run window analysis on {@code executor} instead of the collector's own analysis
+     * thread. Replay runs pass a direct executor to analyse on the delivery thread.
+     * Takes effect on the next start.
+     */
+    public void setAnalysisExecutor(Executor executor) {
+        this.externalAnalysisExecutor = executor;
+    }
+
+    /**
+     * Ask the source for the rate the controller wants (sensor thread)
+     */
+    private void applySamplingRate(SamplingRateController.Mode mode) {
+        registeredMode = mode;
+        int periodUs = mode == SamplingRateController.Mode.LOW ? LOW_RATE_PERIOD_US : FULL_RATE_PERIOD_US;
+        healthMonitor.setSamplingPeriod(periodUs * 1000L);
+        source.setSamplingPeriod(periodUs);
+        Log.i(TAG, "Sampling rate switched to " + mode);
+    }
+
+    /**
+     * Start the analysis thread, unless analysis runs on a supplied executor
+     */
+    private void startThreads() {
+        if (externalAnalysisExecutor != null) {
+            analysisExecutor = externalAnalysisExecutor;
+            return;
+        }
+
+        analysisThread = new HandlerThread("FallDetection-Analysis", Process.THREAD_PRIORITY_FOREGROUND);
+        analysisThread.start();
+        analysisExecutor = new Handler(analysisThread.getLooper())::post;
+    }
+
+    /**
+     * Stop the analysis thread once it has run the analysis already posted, and wait
+     * for it: the next start clears and reuses the queue and window state, which must
+     * not race a consumer still running. Windows left in the queue are cleared then.
+     */
+    private void stopThreads() {
+        analysisExecutor = null;
+        if (analysisThread != null) {
+            HandlerThread stopping = analysisThread;
+            analysisThread = null;
+            stopping.quitSafely();
+            if (Thread.currentThread() == stopping) {
+                return;
+            }
+            try {
+                stopping.join(ANALYSIS_STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (stopping.isAlive()) {
+                Log.e(TAG, "Analysis thread still running " + ANALYSIS_STOP_TIMEOUT_MS + "ms after stopping");
+            }
+        }
     }
 
     @Override
-    public void onSensorChanged(SensorEvent event) {
+    public void onSensorSample(int sensorType, long timestamp, float x, float y, float z) {
         if (!isCollecting) return;
 
-        long currentTime = System.currentTimeMillis();
-        Float[] values = new Float[]{event.values[0], event.values[1], event.values[2]};
+        // Time from the sensor hub timestamping the event to us receiving it
+        deliveryLatency.record(source.getClockNanos() - timestamp);
+        healthMonitor.onSample(sensorType, timestamp);
 
-        switch (event.sensor.getType()) {
+        switch (sensorType) {
             case Sensor.TYPE_ACCELEROMETER:
-                // Apply low-pass filter to isolate gravity
-                gravity[0] = ALPHA * gravity[0] + (1 - ALPHA) * event.values[0];
-                gravity[1] = ALPHA * gravity[1] + (1 - ALPHA) * event.values[1];
-                gravity[2] = ALPHA * gravity[2] + (1 - ALPHA) * event.values[2];
-
-                // Calculate linear acceleration (remove gravity)
-                linearAcceleration[0] = event.values[0] - gravity[0];
-                linearAcceleration[1] = event.values[1] - gravity[1];
-                linearAcceleration[2] = event.values[2] - gravity[2];
-
-                accelerometerData.add(values);
-                timestamps.add(currentTime);
+                float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+                impactTrigger.onSample(accelerometerBuffer.getNextSequence(), magnitude);
+                accelerometerBuffer.append(timestamp, x, y, z);
+
+                // Rotate the orientation estimate with the latest gyroscope rate and
+                // correct it with this sample. With batched delivery the gyroscope
+                // events of a batch may arrive after its accelerometer events; the
+                // accelerometer correction bounds the error that causes.
+                orientationEstimator.onAccelerometer(timestamp, x, y, z);
+                orientationBuffer.append(timestamp, orientationEstimator.getUpX(),
+                    orientationEstimator.getUpY(), orientationEstimator.getUpZ());
+
+                if (adaptiveSamplingEnabled) {
+                    SamplingRateController.Mode mode = rateController.onSample(timestamp, magnitude);
+                    if (mode != registeredMode) {
+                        applySamplingRate(mode);
+                    }
+                }
+                currentBatchSize++;
+
+                // Each resolution queues a window every hop of accelerometer samples
+                WindowStream[] streams = activeStreams;
+                for (int i = 0; i < streams.length; i++) {
+                    if (streams[i].add(x, y, z, magnitude, orientationEstimator)) {
+                        onWindowDue(streams[i]);
+                    }
+                }
                 break;
 
             case Sensor.TYPE_GYROSCOPE:
-                gyroscopeData.add(values);
+                orientationEstimator.onGyroscope(x, y, z);
+                gyroscopeAligner.addSample(timestamp, x, y, z);
                 break;
 
             case Sensor.TYPE_MAGNETIC_FIELD:
-                magnetometerData.add(values);
+                magnetometerAligner.addSample(timestamp, x, y, z);
                 break;
         }
+    }
 
-        // Process data periodically
-        if (currentTime - lastProcessingTime > PROCESSING_INTERVAL) {
-            processDataWindow();
-            lastProcessingTime = currentTime;
+    /**
+     * First cascade stage (sensor thread): only primary windows containing a trigger
+     * sample are queued for full analysis, unless the cascade is switched off
+     */
+    private void onWindowDue(WindowStream stream) {
+        long windowStart = accelerometerBuffer.getNextSequence() - stream.spec.getSize();
+        boolean triggered = impactTrigger.hasTriggeredSince(windowStart);
+
+        if (stream == primaryStream && cascadeEnabled && !triggered) {
+            windowsSkipped++;
+            return;
         }
+
+        queueWindow(stream, triggered);
     }
 
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        Log.d(TAG, "Sensor accuracy changed: " + sensor.getName() + " accuracy: " + accuracy);
+    /**
+     * Claim a queue slot for a due window (sensor thread). When the analysis thread is
+     * behind, ordinary windows are dropped once UNTRIGGERED_WINDOW_LIMIT are waiting;
+     * triggered primary windows can use the whole queue.
+     */
+    private void queueWindow(WindowStream stream, boolean triggered) {
+        boolean keep = triggered && stream == primaryStream;
+        if (!keep && windowQueue.size() + windowQueue.getClaimedCount() >= UNTRIGGERED_WINDOW_LIMIT) {
+            droppedWindows++;
+            return;
+        }
+
+        PendingWindow pending = windowQueue.claim();
+        if (pending == null) {
+            if (keep) {
+                droppedTriggeredWindows++;
+                Log.e(TAG, "Analysis queue full, dropped a triggered window");
+            } else {
+                droppedWindows++;
+            }
+            return;
+        }
+        pending.stream = stream;
+        pending.end = accelerometerBuffer.getNextSequence();
+        pending.triggered = triggered;
+        pending.owned = keep;
+        stream.captureFeatures(pending.features);
     }
 
-    private void processDataWindow() {
-        if (accelerometerData.size() < WINDOW_SIZE) {
-            return; // Not enough data yet
+    /**
+     * Hand the windows claimed during this batch to the analysis thread (sensor thread).
+     * Returns false when there were none.
+     */
+    private boolean publishWindows() {
+        int claimed = windowQueue.getClaimedCount();
+        if (claimed == 0) {
+            return false;
         }
 
-        // Create data window
-        SensorDataWindow window = new SensorDataWindow();
+        long now = System.nanoTime();
+        for (int i = 0; i < claimed; i++) {
+            PendingWindow pending = windowQueue.getClaimed(i);
+            pending.publishedAtNs = now;
+            if (pending.owned) {
+                copyWindow(pending);
+            }
+        }
+        windowQueue.publish();
 
-        // Copy data for processing (last WINDOW_SIZE samples)
-        int startIndex = Math.max(0, accelerometerData.size() - WINDOW_SIZE);
+        int depth = windowQueue.size();
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth;
+        }
+        return true;
+    }
 
-        for (int i = startIndex; i < accelerometerData.size(); i++) {
-            window.accelerometerData.add(accelerometerData.get(i));
-            window.timestamps.add(timestamps.get(i));
+    /**
+     * Copy a window's samples into its slot's own storage (sensor thread)
+     */
+    private void copyWindow(PendingWindow pending) {
+        int size = pending.stream.spec.getSize();
+        copySamples(accelerometerBuffer, pending.end, size, pending.accelerometer, pending.copy.accelerometer);
+        copySamples(gyroscopeAligner.getAlignedBuffer(), pending.end, size,
+            pending.gyroscope, pending.copy.gyroscope);
+        copySamples(magnetometerAligner.getAlignedBuffer(), pending.end, size,
+            pending.magnetometer, pending.copy.magnetometer);
+        copySamples(orientationBuffer, pending.end, size, pending.orientation, pending.copy.orientation);
+        pending.copy.triggered = pending.triggered;
+        pending.copy.spec = pending.stream.spec;
+    }
 
-            // Add gyroscope data if available
-            if (i < gyroscopeData.size()) {
-                window.gyroscopeData.add(gyroscopeData.get(i));
+    private static void copySamples(SensorRingBuffer from, long end, int size,
+                                    SensorRingBuffer to, SensorRingBuffer.Slice view) {
+        // Number the copy like the source, so the streams stay aligned by sequence
+        long first = Math.max(end - size, from.getOldestSequence());
+        long stop = Math.min(end, from.getNextSequence());
+        to.skipTo(first);
+        for (long seq = first; seq < stop; seq++) {
+            to.append(from.getTimestamp(seq), from.getX(seq), from.getY(seq), from.getZ(seq));
+        }
+        view.setEndingAt(to.getNextSequence(), size);
+    }
+
+    /**
+     * Called on the sensor thread when the source has re-registered the sensors
+     */
+    @Override
+    public void onSensorsRegistered() {
+        if (!isCollecting) return;
+
+        gyroscopeAligner.restart();
+        magnetometerAligner.restart();
+    }
+
+    /**
+     * Called on the sensor thread after a delivered batch has been fully stored.
+     * Records the batch size and wakes the analysis thread once for all windows in it.
+     */
+    @Override
+    public void onBatchComplete() {
+        if (!isCollecting) return;
+
+        if (currentBatchSize > 0) {
+            lastBatchSize = currentBatchSize;
+            if (currentBatchSize > maxBatchSize) {
+                maxBatchSize = currentBatchSize;
             }
+            batchCount++;
+            batchedSampleCount += currentBatchSize;
+            currentBatchSize = 0;
+        }
 
-            // Add magnetometer data if available
-            if (i < magnetometerData.size()) {
-                window.magnetometerData.add(magnetometerData.get(i));
+        // Complete the aligned gyroscope/magnetometer values for the new windows. Samples
+        // the secondary stream has not reached yet hold its latest value.
+        long accelerometerEnd = accelerometerBuffer.getNextSequence();
+        gyroscopeAligner.alignUpTo(accelerometerEnd);
+        magnetometerAligner.alignUpTo(accelerometerEnd);
+
+        Executor executor = analysisExecutor;
+        if (publishWindows() && executor != null) {
+            // The wake-up sensor only keeps the CPU awake until its events are delivered.
+            // Hold a short wake lock until the analysis thread has worked through them.
+            if (source.isLowPowerActive() && analysisWakeLock != null) {
+                analysisWakeLock.acquire(ANALYSIS_WAKE_LOCK_TIMEOUT_MS);
             }
+            executor.execute(analysisTask);
         }
+    }
 
-        // Extract features
-        window.features = extractFeatures(window);
+    /**
+     * Analyse all queued windows in order (analysis thread). A window read in place is
+     * coalesced into the next one when it has waited longer than its hop behind a newer
+     * window, or its samples have been overwritten. Triggered primary windows are always
+     * analysed.
+     */
+    private void processPendingWindows() {
+        try {
+            while (processNextWindow()) {
+                // Keep going until the queue is drained
+            }
+        } finally {
+            if (source.isLowPowerActive() && analysisWakeLock != null) {
+                analysisWakeLock.release();
+            }
+        }
+    }
 
-        // Notify listener
-        if (dataListener != null) {
-            dataListener.onDataProcessed(window);
+    private boolean processNextWindow() {
+        PendingWindow pending = windowQueue.peek();
+        if (pending == null || !isCollecting) {
+            return false;
         }
 
-        // Check for fall pattern
-        checkForFall(window);
+        SensorDataListener listener = dataListener;
+        if (pending.owned && pending.stream == primaryStream && listener instanceof BatchDataListener) {
+            processWindowBatch((BatchDataListener) listener);
+            return true;
+        }
 
-        // Remove old data (keep overlap)
-        removeOldData();
-    }
+        WindowStream stream = pending.stream;
+        int size = stream.spec.getSize();
+        long waitNs = System.nanoTime() - pending.publishedAtNs;
+        SensorDataWindow window;
+        if (pending.owned) {
+            window = pending.copy;
+        } else {
+            boolean stale = waitNs > stream.spec.getHopNs() && windowQueue.size() > 1;
+            if (stale || !accelerometerBuffer.contains(pending.end - size)) {
+                coalescedWindows++;
+                windowQueue.remove();
+                return true;
+            }
 
-    private float[] extractFeatures(SensorDataWindow window) {
-        List<Float> features = new ArrayList<>();
+            // Point the stream's window at the samples before the queued end (no copy)
+            window = stream.window;
+            window.accelerometer.setEndingAt(pending.end, size);
+            window.gyroscope.setEndingAt(pending.end, size);
+            window.magnetometer.setEndingAt(pending.end, size);
+            window.orientation.setEndingAt(pending.end, size);
+            System.arraycopy(pending.features, 0, window.features, 0, SensorDataWindow.FEATURE_COUNT);
+            window.triggered = pending.triggered;
+        }
+        queueLatency.record(waitNs);
 
-        if (!window.accelerometerData.isEmpty()) {
-            // Calculate magnitude of acceleration
-            List<Float> magnitudes = new ArrayList<>();
-            for (Float[] acc : window.accelerometerData) {
-                float magnitude = (float) Math.sqrt(acc[0]*acc[0] + acc[1]*acc[1] + acc[2]*acc[2]);
-                magnitudes.add(magnitude);
-            }
+        if (stream == primaryStream) {
+            windowsAnalyzed++;
 
-            // Statistical features
-            features.add(calculateMean(magnitudes));
-            features.add(calculateStandardDeviation(magnitudes));
-            features.add(calculateMax(magnitudes));
-            features.add(calculateMin(magnitudes));
-            features.add(calculateRange(magnitudes));
-
-            // Add individual axis statistics
-            for (int axis = 0; axis < 3; axis++) {
-                List<Float> axisData = new ArrayList<>();
-                for (Float[] acc : window.accelerometerData) {
-                    axisData.add(acc[axis]);
-                }
-                features.add(calculateMean(axisData));
-                features.add(calculateStandardDeviation(axisData));
+            // Notify listener
+            if (dataListener != null) {
+                dataListener.onDataProcessed(window);
             }
+
+            // Check for fall pattern
+            checkForFall(window);
+        } else {
+            stream.listener.onWindow(window);
         }
 
-        // Convert to array
-        float[] featureArray = new float[features.size()];
-        for (int i = 0; i < features.size(); i++) {
-            featureArray[i] = features.get(i);
+        // The slot owns the triggered window's samples, release it only when done
+        windowQueue.remove();
+        return true;
+    }
+
+    /**
+     * Hand the run of owned primary windows at the head of the queue over together
+     */
+    private void processWindowBatch(BatchDataListener listener) {
+        long now = System.nanoTime();
+        int count = 0;
+        PendingWindow next;
+        while (count < MAX_ANALYSIS_BATCH && (next = windowQueue.peek(count)) != null
+                && next.owned && next.stream == primaryStream) {
+            queueLatency.record(now - next.publishedAtNs);
+            windowBatch[count++] = next.copy;
         }
+        windowsAnalyzed += count;
+
+        listener.onDataBatch(windowBatch, count);
 
-        return featureArray;
+        for (int i = 0; i < count; i++) {
+            windowBatch[i] = null;
+            windowQueue.remove();
+        }
     }
 
     private void checkForFall(SensorDataWindow window) {
@@ -270,71 +1091,185 @@ public class SensorDataCollector implements SensorEventListener {
         // The actual fall detection happens in FallDetectionService via TinyMLProcessor
     }
 
-    private void removeOldData() {
-        int removeCount = WINDOW_SIZE - OVERLAP_SIZE;
+    private void clearData() {
+        accelerometerBuffer.clear();
+        orientationBuffer.clear();
+        orientationEstimator.reset();
+        gyroscopeAligner.clear();
+        magnetometerAligner.clear();
+        for (WindowStream stream : activeStreams) {
+            stream.clear();
+        }
+        impactTrigger.reset();
+        rateController.reset();
+        windowsAnalyzed = 0;
+        windowsSkipped = 0;
+        windowQueue.clear();
+        droppedWindows = 0;
+        droppedTriggeredWindows = 0;
+        coalescedWindows = 0;
+        maxQueueDepth = 0;
+        queueLatency.reset();
+        currentBatchSize = 0;
+        lastBatchSize = 0;
+        maxBatchSize = 0;
+        batchCount = 0;
+        batchedSampleCount = 0;
+        deliveryLatency.reset();
+    }
 
-        if (accelerometerData.size() > removeCount) {
-            for (int i = 0; i < removeCount; i++) {
-                accelerometerData.remove(0);
-                timestamps.remove(0);
+    public boolean isCollecting() {
+        return isCollecting;
+    }
 
-                if (!gyroscopeData.isEmpty()) {
-                    gyroscopeData.remove(0);
-                }
+    /**
+     * Switch the cascade trigger on or off. When off every window is analysed.
+     */
+    public void setCascadeEnabled(boolean enabled) {
+        this.cascadeEnabled = enabled;
+    }
 
-                if (!magnetometerData.isEmpty()) {
-                    magnetometerData.remove(0);
-                }
-            }
-        }
+    public boolean isCascadeEnabled() {
+        return cascadeEnabled;
     }
 
-    private void clearData() {
-        accelerometerData.clear();
-        gyroscopeData.clear();
-        magnetometerData.clear();
-        timestamps.clear();
+    /**
+     * Magnitudes (m/s²) above the impact or below the free-fall threshold trigger analysis
+     */
+    public void setTriggerThresholds(float impactThreshold, float freeFallThreshold) {
+        impactTrigger.setThresholds(impactThreshold, freeFallThreshold);
     }
 
-    // Statistical helper methods
-    private float calculateMean(List<Float> data) {
-        float sum = 0;
-        for (float value : data) {
-            sum += value;
-        }
-        return sum / data.size();
+    /**
+     * Windows analysed since collection started, excluding coalesced and dropped ones
+     */
+    public long getWindowsAnalyzed() {
+        return windowsAnalyzed;
     }
 
-    private float calculateStandardDeviation(List<Float> data) {
-        float mean = calculateMean(data);
-        float sum = 0;
-        for (float value : data) {
-            sum += Math.pow(value - mean, 2);
-        }
-        return (float) Math.sqrt(sum / data.size());
+    /**
+     * Windows the cascade trigger skipped since collection started
+     */
+    public long getWindowsSkipped() {
+        return windowsSkipped;
     }
 
-    private float calculateMax(List<Float> data) {
-        float max = Float.MIN_VALUE;
-        for (float value : data) {
-            if (value > max) max = value;
-        }
-        return max;
+    public long getTriggerCount() {
+        return impactTrigger.getTriggerCount();
     }
 
-    private float calculateMin(List<Float> data) {
-        float min = Float.MAX_VALUE;
-        for (float value : data) {
-            if (value < min) min = value;
-        }
-        return min;
+    /**
+     * Rate the sensors are currently registered at
+     */
+    public SamplingRateController.Mode getSamplingMode() {
+        return registeredMode;
     }
 
-    private float calculateRange(List<Float> data) {
-        return calculateMax(data) - calculateMin(data);
+    public long getSamplingRateSwitchCount() {
+        return rateController.getSwitchCount();
     }
 
-    public boolean isCollecting() {
-        return isCollecting;
+    /**
+     * Time spent at the low sampling rate since collection started
+     */
+    public long getLowRateDurationMs() {
+        return rateController.getLowModeDurationNs(source.getClockNanos()) / 1000000;
+    }
+
+    /**
+     * Whether the current collection session uses hardware FIFO batching
+     */
+    public boolean isBatchingActive() {
+        return source.getReportLatencyUs() > 0;
+    }
+
+    /**
+     * Report latency granted to the sensor hub in batching mode (0 when streaming)
+     */
+    public int getReportLatencyUs() {
+        return source.getReportLatencyUs();
+    }
+
+    /**
+     * Accelerometer samples in the most recently delivered batch
+     */
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public float getAverageBatchSize() {
+        long batches = batchCount;
+        return batches == 0 ? 0.0f : (float) batchedSampleCount / batches;
+    }
+
+    /**
+     * Untriggered windows dropped because the analysis queue was over its limit
+     */
+    public long getDroppedWindowCount() {
+        return droppedWindows;
+    }
+
+    /**
+     * Triggered windows lost because the analysis queue was completely full. Should stay 0.
+     */
+    public long getDroppedTriggeredWindowCount() {
+        return droppedTriggeredWindows;
+    }
+
+    /**
+     * Untriggered windows skipped because a newer window was already waiting
+     */
+    public long getCoalescedWindowCount() {
+        return coalescedWindows;
+    }
+
+    /**
+     * Windows waiting for the analysis thread
+     */
+    public int getQueueDepth() {
+        return windowQueue.size();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Distribution of the time windows wait in the queue before analysis, in nanoseconds
+     */
+    public LatencyHistogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    /**
+     * Current time on the sample timestamp base
+     */
+    public long getClockNanos() {
+        return source.getClockNanos();
+    }
+
+    /**
+     * Per-sensor delivery rate, jitter, gaps and stalls of the current session
+     */
+    public SensorHealthMonitor getHealthMonitor() {
+        return healthMonitor;
+    }
+
+    /**
+     * Times the sensors were re-registered because delivery degraded
+     */
+    public long getRegistrationRestartCount() {
+        return registrationRestarts;
+    }
+
+    /**
+     * Distribution of the delay between sensor event timestamps and delivery, in nanoseconds
+     */
+    public LatencyHistogram getDeliveryLatency() {
+        return deliveryLatency;
     }
 }
@@ -0,0 +1,309 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+/**
+ * Checks that the sensors actually deliver at the rate they were registered for
+ * Vendor throttling in Doze or a sensor that silently stops degrades detection
+ * without any error. Samples are recorded on the sensor thread (constant time, no
+ * allocation): inter-arrival jitter against the expected period and gaps of
+ * several periods. {@link #check} is called periodically from another thread and
+ * derives the effective rate since the previous check and whether a sensor has
+ * stalled. Timestamps are sensor timestamps, so batching does not count as jitter.
+ */
+public class SensorHealthMonitor {
+
+    public enum Status { OK, DEGRADED, STALLED }
+
+    // An interval this many periods long counts as a gap
+    private static final int GAP_PERIODS = 3;
+
+    // Effective rate below this share of the registered rate is degraded
+    private static final float MIN_RATE_FRACTION = 0.7f;
+
+    // Fewer new samples than this since the last check are too few to judge the rate
+    private static final int MIN_RATE_SAMPLES = 10;
+
+    // No sample for this long beyond the report latency is a stall
+    private static final long STALL_NS = 5000000000L;
+
+    /**
+     * Delivery statistics of one sensor
+     */
+    public static final class Channel {
+        private final String name;
+        private volatile boolean expected;
+        // When the sensor was last registered, a stall is counted from here at the earliest
+        private long expectedSinceNs;
+
+        // Sensor thread
+        private volatile long sampleCount;
+        private volatile long lastTimestampNs;
+        private int lastGeneration;
+        private volatile long gapCount;
+        private volatile long maxGapNs;
+        private final LatencyHistogram jitter = new LatencyHistogram();
+
+        // Checking thread
+        private long checkedCount;
+        private long checkedTimestampNs;
+        private volatile float effectiveRateHz;
+        private volatile Status status = Status.OK;
+
+        Channel(String name) {
+            this.name = name;
+        }
+
+        void onSample(long timestampNs, long periodNs, int generation) {
+            long count = sampleCount;
+            // The interval across a rate switch belongs to neither period
+            if (count > 0 && generation == lastGeneration) {
+                long interval = timestampNs - lastTimestampNs;
+                jitter.record(Math.abs(interval - periodNs));
+                if (interval > GAP_PERIODS * periodNs) {
+                    gapCount++;
+                    if (interval > maxGapNs) {
+                        maxGapNs = interval;
+                    }
+                }
+            }
+            lastTimestampNs = timestampNs;
+            lastGeneration = generation;
+            sampleCount = count + 1;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Whether the sensor was registered and should be delivering
+         */
+        public boolean isExpected() {
+            return expected;
+        }
+
+        public long getSampleCount() {
+            return sampleCount;
+        }
+
+        /**
+         * Rate measured between the last two checks (Hz)
+         */
+        public float getEffectiveRateHz() {
+            return effectiveRateHz;
+        }
+
+        /**
+         * Distribution of |interval - registered period| between samples, in nanoseconds
+         */
+        public LatencyHistogram getJitter() {
+            return jitter;
+        }
+
+        public long getGapCount() {
+            return gapCount;
+        }
+
+        public long getMaxGapNs() {
+            return maxGapNs;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        void reset() {
+            sampleCount = 0;
+            lastTimestampNs = 0;
+            gapCount = 0;
+            maxGapNs = 0;
+            jitter.reset();
+            checkedCount = 0;
+            checkedTimestampNs = 0;
+            expectedSinceNs = 0;
+            effectiveRateHz = 0.0f;
+            status = Status.OK;
+        }
+    }
+
+    private final Channel accelerometer = new Channel("accelerometer");
+    private final Channel gyroscope = new Channel("gyroscope");
+    private final Channel magnetometer = new Channel("magnetometer");
+    private final Channel[] channels = { accelerometer, gyroscope, magnetometer };
+
+    private volatile long periodNs;
+    private volatile int periodGeneration = 0;
+    private int checkedGeneration = 0;
+    private long startedAtNs;
+
+    // Statistics
+    private volatile Status status = Status.OK;
+    private long unhealthyCheckCount = 0;
+
+    /**
+     * Start a session: clear everything and expect samples from the given sensor types
+     */
+    public synchronized void start(long nowNs, long periodNs, int... sensorTypes) {
+        for (Channel channel : channels) {
+            channel.reset();
+            channel.expected = false;
+        }
+        for (int type : sensorTypes) {
+            Channel channel = channel(type);
+            if (channel != null) {
+                channel.expected = true;
+            }
+        }
+        this.periodNs = periodNs;
+        this.startedAtNs = nowNs;
+        checkedGeneration = ++periodGeneration;
+        status = Status.OK;
+        unhealthyCheckCount = 0;
+    }
+
+    /**
+     * A sensor was registered or unregistered during the session. A sensor that starts
+     * to be expected gets its rate judged afresh and is not stalled for the time it was off.
+     */
+    public synchronized void setExpected(int sensorType, boolean expected, long nowNs) {
+        Channel channel = channel(sensorType);
+        if (channel == null || channel.expected == expected) {
+            return;
+        }
+        if (expected) {
+            channel.checkedCount = 0;
+            channel.expectedSinceNs = nowNs;
+            channel.status = Status.OK;
+        }
+        channel.expected = expected;
+    }
+
+    /**
+     * The sensors were re-registered at another period (sensor thread). The rate is
+     * judged again from the next check on.
+     */
+    public void setSamplingPeriod(long periodNs) {
+        this.periodNs = periodNs;
+        periodGeneration++;
+    }
+
+    /**
+     * Record one sample (sensor thread)
+     */
+    public void onSample(int sensorType, long timestampNs) {
+        Channel channel = channel(sensorType);
+        if (channel != null) {
+            channel.onSample(timestampNs, periodNs, periodGeneration);
+        }
+    }
+
+    /**
+     * Update the rates and decide whether delivery is healthy
+     *
+     * @param nowNs current time on the sample timestamp base
+     * @param reportLatencyNs how long samples may legitimately sit in the sensor FIFO
+     * @return the worst status of the expected sensors
+     */
+    public synchronized Status check(long nowNs, long reportLatencyNs) {
+        int generation = periodGeneration;
+        boolean judgeRate = generation == checkedGeneration;
+        checkedGeneration = generation;
+        float expectedRateHz = 1e9f / periodNs;
+
+        Status worst = Status.OK;
+        for (Channel channel : channels) {
+            if (!channel.expected) {
+                continue;
+            }
+
+            long count = channel.sampleCount;
+            long last = channel.lastTimestampNs;
+            long newSamples = count - channel.checkedCount;
+            Status channelStatus = Status.OK;
+
+            if (newSamples >= MIN_RATE_SAMPLES && channel.checkedCount > 0 && last > channel.checkedTimestampNs) {
+                channel.effectiveRateHz = newSamples * 1e9f / (last - channel.checkedTimestampNs);
+                if (judgeRate && channel.effectiveRateHz < MIN_RATE_FRACTION * expectedRateHz) {
+                    channelStatus = Status.DEGRADED;
+                }
+            }
+
+            long silentSince = Math.max(count == 0 ? startedAtNs : last, channel.expectedSinceNs);
+            if (nowNs - silentSince > reportLatencyNs + STALL_NS) {
+                channelStatus = Status.STALLED;
+                channel.effectiveRateHz = 0.0f;
+            }
+
+            if (newSamples >= MIN_RATE_SAMPLES || count == 0 || channelStatus == Status.STALLED) {
+                channel.checkedCount = count;
+                channel.checkedTimestampNs = last;
+            }
+            channel.status = channelStatus;
+            if (channelStatus.ordinal() > worst.ordinal()) {
+                worst = channelStatus;
+            }
+        }
+
+        status = worst;
+        if (worst != Status.OK) {
+            unhealthyCheckCount++;
+        }
+        return worst;
+    }
+
+    /**
+     * Result of the latest check
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getUnhealthyCheckCount() {
+        return unhealthyCheckCount;
+    }
+
+    /**
+     * Registered sampling rate (Hz)
+     */
+    public float getExpectedRateHz() {
+        return 1e9f / periodNs;
+    }
+
+    public Channel getChannel(int sensorType) {
+        return channel(sensorType);
+    }
+
+    /**
+     * One line per expected sensor, for logs and field diagnostics
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(status).append(" at ").append(String.format("%.1f", getExpectedRateHz())).append("Hz");
+        for (Channel channel : channels) {
+            if (!channel.expected) {
+                continue;
+            }
+            summary.append("\n").append(channel.name).append(": ").append(channel.status)
+                .append(String.format(", %.1fHz", channel.effectiveRateHz))
+                .append(", samples ").append(channel.sampleCount)
+                .append(", gaps ").append(channel.gapCount)
+                .append(" (max ").append(channel.maxGapNs / 1000000).append("ms)")
+                .append(", jitter ").append(channel.jitter.getSummary(1000000, "ms"));
+        }
+        return summary.toString();
+    }
+
+    private Channel channel(int sensorType) {
+        switch (sensorType) {
+            case Sensor.TYPE_ACCELEROMETER:
+                return accelerometer;
+            case Sensor.TYPE_GYROSCOPE:
+                return gyroscope;
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                return magnetometer;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.tejalabs.falldetection.utils;
+
+/**
+ * Fixed-capacity ring buffer for three-axis sensor samples
+ * Stores interleaved x/y/z values and timestamps in primitive arrays so that
+ * appending a sample and evicting the oldest one are O(1) and allocation-free
+ *
+ * Samples are addressed by sequence number: the n-th sample ever appended has
+ * sequence n. Only the last {@link #capacity()} sequences remain readable.
+ */
+public class SensorRingBuffer {
+
+    private final int capacity;
+    private final int mask;
+
+    // Interleaved x, y, z values and matching timestamps
+    private final float[] values;
+    private final long[] timestamps;
+
+    // Sequence number of the next sample to be written. Volatile so that a reader
+    // on another thread can check whether a range has been overwritten.
+    private volatile long nextSequence = 0;
+
+    // Samples before this sequence were never written (see skipTo)
+    private long firstSequence = 0;
+
+    /**
+     * @param minCapacity minimum number of samples to retain, rounded up to a power of two
+     */
+    public SensorRingBuffer(int minCapacity) {
+        if (minCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + minCapacity);
+        }
+        capacity = roundUpToPowerOfTwo(minCapacity);
+        mask = capacity - 1;
+        values = new float[capacity * 3];
+        timestamps = new long[capacity];
+    }
+
+    private static int roundUpToPowerOfTwo(int value) {
+        int highest = Integer.highestOneBit(value);
+        return highest == value ? value : highest << 1;
+    }
+
+    /**
+     * Append a sample, overwriting the oldest one when the buffer is full
+     */
+    public void append(long timestamp, float x, float y, float z) {
+        int slot = (int) (nextSequence & mask);
+        int offset = slot * 3;
+        values[offset] = x;
+        values[offset + 1] = y;
+        values[offset + 2] = z;
+        timestamps[slot] = timestamp;
+        nextSequence++;
+    }
+
+    /**
+     * Number of samples currently retained
+     */
+    public int size() {
+        return (int) Math.min(nextSequence, capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isEmpty() {
+        return nextSequence == 0;
+    }
+
+    /**
+     * Sequence number of the oldest retained sample
+     */
+    public long getOldestSequence() {
+        return Math.max(firstSequence, nextSequence - capacity);
+    }
+
+    /**
+     * Sequence number the next appended sample will get (one past the newest)
+     */
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Check whether a sequence number is still held by the buffer
+     */
+    public boolean contains(long sequence) {
+        return sequence >= getOldestSequence() && sequence < nextSequence;
+    }
+
+    public float getX(long sequence) {
+        return values[(int) (sequence & mask) * 3];
+    }
+
+    public float getY(long sequence) {
+        return values[(int) (sequence & mask) * 3 + 1];
+    }
+
+    public float getZ(long sequence) {
+        return values[(int) (sequence & mask) * 3 + 2];
+    }
+
+    public long getTimestamp(long sequence) {
+        return timestamps[(int) (sequence & mask)];
+    }
+
+    /**
+     * Drop all samples and continue numbering at {@code sequence}.
+     * Used to keep a derived buffer indexed by the sequence numbers of another one.
+     */
+    public void skipTo(long sequence) {
+        firstSequence = sequence;
+        nextSequence = sequence;
+    }
+
+    /**
+     * Drop all samples and restart sequence numbering from zero
+     */
+    public void clear() {
+        skipTo(0);
+    }
+
+    /**
+     * Create an empty slice that can later be pointed at this buffer
+     */
+    public Slice newSlice() {
+        Slice slice = new Slice();
+        slice.buffer = this;
+        return slice;
+    }
+
+    /**
+     * Read-only (offset, length) view over a run of samples in a ring buffer
+     * Indexing is relative to the start of the slice, so x(0) is the oldest sample.
+     * The view does not copy data and is only meaningful while the underlying
+     * samples have not been overwritten; use {@link #copy()} to keep them.
+     */
+    public static class Slice {
+        private SensorRingBuffer buffer;
+        private long start;
+        private int length;
+
+        /**
+         * Point this slice at the {@code length} samples before sequence {@code end}
+         * (or fewer if the older ones have already been evicted)
+         */
+        void setEndingAt(long end, int length) {
+            end = Math.min(end, buffer.getNextSequence());
+            this.start = Math.max(buffer.getOldestSequence(), end - length);
+            this.length = (int) Math.max(0, end - this.start);
+        }
+
+        /**
+         * Point this slice at an explicit range of sequence numbers
+         */
+        void setRange(long start, int length) {
+            this.start = start;
+            this.length = length;
+        }
+
+        public int size() {
+            return length;
+        }
+
+        public boolean isEmpty() {
+            return length == 0;
+        }
+
+        public float x(int i) {
+            return buffer.getX(start + i);
+        }
+
+        public float y(int i) {
+            return buffer.getY(start + i);
+        }
+
+        public float z(int i) {
+            return buffer.getZ(start + i);
+        }
+
+        public long t(int i) {
+            return buffer.getTimestamp(start + i);
+        }
+
+        /**
+         * Sequence number of the first sample in the slice
+         */
+        public long getStartSequence() {
+            return start;
+        }
+
+        /**
+         * Check whether every sample in the slice is still held by the buffer
+         */
+        public boolean isValid() {
+            return length == 0 || (buffer.contains(start) && buffer.contains(start + length - 1));
+        }
+
+        /**
+         * Bulk copy the interleaved x/y/z values of {@code count} samples starting at
+         * {@code from} into {@code target} at {@code offset} (3 floats per sample)
+         */
+        public void copyValues(int from, int count, float[] target, int offset) {
+            int slot = (int) ((start + from) & buffer.mask);
+            int first = Math.min(count, buffer.capacity - slot);
+            System.arraycopy(buffer.values, slot * 3, target, offset, first * 3);
+            if (first < count) {
+                // Wrapped around the end of the ring
+                System.arraycopy(buffer.values, 0, target, offset + first * 3, (count - first) * 3);
+            }
+        }
+
+        /**
+         * Copy the samples into a private buffer so they outlive the ring
+         */
+        public Slice copy() {
+            SensorRingBuffer copyBuffer = new SensorRingBuffer(Math.max(1, length));
+            // Keep the sequence numbers, so copies of aligned slices stay aligned
+            copyBuffer.skipTo(start);
+            for (int i = 0; i < length; i++) {
+                copyBuffer.append(t(i), x(i), y(i), z(i));
+            }
+            Slice copy = copyBuffer.newSlice();
+            copy.setRange(start, length);
+            return copy;
+        }
+    }
+}
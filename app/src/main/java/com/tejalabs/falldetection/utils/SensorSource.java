@@ -0,0 +1,77 @@
+package com.tejalabs.falldetection.utils;
+
+/**
+ * Where {@link SensorDataCollector} gets its samples from
+ * The live implementation reads the device sensors; the unit tests' replay and
+ * synthetic sources push recorded or generated data through the same pipeline, so
+ * it can be tested and measured on a machine without sensors.
+ *
+ * A source delivers all samples on a single thread of its own. Sensor types are the
+ * {@code android.hardware.Sensor.TYPE_*} constants.
+ */
+public interface SensorSource {
+
+    interface Listener {
+        /**
+         * One sample. {@code timestampNs} is on the same base as {@link #getClockNanos()}.
+         */
+        void onSensorSample(int sensorType, long timestampNs, float x, float y, float z);
+
+        /**
+         * Every sample of the current delivery (a single event or a FIFO batch) has been passed on
+         */
+        void onBatchComplete();
+
+        /**
+         * The sensors were unregistered and registered again while running, after a
+         * period or sensor change. Samples before and after are separated by a gap.
+         */
+        void onSensorsRegistered();
+    }
+
+    /**
+     * Whether samples of the given sensor type can be delivered
+     */
+    boolean hasSensor(int sensorType);
+
+    /**
+     * Start delivering samples to {@code listener}
+     *
+     * @param samplingPeriodUs requested accelerometer sampling period
+     * @param maxReportLatencyUs longest time samples may be batched before delivery, 0 to stream
+     * @param lowPower deliver through wake-up sensors so the caller can let the CPU sleep
+     * @return false if the source could not be started
+     */
+    boolean start(Listener listener, int samplingPeriodUs, int maxReportLatencyUs, boolean lowPower);
+
+    /**
+     * Sensors to deliver besides the accelerometer, which is always delivered. Sensors
+     * not listed are not registered, saving their power. Until called, every available
+     * sensor is delivered. Takes effect immediately when running.
+     */
+    void setOptionalSensors(int[] sensorTypes);
+
+    /**
+     * Change the sampling period while running. May be called from the delivery thread.
+     */
+    void setSamplingPeriod(int samplingPeriodUs);
+
+    void stop();
+
+    /**
+     * Current time on the sample timestamp base, used to measure delivery latency
+     */
+    long getClockNanos();
+
+    /**
+     * Report latency actually in use, 0 when samples are streamed
+     */
+    int getReportLatencyUs();
+
+    /**
+     * Whether samples arrive through wake-up sensors
+     */
+    boolean isLowPowerActive();
+
+    String getName();
+}
@@ -0,0 +1,140 @@
+package com.tejalabs.falldetection.utils;
+
+/**
+ * Resamples a secondary sensor stream (gyroscope, magnetometer) onto the timeline
+ * of the primary accelerometer stream
+ *
+ * For every accelerometer sample the secondary value at the same timestamp is
+ * linearly interpolated from the two surrounding secondary samples. The result is
+ * stored in an aligned ring that shares the accelerometer's sequence numbers, so
+ * accelerometer sample n and aligned sample n describe the same instant.
+ * All methods must be called from the thread that writes the primary buffer.
+ */
+public class SensorStreamAligner {
+
+    private final SensorRingBuffer primary;
+    private final SensorRingBuffer secondary;
+    private final SensorRingBuffer aligned;
+
+    // Secondary sequence of the newest sample at or before the primary sample being aligned
+    private long cursor = 0;
+
+    public SensorStreamAligner(SensorRingBuffer primary, int secondaryCapacity) {
+        this.primary = primary;
+        this.secondary = new SensorRingBuffer(secondaryCapacity);
+        this.aligned = new SensorRingBuffer(primary.capacity());
+    }
+
+    /**
+     * Store a raw secondary sample and align every primary sample it now brackets
+     */
+    public void addSample(long timestamp, float x, float y, float z) {
+        secondary.append(timestamp, x, y, z);
+        alignAvailable(primary.getNextSequence(), false);
+    }
+
+    /**
+     * Make sure every primary sample before {@code primaryEnd} has an aligned value.
+     * Samples newer than the last secondary sample hold that sample's value.
+     */
+    public void alignUpTo(long primaryEnd) {
+        alignAvailable(primaryEnd, true);
+    }
+
+    private void alignAvailable(long primaryEnd, boolean allowHold) {
+        if (secondary.isEmpty()) {
+            return;
+        }
+
+        // Never try to align samples the primary ring has already evicted
+        long next = aligned.getNextSequence();
+        long oldest = primary.getOldestSequence();
+        if (next < oldest) {
+            aligned.skipTo(oldest);
+            next = oldest;
+        }
+
+        while (next < primaryEnd) {
+            if (!alignSample(next, allowHold)) {
+                return;
+            }
+            next++;
+        }
+    }
+
+    private boolean alignSample(long sequence, boolean allowHold) {
+        long timestamp = primary.getTimestamp(sequence);
+
+        if (cursor < secondary.getOldestSequence()) {
+            cursor = secondary.getOldestSequence();
+        }
+        long newest = secondary.getNextSequence() - 1;
+        while (cursor < newest && secondary.getTimestamp(cursor + 1) <= timestamp) {
+            cursor++;
+        }
+
+        long t0 = secondary.getTimestamp(cursor);
+        if (timestamp <= t0) {
+            // Before the first retained secondary sample: hold it
+            append(timestamp, cursor);
+            return true;
+        }
+
+        if (cursor < newest) {
+            long t1 = secondary.getTimestamp(cursor + 1);
+            float f = (float) (timestamp - t0) / (float) (t1 - t0);
+            aligned.append(timestamp,
+                lerp(secondary.getX(cursor), secondary.getX(cursor + 1), f),
+                lerp(secondary.getY(cursor), secondary.getY(cursor + 1), f),
+                lerp(secondary.getZ(cursor), secondary.getZ(cursor + 1), f));
+            return true;
+        }
+
+        // No secondary sample after this instant yet
+        if (!allowHold) {
+            return false;
+        }
+        append(timestamp, cursor);
+        return true;
+    }
+
+    private void append(long timestamp, long secondarySequence) {
+        aligned.append(timestamp, secondary.getX(secondarySequence),
+            secondary.getY(secondarySequence), secondary.getZ(secondarySequence));
+    }
+
+    private static float lerp(float a, float b, float f) {
+        return a + (b - a) * f;
+    }
+
+    /**
+     * Secondary values indexed by primary sequence number
+     */
+    public SensorRingBuffer getAlignedBuffer() {
+        return aligned;
+    }
+
+    /**
+     * Whether any secondary sample has been received since the last clear
+     */
+    public boolean hasSamples() {
+        return !secondary.isEmpty();
+    }
+
+    /**
+     * The secondary sensor was registered again. Primary samples so far keep the values
+     * from before the gap, and the raw ring starts over so the first sample after it is
+     * not interpolated against the last one before.
+     */
+    public void restart() {
+        alignUpTo(primary.getNextSequence());
+        secondary.clear();
+        cursor = 0;
+    }
+
+    public void clear() {
+        secondary.clear();
+        aligned.clear();
+        cursor = 0;
+    }
+}
@@ -30,6 +30,11 @@ public class SharedPreferencesManager {
     public static final String KEY_TOTAL_FALLS_DETECTED = "total_falls_detected";
     public static final String KEY_FALSE_POSITIVES = "false_positives";
     public static final String KEY_USER_NAME = "user_name";
+    public static final String KEY_SENSOR_BATCHING_ENABLED = "sensor_batching_enabled";
+    public static final String KEY_CASCADE_TRIGGER_ENABLED = "cascade_trigger_enabled";
+    public static final String KEY_ADAPTIVE_SAMPLING_ENABLED = "adaptive_sampling_enabled";
+    public static final String KEY_LOW_POWER_MODE_ENABLED = "low_power_mode_enabled";
+    public static final String KEY_FALL_CONFIRMATION_SECONDS = "fall_confirmation_seconds";
 
     // Default Values
     public static final boolean DEFAULT_FALL_DETECTION_ENABLED = true;
@@ -42,6 +47,11 @@ public class SharedPreferencesManager {
     public static final boolean DEFAULT_LOCATION_TRACKING_ENABLED = true;
     public static final boolean DEFAULT_LOCATION_SHARING_ENABLED = true;
     public static final boolean DEFAULT_FIRST_TIME_SETUP = true;
+    public static final boolean DEFAULT_SENSOR_BATCHING_ENABLED = false;
+    public static final boolean DEFAULT_CASCADE_TRIGGER_ENABLED = true;
+    public static final boolean DEFAULT_ADAPTIVE_SAMPLING_ENABLED = true;
+    public static final boolean DEFAULT_LOW_POWER_MODE_ENABLED = false;
+    public static final int DEFAULT_FALL_CONFIRMATION_SECONDS = 10;
 
     private SharedPreferencesManager(Context context) {
         sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
@@ -64,6 +74,17 @@ public class SharedPreferencesManager {
         return sharedPreferences.getBoolean(KEY_FALL_DETECTION_ENABLED, DEFAULT_FALL_DETECTION_ENABLED);
     }
 
+    /**
+     * Listeners are held weakly by the framework, keep a reference while registered
+     */
+    public void registerChangeListener(SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        sharedPreferences.registerOnSharedPreferenceChangeListener(listener);
+    }
+
+    public void unregisterChangeListener(SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        sharedPreferences.unregisterOnSharedPreferenceChangeListener(listener);
+    }
+
     public void setSensitivityLevel(int level) {
         editor.putInt(KEY_SENSITIVITY_LEVEL, level).apply();
     }
@@ -220,6 +241,50 @@ public class SharedPreferencesManager {
         setSensitivityLevel(level);
     }
 
+    // Sensor Pipeline Settings
+    public void setSensorBatchingEnabled(boolean enabled) {
+        editor.putBoolean(KEY_SENSOR_BATCHING_ENABLED, enabled).apply();
+    }
+
+    public boolean isSensorBatchingEnabled() {
+        return sharedPreferences.getBoolean(KEY_SENSOR_BATCHING_ENABLED, DEFAULT_SENSOR_BATCHING_ENABLED);
+    }
+
+    public void setCascadeTriggerEnabled(boolean enabled) {
+        editor.putBoolean(KEY_CASCADE_TRIGGER_ENABLED, enabled).apply();
+    }
+
+    public boolean isCascadeTriggerEnabled() {
+        return sharedPreferences.getBoolean(KEY_CASCADE_TRIGGER_ENABLED, DEFAULT_CASCADE_TRIGGER_ENABLED);
+    }
+
+    public void setAdaptiveSamplingEnabled(boolean enabled) {
+        editor.putBoolean(KEY_ADAPTIVE_SAMPLING_ENABLED, enabled).apply();
+    }
+
+    public boolean isAdaptiveSamplingEnabled() {
+        return sharedPreferences.getBoolean(KEY_ADAPTIVE_SAMPLING_ENABLED, DEFAULT_ADAPTIVE_SAMPLING_ENABLED);
+    }
+
+    public void setLowPowerModeEnabled(boolean enabled) {
+        editor.putBoolean(KEY_LOW_POWER_MODE_ENABLED, enabled).apply();
+    }
+
+    public boolean isLowPowerModeEnabled() {
+        return sharedPreferences.getBoolean(KEY_LOW_POWER_MODE_ENABLED, DEFAULT_LOW_POWER_MODE_ENABLED);
+    }
+
+    /**
+     * Seconds a candidate fall is watched for stillness before it is confirmed (0 to skip)
+     */
+    public void setFallConfirmationSeconds(int seconds) {
+        editor.putInt(KEY_FALL_CONFIRMATION_SECONDS, seconds).apply();
+    }
+
+    public int getFallConfirmationSeconds() {
+        return sharedPreferences.getInt(KEY_FALL_CONFIRMATION_SECONDS, DEFAULT_FALL_CONFIRMATION_SECONDS);
+    }
+
     // Export settings as JSON string for backup
     public String exportSettings() {
         StringBuilder json = new StringBuilder();
@@ -0,0 +1,167 @@
+package com.tejalabs.falldetection.utils;
+
+/**
+ * Spectrum of the last N values of a stream over a contiguous range of DFT bins
+ * Each bin is updated in O(1) per value with the sliding DFT recurrence
+ * X(k) = (X(k) - oldest + newest) * e^(i2πk/N), so a value costs O(bins). Every bin
+ * from the first one asked for up to Nyquist is tracked, so a tone anywhere in that
+ * range lands on its own bins and band powers are exact sums. The DC bin is always
+ * left out, so the gravity component of a magnitude does not count as energy.
+ * Adding a value never allocates.
+ */
+public class SlidingDft {
+
+    // Recompute the bins from the values this often to stop rounding drift
+    private static final int RESYNC_INTERVAL = 4096;
+
+    private final int windowSize;
+    private final float[] values;
+    private long count = 0;
+    private int addsSinceResync = 0;
+
+    // DFT index k of each bin, k/N cycles per sample
+    private final int[] bins;
+    private final double[] twiddleReal;
+    private final double[] twiddleImaginary;
+    private final double[] real;
+    private final double[] imaginary;
+
+    /**
+     * @param firstBin lowest DFT index to track, at least 1; bins up to
+     *                 {@code windowSize / 2} are tracked
+     */
+    public SlidingDft(int windowSize, int firstBin) {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("Window size must be at least 2: " + windowSize);
+        }
+        if (firstBin < 1 || firstBin > windowSize / 2) {
+            throw new IllegalArgumentException("First bin out of range: " + firstBin);
+        }
+        this.windowSize = windowSize;
+        this.values = new float[windowSize];
+
+        bins = new int[windowSize / 2 - firstBin + 1];
+        twiddleReal = new double[bins.length];
+        twiddleImaginary = new double[bins.length];
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] = firstBin + i;
+            double angle = 2 * Math.PI * bins[i] / windowSize;
+            twiddleReal[i] = Math.cos(angle);
+            twiddleImaginary[i] = Math.sin(angle);
+        }
+        real = new double[bins.length];
+        imaginary = new double[bins.length];
+    }
+
+    /**
+     * Add the next value, evicting the oldest one once the window is full
+     */
+    public void add(float value) {
+        int slot = (int) (count % windowSize);
+        // Before the window fills, the values ahead of the first one count as zeros
+        float evicted = count >= windowSize ? values[slot] : 0.0f;
+        values[slot] = value;
+        count++;
+
+        if (++addsSinceResync >= RESYNC_INTERVAL) {
+            resync();
+            return;
+        }
+
+        double delta = (double) value - evicted;
+        for (int i = 0; i < bins.length; i++) {
+            double re = real[i] + delta;
+            double im = imaginary[i];
+            real[i] = re * twiddleReal[i] - im * twiddleImaginary[i];
+            imaginary[i] = re * twiddleImaginary[i] + im * twiddleReal[i];
+        }
+    }
+
+    private void resync() {
+        int n = getCount();
+        // Position of the oldest value in the window, zeros before it
+        int first = windowSize - n;
+        for (int i = 0; i < bins.length; i++) {
+            double re = 0;
+            double im = 0;
+            for (int j = 0; j < n; j++) {
+                float value = values[(int) ((count - n + j) % windowSize)];
+                double angle = -2 * Math.PI * bins[i] * (long) (first + j) / windowSize;
+                re += value * Math.cos(angle);
+                im += value * Math.sin(angle);
+            }
+            real[i] = re;
+            imaginary[i] = im;
+        }
+        addsSinceResync = 0;
+    }
+
+    /**
+     * Number of values currently in the window
+     */
+    public int getCount() {
+        return (int) Math.min(count, windowSize);
+    }
+
+    public boolean isFull() {
+        return count >= windowSize;
+    }
+
+    public int getBinCount() {
+        return bins.length;
+    }
+
+    /**
+     * Frequency of a tracked bin for values sampled at {@code sampleRateHz}
+     */
+    public float getFrequency(int bin, float sampleRateHz) {
+        return bins[bin] * sampleRateHz / windowSize;
+    }
+
+    /**
+     * Mean-square amplitude of a tracked bin: A²/2 for a sine of amplitude A at its frequency
+     */
+    public float getPower(int bin) {
+        double magnitudeSquared = real[bin] * real[bin] + imaginary[bin] * imaginary[bin];
+        return (float) (2 * magnitudeSquared / ((double) windowSize * windowSize));
+    }
+
+    /**
+     * Frequency of the strongest tracked bin, or 0 if the window holds no variation
+     */
+    public float getDominantFrequency(float sampleRateHz) {
+        int strongest = -1;
+        float strongestPower = 0.0f;
+        for (int i = 0; i < bins.length; i++) {
+            float power = getPower(i);
+            if (power > strongestPower) {
+                strongest = i;
+                strongestPower = power;
+            }
+        }
+        return strongest < 0 ? 0.0f : getFrequency(strongest, sampleRateHz);
+    }
+
+    /**
+     * Power of the tracked bins from {@code fromHz} up to but excluding {@code toHz}
+     */
+    public float getBandPower(float fromHz, float toHz, float sampleRateHz) {
+        float power = 0.0f;
+        for (int i = 0; i < bins.length; i++) {
+            float frequency = getFrequency(i, sampleRateHz);
+            if (frequency >= fromHz && frequency < toHz) {
+                power += getPower(i);
+            }
+        }
+        return power;
+    }
+
+    public void clear() {
+        count = 0;
+        addsSinceResync = 0;
+        for (int i = 0; i < bins.length; i++) {
+            real[i] = 0;
+            imaginary[i] = 0;
+        }
+    }
+}
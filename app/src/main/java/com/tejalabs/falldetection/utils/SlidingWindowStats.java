@@ -0,0 +1,205 @@
+package com.tejalabs.falldetection.utils;
+
+/**
+ * Statistics over the last N values of a stream, updated in O(1) per value
+ * Mean and variance come from running sums, minimum, maximum and the largest
+ * step between consecutive values (jerk) from monotonic deques. Adding a value
+ * never allocates, and every getter is constant-time.
+ */
+public class SlidingWindowStats {
+
+    // Recompute the running sums from scratch this often to stop rounding drift
+    private static final int RESUM_INTERVAL = 4096;
+
+    private final int windowSize;
+    private final float[] values;
+    private long count = 0;
+
+    private double sum = 0;
+    private double sumOfSquares = 0;
+    private int addsSinceResum = 0;
+
+    private final MonotonicDeque minimum;
+    private final MonotonicDeque maximum;
+    private final MonotonicDeque maximumStep;
+
+    public SlidingWindowStats(int windowSize) {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("Window size must be at least 2: " + windowSize);
+        }
+        this.windowSize = windowSize;
+        this.values = new float[windowSize];
+        this.minimum = new MonotonicDeque(windowSize, false);
+        this.maximum = new MonotonicDeque(windowSize, true);
+        this.maximumStep = new MonotonicDeque(windowSize, true);
+    }
+
+    /**
+     * Add the next value, evicting the oldest one once the window is full
+     */
+    public void add(float value) {
+        int slot = (int) (count % windowSize);
+
+        if (count > 0) {
+            float previous = values[(int) ((count - 1) % windowSize)];
+            maximumStep.add(count - 1, Math.abs(value - previous));
+        }
+
+        if (count >= windowSize) {
+            float evicted = values[slot];
+            sum -= evicted;
+            sumOfSquares -= (double) evicted * evicted;
+        }
+
+        values[slot] = value;
+        sum += value;
+        sumOfSquares += (double) value * value;
+        count++;
+
+        minimum.add(count - 1, value);
+        maximum.add(count - 1, value);
+
+        // Drop entries that left the window (steps need both ends inside it)
+        long firstInWindow = count - getCount();
+        minimum.evictBefore(firstInWindow);
+        maximum.evictBefore(firstInWindow);
+        maximumStep.evictBefore(firstInWindow);
+
+        if (++addsSinceResum >= RESUM_INTERVAL) {
+            resum();
+        }
+    }
+
+    private void resum() {
+        int n = getCount();
+        double freshSum = 0;
+        double freshSquares = 0;
+        for (int i = 0; i < n; i++) {
+            float value = values[i];
+            freshSum += value;
+            freshSquares += (double) value * value;
+        }
+        sum = freshSum;
+        sumOfSquares = freshSquares;
+        addsSinceResum = 0;
+    }
+
+    /**
+     * Number of values currently in the window
+     */
+    public int getCount() {
+        return (int) Math.min(count, windowSize);
+    }
+
+    public boolean isFull() {
+        return count >= windowSize;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public float getMean() {
+        int n = getCount();
+        return n == 0 ? 0.0f : (float) (sum / n);
+    }
+
+    /**
+     * Population variance of the values in the window
+     */
+    public float getVariance() {
+        int n = getCount();
+        if (n == 0) return 0.0f;
+        double mean = sum / n;
+        return (float) Math.max(0.0, sumOfSquares / n - mean * mean);
+    }
+
+    public float getStandardDeviation() {
+        return (float) Math.sqrt(getVariance());
+    }
+
+    public float getMin() {
+        return minimum.isEmpty() ? 0.0f : minimum.peekValue();
+    }
+
+    public float getMax() {
+        return maximum.isEmpty() ? 0.0f : maximum.peekValue();
+    }
+
+    /**
+     * Largest absolute difference between two consecutive values in the window
+     */
+    public float getMaxStep() {
+        return maximumStep.isEmpty() ? 0.0f : maximumStep.peekValue();
+    }
+
+    public void clear() {
+        count = 0;
+        sum = 0;
+        sumOfSquares = 0;
+        addsSinceResum = 0;
+        minimum.clear();
+        maximum.clear();
+        maximumStep.clear();
+    }
+
+    /**
+     * Fixed-capacity deque of (index, value) pairs kept monotonic, so the head is
+     * always the extreme of the current window
+     */
+    private static class MonotonicDeque {
+        private final long[] indices;
+        private final float[] dequeValues;
+        private final boolean keepMaximum;
+        private int head = 0;
+        private int size = 0;
+
+        MonotonicDeque(int capacity, boolean keepMaximum) {
+            this.indices = new long[capacity];
+            this.dequeValues = new float[capacity];
+            this.keepMaximum = keepMaximum;
+        }
+
+        void add(long index, float value) {
+            // Remove entries from the tail that can never be the extreme again
+            while (size > 0) {
+                float tail = dequeValues[slot(size - 1)];
+                if (keepMaximum ? tail > value : tail < value) break;
+                size--;
+            }
+            if (size == indices.length) {
+                // Full: the head is the oldest entry and about to be evicted anyway
+                head = (head + 1) % indices.length;
+                size--;
+            }
+            int slot = slot(size);
+            indices[slot] = index;
+            dequeValues[slot] = value;
+            size++;
+        }
+
+        void evictBefore(long firstIndex) {
+            while (size > 0 && indices[head] < firstIndex) {
+                head = (head + 1) % indices.length;
+                size--;
+            }
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        float peekValue() {
+            return dequeValues[head];
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+
+        private int slot(int offset) {
+            return (head + offset) % indices.length;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.tejalabs.falldetection.utils;
+
+/**
+ * Bounded single-producer/single-consumer queue of preallocated, reusable slots
+ * The producer {@link #claim()}s slots, fills them and makes them visible to the
+ * consumer with {@link #publish()}. The consumer reads the oldest published slot with
+ * {@link #peek()} and hands it back with {@link #remove()} once it is done with it.
+ * Nothing is allocated after construction and no locks are taken.
+ */
+public class SpscSlotQueue<T> {
+
+    private final Object[] slots;
+    private final int mask;
+
+    // Next slot the consumer reads, written by the consumer only
+    private volatile long head = 0;
+    // End of the published slots, written by the producer only
+    private volatile long tail = 0;
+    // Slots claimed but not yet published (producer only)
+    private int claimed = 0;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    public SpscSlotQueue(int capacity, ObjectPool.Factory<T> factory) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new Object[size];
+        mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = factory.create();
+        }
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Reserve the next free slot (producer), or null when the queue is full
+     */
+    @SuppressWarnings("unchecked")
+    public T claim() {
+        long next = tail + claimed;
+        if (next - head >= slots.length) {
+            return null;
+        }
+        claimed++;
+        return (T) slots[(int) (next & mask)];
+    }
+
+    /**
+     * Slots claimed since the last publish (producer)
+     */
+    public int getClaimedCount() {
+        return claimed;
+    }
+
+    /**
+     * The {@code index}th slot claimed since the last publish (producer)
+     */
+    @SuppressWarnings("unchecked")
+    public T getClaimed(int index) {
+        return (T) slots[(int) ((tail + index) & mask)];
+    }
+
+    /**
+     * Make all claimed slots visible to the consumer (producer)
+     */
+    public void publish() {
+        if (claimed > 0) {
+            tail += claimed;
+            claimed = 0;
+        }
+    }
+
+    /**
+     * Oldest published slot (consumer), or null when there is none
+     */
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        long current = head;
+        return current < tail ? (T) slots[(int) (current & mask)] : null;
+    }
+
+    /**
+     * Published slot {@code index} places behind the oldest (consumer), or null
+     */
+    @SuppressWarnings("unchecked")
+    public T peek(int index) {
+        long sequence = head + index;
+        return sequence < tail ? (T) slots[(int) (sequence & mask)] : null;
+    }
+
+    /**
+     * Return the slot last returned by {@link #peek()} to the producer (consumer)
+     */
+    public void remove() {
+        if (head < tail) {
+            head++;
+        }
+    }
+
+    /**
+     * Published slots not yet removed. Safe to read from any thread.
+     */
+    public int size() {
+        long current = head;
+        return (int) (tail - current);
+    }
+
+    /**
+     * Empty the queue. Only while neither side is running.
+     */
+    public void clear() {
+        claimed = 0;
+        head = 0;
+        tail = 0;
+    }
+}
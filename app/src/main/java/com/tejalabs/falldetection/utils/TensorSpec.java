@@ -0,0 +1,142 @@
+package com.tejalabs.falldetection.utils;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Tensor;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Shape, element type and quantization of one model input or output
+ * The first dimension is the batch; {@link #getElements()} counts the values of one
+ * batch entry. Float32 tensors are copied as floats; int8 and uint8 tensors are
+ * quantized and dequantized with the tensor's scale and zero point in one pass over
+ * the values, without allocating.
+ */
+public final class TensorSpec {
+
+    private final DataType dataType;
+    private final int[] shape;
+    private final int elements;
+    private final float scale;
+    private final int zeroPoint;
+
+    public TensorSpec(DataType dataType, int[] shape, float scale, int zeroPoint) {
+        if (dataType != DataType.FLOAT32 && dataType != DataType.INT8 && dataType != DataType.UINT8) {
+            throw new IllegalArgumentException("Unsupported tensor type " + dataType);
+        }
+        if (shape.length < 2) {
+            throw new IllegalArgumentException("Tensor needs a batch dimension: " + shape.length + "D");
+        }
+        if (dataType != DataType.FLOAT32 && !(scale > 0.0f)) {
+            throw new IllegalArgumentException("Quantized tensor without a scale");
+        }
+        int count = 1;
+        for (int i = 1; i < shape.length; i++) {
+            count *= shape[i];
+        }
+        this.dataType = dataType;
+        this.shape = shape.clone();
+        this.elements = count;
+        this.scale = scale;
+        this.zeroPoint = zeroPoint;
+    }
+
+    /**
+     * Spec of a tensor of a loaded interpreter
+     */
+    public static TensorSpec of(Tensor tensor) {
+        Tensor.QuantizationParams quantization = tensor.quantizationParams();
+        return new TensorSpec(tensor.dataType(), tensor.shape(), quantization.getScale(),
+            quantization.getZeroPoint());
+    }
+
+    public DataType getDataType() {
+        return dataType;
+    }
+
+    public boolean isQuantized() {
+        return dataType != DataType.FLOAT32;
+    }
+
+    /**
+     * Values per batch entry
+     */
+    public int getElements() {
+        return elements;
+    }
+
+    public int getBytesPerElement() {
+        return dataType.byteSize();
+    }
+
+    /**
+     * Write {@code shape} with the batch dimension set to {@code batchSize}
+     */
+    public void batchShape(int batchSize, int[] shape) {
+        System.arraycopy(this.shape, 0, shape, 0, this.shape.length);
+        shape[0] = batchSize;
+    }
+
+    public int getRank() {
+        return shape.length;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public int getZeroPoint() {
+        return zeroPoint;
+    }
+
+    /**
+     * Write the first {@code count} values to a buffer of this type, from position 0
+     *
+     * @param floats float view of {@code buffer}, used for float32 tensors
+     */
+    public void write(float[] values, int count, ByteBuffer buffer, FloatBuffer floats) {
+        if (dataType == DataType.FLOAT32) {
+            floats.clear();
+            floats.put(values, 0, count);
+            return;
+        }
+        float inverseScale = 1.0f / scale;
+        int min = dataType == DataType.INT8 ? -128 : 0;
+        int max = dataType == DataType.INT8 ? 127 : 255;
+        for (int i = 0; i < count; i++) {
+            int quantized = Math.round(values[i] * inverseScale) + zeroPoint;
+            buffer.put(i, (byte) Math.max(min, Math.min(max, quantized)));
+        }
+    }
+
+    /**
+     * Read the first {@code count} values of a buffer of this type, from position 0
+     *
+     * @param floats float view of {@code buffer}, used for float32 tensors
+     */
+    public void read(ByteBuffer buffer, FloatBuffer floats, int count, float[] values) {
+        if (dataType == DataType.FLOAT32) {
+            floats.clear();
+            floats.get(values, 0, count);
+            return;
+        }
+        int mask = dataType == DataType.UINT8 ? 0xff : -1;
+        for (int i = 0; i < count; i++) {
+            values[i] = ((buffer.get(i) & mask) - zeroPoint) * scale;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(dataType.toString()).append('[');
+        for (int i = 0; i < shape.length; i++) {
+            text.append(i == 0 ? "" : ",").append(shape[i]);
+        }
+        text.append(']');
+        if (isQuantized()) {
+            text.append(" scale ").append(scale).append(" zero ").append(zeroPoint);
+        }
+        return text.toString();
+    }
+}
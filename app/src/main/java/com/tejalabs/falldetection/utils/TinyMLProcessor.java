@@ -2,21 +2,23 @@ package com.tejalabs.falldetection.utils;
 
 import android.content.Context;
 import android.content.res.AssetFileDescriptor;
+import android.hardware.Sensor;
+import android.os.Build;
 import android.util.Log;
 
 import org.tensorflow.lite.Interpreter;
 import org.tensorflow.lite.support.common.FileUtil;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * TensorFlow Lite processor for fall detection using TinyML
@@ -28,59 +30,509 @@ public class TinyMLProcessor {
 
     // Model configuration
     private static final String MODEL_FILENAME = "fall_detection_model.tflite";
-    private static final int INPUT_SIZE = 150; // 50 samples * 3 axes
-    private static final int OUTPUT_SIZE = 2; // [no_fall, fall] probabilities
+    // Each model declares the channels and window length it reads (ModelInputSpec) and
+    // outputs [no_fall, fall] probabilities. Tensor types and quantization are read
+    // from the model itself.
+    private static final int FALL_OUTPUT = 1;
+
+    // Windows run through one interpreter invocation by the batch API
+    public static final int MAX_BATCH_WINDOWS = 8;
+
+    // TensorFlow Lite interpreter with its preallocated input and output buffers, and
+    // what its model reads from a window
+    private ModelSession modelSession;
+    private ModelInputSpec inputSpec = ModelInputSpec.DEFAULT;
+
+    // Input spec of the newest model accepted, for choosing which sensors to register,
+    // and whether there is one or windows go to the rule-based detector
+    private volatile ModelInputSpec acceptedInputSpec = ModelInputSpec.DEFAULT;
+    private volatile boolean modelAccepted = false;
+
+    // The rule-based detector's tilt and earth-frame features come from the orientation
+    // estimate, which integrates the gyroscope
+    private static final int[] RULE_BASED_SENSOR_TYPES = { Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_GYROSCOPE };
+
+    // Installed model versions; a new model is loaded and checked on the loader
+    // thread, then picked up by the analysis thread before its next window
+    private Context appContext;
+    private ModelRegistry modelRegistry;
+    private ExecutorService modelLoader;
+    private final AtomicReference<PendingModel> pendingModel = new AtomicReference<>();
+    private volatile int activeModelVersion = NO_MODEL;
+    private static final int NO_MODEL = -1;
+
+    // Interpreter configuration calibrated per model on this device
+    private InterpreterTuner interpreterTuner;
+    private volatile InterpreterTuner.Config sessionConfig = InterpreterTuner.Config.DEFAULT;
+
+    // Live inference pauses while a model is calibrated, so both do not compete for the
+    // same cores and skew the benchmark; the rule-based detector covers the windows
+    // meanwhile. The analysis thread runs and swaps the model holding inferenceLock,
+    // cleanup() closes it holding the lock too.
+    private final Object inferenceLock = new Object();
+    private volatile boolean calibrating = false;
+    private boolean closed = false; // Guarded by inferenceLock
+
+    // Inferences per reference window when checking a newly loaded model
+    private static final int WARMUP_RUNS = 3;
+
+    // Still postures (gravity along z, y, x) a sane model must not call a fall
+    private static final float[][] REFERENCE_POSTURES = {
+        {0.0f, 0.0f, 9.81f}, {0.0f, 9.81f, 0.0f}, {9.81f, 0.0f, 0.0f}
+    };
 
-    // TensorFlow Lite components
-    private Interpreter tflite;
-    private ByteBuffer inputBuffer;
-    private float[][] outputBuffer;
+    /**
+     * Outcome of {@link #installModel} and {@link #swapModel}, called on the loader thread
+     */
+    public interface ModelSwapListener {
+        void onModelSwapped(int version);
+        void onModelRejected(int version, String reason);
+    }
+
+    private static class PendingModel {
+        final ModelSession session;
+        final int version;
+        final InterpreterTuner.Config config;
+        final ModelInputSpec inputSpec;
+
+        PendingModel(ModelSession session, int version, InterpreterTuner.Config config,
+                     ModelInputSpec inputSpec) {
+            this.session = session;
+            this.version = version;
+            this.config = config;
+            this.inputSpec = inputSpec;
+        }
+    }
+
+    // Position in the batch of each window that went to the model
+    private final int[] batchWindowIndex = new int[MAX_BATCH_WINDOWS];
 
     // Model metadata
     private boolean isModelLoaded = false;
-    private int inputTensorIndex = 0;
-    private int outputTensorIndex = 0;
+
+    // Base rule thresholds (m/s²), scaled by the sensitivity setting
+    private static final float IMPACT_THRESHOLD_BASE = 25.0f;
+    private static final float FREE_FALL_THRESHOLD_BASE = 4.0f;
+
+    // The cascade trigger fires with this much margin before the rule thresholds
+    private static final float TRIGGER_MARGIN = 0.8f;
+
+    // A window with this much of its spectrum power above 8Hz is rattling rather than
+    // moving: a phone hitting a hard floor rings, a body landing is damped
+    private static final float VIBRATION_POWER_SHARE = 0.25f;
 
     // Processing parameters
     private float fallThreshold = 0.7f; // Confidence threshold for fall detection
     private SharedPreferencesManager prefsManager;
     private AdaptiveLearningEngine learningEngine;
 
+    // Per-window objects are reused: features are only read during processing, results
+    // come from a pool and go back with FallDetectionResult.recycle()
+    private static final int RESULT_POOL_SIZE = MAX_BATCH_WINDOWS + 4;
+    private final MotionFeatures motionFeatures = new MotionFeatures();
+    private final ObjectPool<FallDetectionResult> resultPool =
+        new ObjectPool<>(RESULT_POOL_SIZE, () -> new FallDetectionResult(this));
+
+    // Sensitivity used when running without preferences (offline evaluation)
+    private int fixedSensitivityLevel = SharedPreferencesManager.DEFAULT_SENSITIVITY_LEVEL;
+
     public TinyMLProcessor(Context context) {
+        appContext = context.getApplicationContext();
         prefsManager = SharedPreferencesManager.getInstance(context);
         learningEngine = new AdaptiveLearningEngine(context);
+        modelRegistry = new ModelRegistry(context);
+        interpreterTuner = new InterpreterTuner(modelRegistry.getDirectory(), Build.FINGERPRINT);
         initializeModel(context);
     }
 
+    /**
+     * Rule-based processor without a model or Android dependencies, for evaluating
+     * the detector on recorded or synthetic data off the device
+     */
+    TinyMLProcessor(int sensitivityLevel) {
+        this(sensitivityLevel, null);
+    }
+
+    /**
+     * Rule-based processor that can swap in models from {@code registry}
+     */
+    TinyMLProcessor(int sensitivityLevel, ModelRegistry registry) {
+        fixedSensitivityLevel = sensitivityLevel;
+        learningEngine = new AdaptiveLearningEngine();
+        modelRegistry = registry;
+        if (registry != null) {
+            interpreterTuner = new InterpreterTuner(registry.getDirectory(), Build.FINGERPRINT);
+        }
+        createFallbackModel();
+    }
+
     /**
      * Initialize the TensorFlow Lite model
+     * The registry's active version is preferred; a version that fails to load is
+     * dropped and the one before it tried, down to the model bundled in the assets.
+     * A model not yet calibrated on this device starts with the default interpreter
+     * configuration and is calibrated on the loader thread, then swapped if another
+     * configuration wins. Windows go to the rule-based detector while it calibrates.
      */
     private void initializeModel(Context context) {
+        for (ModelRegistry.ModelVersion active = modelRegistry.getActive(); active != null;
+                active = modelRegistry.getActive()) {
+            try {
+                startSession(modelRegistry.load(active), active.getVersion(), active.getSha256(),
+                    active.getInputSpec());
+                Log.d(TAG, "TensorFlow Lite model " + active + " loaded from registry");
+                return;
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading model " + active + ", rolling back", e);
+                modelRegistry.remove(active.getVersion());
+            }
+        }
+
         try {
             // Load model from assets
-            MappedByteBuffer modelBuffer = loadModelFile(context);
-
-            // Create interpreter options
-            Interpreter.Options options = new Interpreter.Options();
-            options.setNumThreads(2); // Use 2 threads for better performance
-            options.setUseNNAPI(true); // Use Android Neural Networks API if available
-
-            // Create interpreter
-            tflite = new Interpreter(modelBuffer, options);
-
-            // Initialize input/output buffers
-            initializeBuffers();
-
-            isModelLoaded = true;
+            ByteBuffer modelBuffer = loadModelFile(context);
+            startSession(modelBuffer, ModelRegistry.BUNDLED_VERSION, ModelRegistry.checksum(modelBuffer),
+                ModelInputSpec.DEFAULT);
             Log.d(TAG, "TensorFlow Lite model loaded successfully");
 
-        } catch (IOException e) {
+        } catch (IOException | IllegalArgumentException e) {
             Log.e(TAG, "Error loading TensorFlow Lite model", e);
             // Create a fallback simple model
             createFallbackModel();
         }
     }
 
+    private void startSession(ByteBuffer modelBuffer, int version, String sha256, ModelInputSpec spec) {
+        InterpreterTuner.Config config = interpreterTuner.lookup(sha256);
+        boolean calibrated = config != null;
+        InterpreterTuner.Config startConfig = calibrated ? config : InterpreterTuner.Config.DEFAULT;
+        ModelSession session = createSession(modelBuffer, startConfig);
+        String problem = checkInputs(session, spec);
+        if (problem != null) {
+            session.close();
+            throw new IllegalArgumentException(problem);
+        }
+        modelSession = session;
+        sessionConfig = startConfig;
+        inputSpec = spec;
+        acceptedInputSpec = spec;
+        modelAccepted = true;
+        activeModelVersion = version;
+        isModelLoaded = true;
+        if (!calibrated) {
+            Log.i(TAG, "Model v" + version + " not calibrated on this device, benchmarking in the background");
+            modelLoader().execute(() -> calibrate(version));
+        }
+    }
+
+    /**
+     * Benchmark the interpreter configurations for the running model and swap to
+     * the winner if it is not the one in use (loader thread)
+     */
+    private void calibrate(int version) {
+        try {
+            ByteBuffer modelBuffer = loadModel(version);
+            InterpreterTuner.Config config = calibratedConfig(version, modelBuffer, modelInputSpec(version));
+            if (!config.equals(sessionConfig) && version == activeModelVersion) {
+                loadAndSwap(version, null);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error calibrating model v" + version, e);
+        }
+    }
+
+    /**
+     * Configuration of a model on this device, benchmarking it first if it has not been
+     * calibrated yet with live inference paused (loader thread)
+     */
+    private InterpreterTuner.Config calibratedConfig(int version, ByteBuffer modelBuffer, ModelInputSpec spec) {
+        String sha256 = modelChecksum(version, modelBuffer);
+        InterpreterTuner.Config config = interpreterTuner.lookup(sha256);
+        if (config != null) {
+            return config;
+        }
+        calibrating = true;
+        try {
+            synchronized (inferenceLock) {
+                // Only waits for an inference in progress, the next window sees the flag
+            }
+            return interpreterTuner.getConfig(sha256, modelBuffer, referenceSamples(spec));
+        } finally {
+            calibrating = false;
+        }
+    }
+
+    /**
+     * Create an interpreter and its input/output buffers for a model
+     */
+    private static ModelSession createSession(ByteBuffer modelBuffer, InterpreterTuner.Config config) {
+        Interpreter interpreter = new Interpreter(modelBuffer, config.toOptions());
+        ModelSession session;
+        try {
+            session = new ModelSession(interpreter, MAX_BATCH_WINDOWS);
+        } catch (RuntimeException e) {
+            interpreter.close();
+            throw e;
+        }
+        Log.d(TAG, "Buffers initialized - Input: " + session.getInputSpec() + ", Output: "
+            + session.getOutputSpec() + ", " + config);
+        return session;
+    }
+
+    /**
+     * Install a model that reads the same input as the bundled one and swap to it
+     *
+     * @see #installModel(File, int, String, ModelInputSpec, ModelSwapListener)
+     */
+    public void installModel(File modelFile, int version, String sha256, ModelSwapListener listener) {
+        installModel(modelFile, version, sha256, ModelInputSpec.DEFAULT, listener);
+    }
+
+    /**
+     * Copy a model file into the registry as {@code version} and swap to it.
+     * Runs on the loader thread; detection continues with the current model meanwhile.
+     *
+     * @param inputSpec what the model reads from a window, stored with it in the registry
+     */
+    public void installModel(final File modelFile, final int version, final String sha256,
+                             final ModelInputSpec inputSpec, final ModelSwapListener listener) {
+        modelLoader().execute(() -> {
+            try (InputStream input = new FileInputStream(modelFile)) {
+                modelRegistry.install(input, version, sha256, modelFile.getName(), inputSpec);
+            } catch (IOException | IllegalArgumentException e) {
+                Log.e(TAG, "Error installing model v" + version, e);
+                if (listener != null) {
+                    listener.onModelRejected(version, String.valueOf(e.getMessage()));
+                }
+                return;
+            }
+            loadAndSwap(version, listener);
+        });
+    }
+
+    /**
+     * Swap to an installed version, or {@link ModelRegistry#BUNDLED_VERSION}. The new
+     * interpreter is built, warmed up and checked on the loader thread; the analysis
+     * thread switches over before its next window, so no window goes unanalysed. A
+     * model that fails the check is dropped and the current one stays in use.
+     */
+    public void swapModel(final int version, final ModelSwapListener listener) {
+        modelLoader().execute(() -> loadAndSwap(version, listener));
+    }
+
+    /**
+     * Swap back to the version that was active before the current one
+     */
+    public void rollbackModel(ModelSwapListener listener) {
+        swapModel(modelRegistry.getPreviousVersion(), listener);
+    }
+
+    private synchronized ExecutorService modelLoader() {
+        if (modelRegistry == null) {
+            throw new IllegalStateException("No model registry");
+        }
+        if (modelLoader == null) {
+            modelLoader = Executors.newSingleThreadExecutor();
+        }
+        return modelLoader;
+    }
+
+    /**
+     * Load, warm up and check a model, then hand it to the analysis thread (loader thread)
+     */
+    private void loadAndSwap(int version, ModelSwapListener listener) {
+        ModelSession session = null;
+        InterpreterTuner.Config config = null;
+        ModelInputSpec spec = null;
+        String problem;
+        // False when the runtime rather than the model failed, the file is kept then
+        boolean modelAtFault = true;
+        try {
+            ByteBuffer modelBuffer = loadModel(version);
+            spec = modelInputSpec(version);
+            // A model new to this device is calibrated before its session is built
+            config = calibratedConfig(version, modelBuffer, spec);
+            session = createSession(modelBuffer, config);
+            problem = checkModel(session, spec);
+        } catch (Exception e) {
+            problem = e.getClass().getSimpleName() + ": " + e.getMessage();
+        } catch (LinkageError e) {
+            // The TFLite native library could not be loaded
+            problem = e.getClass().getSimpleName() + ": " + e.getMessage();
+            modelAtFault = false;
+        }
+
+        if (problem != null) {
+            Log.e(TAG, "Model v" + version + " rejected, keeping v" + activeModelVersion + " - " + problem);
+            if (session != null) {
+                session.close();
+            }
+            if (modelAtFault && version != ModelRegistry.BUNDLED_VERSION) {
+                modelRegistry.remove(version);
+            }
+            if (listener != null) {
+                listener.onModelRejected(version, problem);
+            }
+            return;
+        }
+
+        PendingModel superseded;
+        synchronized (inferenceLock) {
+            if (closed) {
+                // Cleaned up meanwhile, nothing would adopt it
+                session.close();
+                return;
+            }
+            superseded = pendingModel.getAndSet(new PendingModel(session, version, config, spec));
+        }
+        acceptedInputSpec = spec;
+        modelAccepted = true;
+        if (superseded != null) {
+            superseded.session.close();
+        }
+        modelRegistry.activate(version);
+        Log.i(TAG, "Model v" + version + " ready, switching before the next window");
+        if (listener != null) {
+            listener.onModelSwapped(version);
+        }
+    }
+
+    private ByteBuffer loadModel(int version) throws IOException {
+        if (version == ModelRegistry.BUNDLED_VERSION) {
+            return loadModelFile(appContext);
+        }
+        ModelRegistry.ModelVersion entry = modelRegistry.getVersion(version);
+        if (entry == null) {
+            throw new IOException("Model v" + version + " not installed");
+        }
+        return modelRegistry.load(entry);
+    }
+
+    private ModelInputSpec modelInputSpec(int version) {
+        ModelRegistry.ModelVersion entry = modelRegistry.getVersion(version);
+        return entry != null ? entry.getInputSpec() : ModelInputSpec.DEFAULT;
+    }
+
+    private String modelChecksum(int version, ByteBuffer modelBuffer) {
+        ModelRegistry.ModelVersion entry = modelRegistry.getVersion(version);
+        return entry != null ? entry.getSha256() : ModelRegistry.checksum(modelBuffer);
+    }
+
+    /**
+     * Input samples of the still reference postures, one per reference window
+     */
+    private static float[][] referenceSamples(ModelInputSpec spec) {
+        float[][] samples = new float[REFERENCE_POSTURES.length][];
+        for (int p = 0; p < REFERENCE_POSTURES.length; p++) {
+            samples[p] = spec.stillSample(REFERENCE_POSTURES[p]);
+        }
+        return samples;
+    }
+
+    /**
+     * @return why the model's tensors do not fit its input spec, or null if they do
+     */
+    private static String checkInputs(ModelSession session, ModelInputSpec spec) {
+        if (session.getInputSize() != spec.getInputSize()) {
+            return "Input " + session.getInputSpec() + " does not match " + spec;
+        }
+        if (session.getOutputSize() <= FALL_OUTPUT) {
+            return "Output " + session.getOutputSpec() + " has no fall probability";
+        }
+        return null;
+    }
+
+    /**
+     * Run reference windows through a freshly loaded model, one at a time and as a full
+     * batch like the analysis thread does. The first runs warm it up; the outputs must
+     * be probabilities and no still posture may look like a fall.
+     *
+     * @return what is wrong with the model, or null if it passes
+     */
+    private String checkModel(ModelSession session, ModelInputSpec spec) {
+        String problem = checkInputs(session, spec);
+        if (problem != null) {
+            return problem;
+        }
+        float[] input = session.getInput();
+        float[][] samples = referenceSamples(spec);
+        for (float[] sample : samples) {
+            for (int i = 0; i < session.getInputSize(); i++) {
+                input[i] = sample[i % sample.length];
+            }
+            float[] output = null;
+            for (int run = 0; run < WARMUP_RUNS; run++) {
+                output = session.run();
+            }
+            problem = checkOutputs(session, output, 1);
+            if (problem != null) {
+                return problem;
+            }
+        }
+
+        int batchSize = session.getMaxBatch();
+        for (int b = 0; b < batchSize; b++) {
+            float[] sample = samples[b % samples.length];
+            for (int i = 0; i < session.getInputSize(); i++) {
+                input[b * session.getInputSize() + i] = sample[i % sample.length];
+            }
+        }
+        problem = checkOutputs(session, session.run(batchSize), batchSize);
+        if (problem != null) {
+            return "Batch of " + batchSize + ": " + problem;
+        }
+        // Latency percentiles should describe real windows only
+        session.getLatency().reset();
+        return null;
+    }
+
+    /**
+     * @return why the outputs of a still reference batch are wrong, or null if they are fine
+     */
+    private String checkOutputs(ModelSession session, float[] output, int batchSize) {
+        for (int i = 0; i < batchSize * session.getOutputSize(); i++) {
+            if (!(output[i] >= 0.0f && output[i] <= 1.0f)) {
+                return "Output " + i + " is not a probability: " + output[i];
+            }
+        }
+        for (int b = 0; b < batchSize; b++) {
+            float fallProbability = output[b * session.getOutputSize() + FALL_OUTPUT];
+            if (fallProbability > fallThreshold) {
+                return "Still reference window classified as a fall: " + fallProbability;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Switch to a model the loader thread has prepared (analysis thread, between windows)
+     */
+    private void adoptPendingModel() {
+        if (pendingModel.get() == null) {
+            return;
+        }
+        synchronized (inferenceLock) {
+            PendingModel pending = pendingModel.getAndSet(null);
+            if (pending == null) {
+                return;
+            }
+            if (closed) {
+                pending.session.close();
+                return;
+            }
+            ModelSession previous = modelSession;
+            modelSession = pending.session;
+            activeModelVersion = pending.version;
+            sessionConfig = pending.config;
+            inputSpec = pending.inputSpec;
+            isModelLoaded = true;
+            if (previous != null) {
+                previous.close();
+            }
+            Log.i(TAG, "Switched to model v" + pending.version + " on " + pending.config);
+        }
+    }
+
     /**
      * Load model file from assets
      */
@@ -99,40 +551,97 @@ public class TinyMLProcessor {
         }
     }
 
-    /**
-     * Initialize input and output buffers
-     */
-    private void initializeBuffers() {
-        // Input buffer: float32 values for sensor data
-        inputBuffer = ByteBuffer.allocateDirect(INPUT_SIZE * 4); // 4 bytes per float
-        inputBuffer.order(ByteOrder.nativeOrder());
-
-        // Output buffer: probabilities for [no_fall, fall]
-        outputBuffer = new float[1][OUTPUT_SIZE];
-
-        Log.d(TAG, "Buffers initialized - Input size: " + INPUT_SIZE + ", Output size: " + OUTPUT_SIZE);
-    }
-
     /**
      * Create a simple fallback model when TFLite model is not available
      */
     private void createFallbackModel() {
         Log.w(TAG, "Using fallback rule-based fall detection");
         isModelLoaded = false; // Will use rule-based detection
+        modelAccepted = false;
     }
 
     /**
      * Process sensor data and detect falls
+     * The result is pooled: call {@link FallDetectionResult#recycle()} once done with it.
      */
     public FallDetectionResult processSensorData(SensorDataCollector.SensorDataWindow dataWindow) {
-        if (dataWindow == null || dataWindow.accelerometerData.isEmpty()) {
-            return new FallDetectionResult(false, 0.0f, "No data available");
+        adoptPendingModel();
+        if (dataWindow == null || dataWindow.isEmpty()) {
+            return obtainResult().setMessage("No data available");
         }
 
-        if (isModelLoaded && tflite != null) {
-            return processWithTFLite(dataWindow);
-        } else {
-            return processWithRuleBasedDetection(dataWindow);
+        if (isModelLoaded && modelSession != null) {
+            synchronized (inferenceLock) {
+                if (!calibrating && modelSession != null) {
+                    return processWithTFLite(dataWindow);
+                }
+            }
+        }
+        return processWithRuleBasedDetection(dataWindow);
+    }
+
+    /**
+     * Process consecutive windows, for example all windows of one sensor batch
+     * With the TFLite model they go through the interpreter in a single invocation of
+     * up to {@link #MAX_BATCH_WINDOWS} windows. {@code results[i]} receives the result
+     * for {@code windows[i]}; each must be recycled like a single result.
+     */
+    public void processSensorData(SensorDataCollector.SensorDataWindow[] windows, int count,
+                                  FallDetectionResult[] results) {
+        adoptPendingModel();
+        for (int from = 0; from < count; from += MAX_BATCH_WINDOWS) {
+            int to = Math.min(count, from + MAX_BATCH_WINDOWS);
+            boolean inferred = false;
+            if (isModelLoaded && modelSession != null) {
+                synchronized (inferenceLock) {
+                    if (!calibrating && modelSession != null) {
+                        processBatchWithTFLite(windows, from, to, results);
+                        inferred = true;
+                    }
+                }
+            }
+            if (!inferred) {
+                for (int i = from; i < to; i++) {
+                    results[i] = processSensorData(windows[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Run windows {@code from} to {@code to} through the model in one invocation
+     */
+    private void processBatchWithTFLite(SensorDataCollector.SensorDataWindow[] windows, int from, int to,
+                                        FallDetectionResult[] results) {
+        float[] input = modelSession.getInput();
+        int inputSize = modelSession.getInputSize();
+        int batchSize = 0;
+        for (int i = from; i < to; i++) {
+            SensorDataCollector.SensorDataWindow window = windows[i];
+            if (window == null || window.isEmpty()) {
+                results[i] = obtainResult().setMessage("No data available");
+                continue;
+            }
+            inputSpec.fill(window, input, batchSize * inputSize);
+            batchWindowIndex[batchSize++] = i;
+        }
+        if (batchSize == 0) {
+            return;
+        }
+
+        try {
+            float[] output = modelSession.run(batchSize);
+            for (int b = 0; b < batchSize; b++) {
+                float fallProbability = output[b * modelSession.getOutputSize() + FALL_OUTPUT];
+                results[batchWindowIndex[b]] = obtainResult().setInference(fallProbability > fallThreshold,
+                    fallProbability);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error during batched TFLite inference", e);
+            for (int b = 0; b < batchSize; b++) {
+                int i = batchWindowIndex[b];
+                results[i] = processWithRuleBasedDetection(windows[i]);
+            }
         }
     }
 
@@ -142,21 +651,16 @@ public class TinyMLProcessor {
     private FallDetectionResult processWithTFLite(SensorDataCollector.SensorDataWindow dataWindow) {
         try {
             // Prepare input data
-            prepareInputData(dataWindow);
+            inputSpec.fill(dataWindow, modelSession.getInput(), 0);
 
             // Run inference
-            Map<Integer, Object> outputs = new HashMap<>();
-            outputs.put(outputTensorIndex, outputBuffer);
-
-            tflite.runForMultipleInputsOutputs(new Object[]{inputBuffer}, outputs);
+            float[] output = modelSession.run();
 
             // Interpret results
-            float fallProbability = outputBuffer[0][1]; // Probability of fall
+            float fallProbability = output[FALL_OUTPUT]; // Probability of fall
             boolean isFall = fallProbability > fallThreshold;
 
-            String details = String.format("TFLite inference - Fall probability: %.3f", fallProbability);
-
-            return new FallDetectionResult(isFall, fallProbability, details);
+            return obtainResult().setInference(isFall, fallProbability);
 
         } catch (Exception e) {
             Log.e(TAG, "Error during TFLite inference", e);
@@ -165,42 +669,16 @@ public class TinyMLProcessor {
         }
     }
 
-    /**
-     * Prepare input data for TensorFlow Lite model
-     */
-    private void prepareInputData(SensorDataCollector.SensorDataWindow dataWindow) {
-        inputBuffer.rewind();
-
-        // Normalize and flatten accelerometer data
-        int sampleCount = Math.min(50, dataWindow.accelerometerData.size()); // Use last 50 samples
-        int startIndex = Math.max(0, dataWindow.accelerometerData.size() - sampleCount);
-
-        for (int i = startIndex; i < dataWindow.accelerometerData.size(); i++) {
-            Float[] sample = dataWindow.accelerometerData.get(i);
-
-            // Normalize values (assuming typical range -20 to +20 m/s²)
-            for (int axis = 0; axis < 3; axis++) {
-                float normalizedValue = Math.max(-1.0f, Math.min(1.0f, sample[axis] / 20.0f));
-                inputBuffer.putFloat(normalizedValue);
-            }
-        }
-
-        // Pad with zeros if we have fewer than 50 samples
-        while (inputBuffer.position() < INPUT_SIZE * 4) {
-            inputBuffer.putFloat(0.0f);
-        }
-    }
-
     /**
      * Process data using advanced rule-based fall detection with TinyML-like features
      */
     private FallDetectionResult processWithRuleBasedDetection(SensorDataCollector.SensorDataWindow dataWindow) {
-        if (dataWindow.accelerometerData.isEmpty()) {
-            return new FallDetectionResult(false, 0.0f, "No accelerometer data");
+        if (dataWindow.isEmpty()) {
+            return obtainResult().setMessage("No accelerometer data");
         }
 
         // Extract comprehensive features
-        MotionFeatures features = extractMotionFeatures(dataWindow);
+        MotionFeatures features = extractMotionFeatures(dataWindow, motionFeatures);
 
         // Get sensitivity multiplier (inverted - lower setting = higher threshold)
         float sensitivityMultiplier = getSensitivityMultiplier();
@@ -213,54 +691,38 @@ public class TinyMLProcessor {
 
     /**
      * Extract comprehensive motion features from sensor data
+     * Magnitude, jerk, axis and orientation statistics are maintained incrementally
+     * by the collector and arrive with the window, so this is constant-time.
      */
-    private MotionFeatures extractMotionFeatures(SensorDataCollector.SensorDataWindow dataWindow) {
-        List<Float> magnitudes = new ArrayList<>();
-        List<Float> verticalAccel = new ArrayList<>();
-        List<Float> horizontalMagnitudes = new ArrayList<>();
-
-        float totalMagnitude = 0.0f;
-        float maxMagnitude = 0.0f;
-        float minMagnitude = Float.MAX_VALUE;
-
-        // Calculate magnitudes and extract features
-        for (Float[] sample : dataWindow.accelerometerData) {
-            float magnitude = (float) Math.sqrt(
-                sample[0] * sample[0] +
-                sample[1] * sample[1] +
-                sample[2] * sample[2]
-            );
-
-            float horizontalMag = (float) Math.sqrt(sample[0] * sample[0] + sample[1] * sample[1]);
-
-            magnitudes.add(magnitude);
-            verticalAccel.add(Math.abs(sample[2])); // Z-axis (vertical when phone is upright)
-            horizontalMagnitudes.add(horizontalMag);
-
-            maxMagnitude = Math.max(maxMagnitude, magnitude);
-            minMagnitude = Math.min(minMagnitude, magnitude);
-            totalMagnitude += magnitude;
-        }
-
-        float avgMagnitude = totalMagnitude / magnitudes.size();
-
-        // Calculate statistical features
-        float variance = calculateVariance(magnitudes, avgMagnitude);
-        float standardDeviation = (float) Math.sqrt(variance);
-
-        // Calculate jerk (rate of change of acceleration)
-        float maxJerk = calculateMaxJerk(magnitudes);
-
-        // Calculate orientation change
-        float orientationChange = calculateOrientationChange(dataWindow);
-
-        // Calculate frequency domain features
-        float dominantFrequency = calculateDominantFrequency(magnitudes);
-
-        return new MotionFeatures(
-            maxMagnitude, minMagnitude, avgMagnitude, standardDeviation,
-            maxJerk, orientationChange, dominantFrequency,
-            calculateMean(verticalAccel), calculateMean(horizontalMagnitudes)
+    MotionFeatures extractMotionFeatures(SensorDataCollector.SensorDataWindow dataWindow,
+                                         MotionFeatures target) {
+        float[] windowFeatures = dataWindow.features;
+
+        // The collector lowers its rate during stillness; per-sample jerk is rescaled
+        // to the nominal rate the thresholds were tuned for
+        float sampleRate = dataWindow.getSampleRateHz();
+        float jerk = windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_MAX_JERK]
+            * (sampleRate / SensorDataCollector.SensorDataWindow.NOMINAL_SAMPLE_RATE_HZ);
+
+        float highPower = windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_BAND_POWER_HIGH];
+        float totalPower = windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_BAND_POWER_LOW]
+            + windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_BAND_POWER_MID] + highPower;
+        float highBandShare = totalPower > 0.0f ? highPower / totalPower : 0.0f;
+
+        return target.set(
+            windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_MAGNITUDE_MAX],
+            windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_MAGNITUDE_MIN],
+            windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_MAGNITUDE_MEAN],
+            windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_MAGNITUDE_STD],
+            jerk,
+            windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_TILT_CHANGE],
+            windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_DOMINANT_FREQUENCY],
+            windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_VERTICAL_MEAN],
+            windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_VERTICAL_MIN],
+            windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_VERTICAL_MAX],
+            windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_HORIZONTAL_MEAN],
+            windowFeatures[SensorDataCollector.SensorDataWindow.FEATURE_CUMULATIVE_TILT],
+            highBandShare
         );
     }
 
@@ -269,8 +731,8 @@ public class TinyMLProcessor {
      */
     private FallDetectionResult detectFallWithAdvancedAlgorithm(MotionFeatures features, float sensitivityMultiplier) {
         // Base thresholds (these will be scaled by sensitivity)
-        float impactThreshold = 25.0f * sensitivityMultiplier;      // High acceleration threshold
-        float freeFallThreshold = 4.0f / sensitivityMultiplier;    // Low acceleration threshold
+        float impactThreshold = IMPACT_THRESHOLD_BASE * sensitivityMultiplier;      // High acceleration threshold
+        float freeFallThreshold = FREE_FALL_THRESHOLD_BASE / sensitivityMultiplier; // Low acceleration threshold
         float jerkThreshold = 15.0f * sensitivityMultiplier;       // Sudden change threshold
         float orientationThreshold = 45.0f / sensitivityMultiplier; // Orientation change threshold
         float variationThreshold = 12.0f * sensitivityMultiplier;  // Acceleration variation threshold
@@ -284,8 +746,8 @@ public class TinyMLProcessor {
         boolean hasAbnormalStdDev = features.standardDeviation > (8.0f * sensitivityMultiplier);
 
         // Additional checks to reduce false positives
-        boolean isNotJustVibration = features.dominantFrequency < 15.0f; // Not high-frequency vibration
-        boolean hasReasonableDuration = true; // We assume 2-second window is reasonable
+        boolean isNotJustVibration = features.dominantFrequency < 15.0f  // Not high-frequency vibration
+            && features.highBandShare < VIBRATION_POWER_SHARE;
         boolean isNotJustPlacement = features.maxMagnitude < (50.0f * sensitivityMultiplier); // Not just phone placement
 
         // Calculate confidence score using weighted features
@@ -320,22 +782,30 @@ public class TinyMLProcessor {
                         isNotJustPlacement &&
                         !isSimilarToFalseAlarm; // Don't trigger if similar to learned false alarms
 
-        String details = String.format(
-            "TinyML - Impact: %.1f, FreeFall: %.1f, Jerk: %.1f, Orient: %.1f°, StdDev: %.2f, Conf: %.3f%s%s",
-            features.maxMagnitude, features.minMagnitude, features.maxJerk,
-            features.orientationChange, features.standardDeviation, confidence,
-            (originalConfidence != confidence) ? String.format(" (adj from %.3f)", originalConfidence) : "",
-            isSimilarToFalseAlarm ? " [Similar to false alarm]" : ""
-        );
+        return obtainResult().setRules(isFall, confidence, originalConfidence, isSimilarToFalseAlarm, features);
+    }
 
-        return new FallDetectionResult(isFall, confidence, details);
+    /**
+     * Impact threshold for the collector's cascade trigger at the current sensitivity.
+     * Kept below the rule threshold so a window the rules would flag is never skipped.
+     */
+    public float getTriggerImpactThreshold() {
+        return IMPACT_THRESHOLD_BASE * getSensitivityMultiplier() * TRIGGER_MARGIN;
+    }
+
+    /**
+     * Free-fall threshold for the collector's cascade trigger at the current sensitivity
+     */
+    public float getTriggerFreeFallThreshold() {
+        float ruleThreshold = FREE_FALL_THRESHOLD_BASE / getSensitivityMultiplier();
+        return Math.max(ImpactTrigger.DEFAULT_FREE_FALL_THRESHOLD, ruleThreshold / TRIGGER_MARGIN);
     }
 
     /**
      * Get sensitivity multiplier based on user settings
      */
     private float getSensitivityMultiplier() {
-        int sensitivityLevel = prefsManager.getSensitivityLevel();
+        int sensitivityLevel = prefsManager != null ? prefsManager.getSensitivityLevel() : fixedSensitivityLevel;
         switch (sensitivityLevel) {
             case 1: return 3.0f;  // Very Low sensitivity (high thresholds)
             case 2: return 2.0f;  // Low sensitivity
@@ -346,88 +816,6 @@ public class TinyMLProcessor {
         }
     }
 
-    /**
-     * Calculate variance of a list of values
-     */
-    private float calculateVariance(List<Float> values, float mean) {
-        float sum = 0.0f;
-        for (float value : values) {
-            float diff = value - mean;
-            sum += diff * diff;
-        }
-        return sum / values.size();
-    }
-
-    /**
-     * Calculate maximum jerk (rate of change of acceleration)
-     */
-    private float calculateMaxJerk(List<Float> magnitudes) {
-        if (magnitudes.size() < 2) return 0.0f;
-
-        float maxJerk = 0.0f;
-        for (int i = 1; i < magnitudes.size(); i++) {
-            float jerk = Math.abs(magnitudes.get(i) - magnitudes.get(i - 1));
-            maxJerk = Math.max(maxJerk, jerk);
-        }
-        return maxJerk;
-    }
-
-    /**
-     * Calculate orientation change using accelerometer data
-     */
-    private float calculateOrientationChange(SensorDataCollector.SensorDataWindow dataWindow) {
-        if (dataWindow.accelerometerData.size() < 2) return 0.0f;
-
-        Float[] first = dataWindow.accelerometerData.get(0);
-        Float[] last = dataWindow.accelerometerData.get(dataWindow.accelerometerData.size() - 1);
-
-        // Calculate angle between first and last acceleration vectors
-        float dot = first[0] * last[0] + first[1] * last[1] + first[2] * last[2];
-        float mag1 = (float) Math.sqrt(first[0] * first[0] + first[1] * first[1] + first[2] * first[2]);
-        float mag2 = (float) Math.sqrt(last[0] * last[0] + last[1] * last[1] + last[2] * last[2]);
-
-        if (mag1 == 0 || mag2 == 0) return 0.0f;
-
-        float cosAngle = dot / (mag1 * mag2);
-        cosAngle = Math.max(-1.0f, Math.min(1.0f, cosAngle)); // Clamp to valid range
-
-        return (float) Math.toDegrees(Math.acos(cosAngle));
-    }
-
-    /**
-     * Calculate dominant frequency using simple peak detection
-     */
-    private float calculateDominantFrequency(List<Float> magnitudes) {
-        if (magnitudes.size() < 4) return 0.0f;
-
-        // Simple peak counting approach
-        int peaks = 0;
-        for (int i = 1; i < magnitudes.size() - 1; i++) {
-            if (magnitudes.get(i) > magnitudes.get(i - 1) &&
-                magnitudes.get(i) > magnitudes.get(i + 1)) {
-                peaks++;
-            }
-        }
-
-        // Estimate frequency based on peaks (assuming 50Hz sampling rate, 2-second window)
-        float samplingRate = 50.0f;
-        float windowDuration = magnitudes.size() / samplingRate;
-        return peaks / windowDuration;
-    }
-
-    /**
-     * Calculate mean of a list of values
-     */
-    private float calculateMean(List<Float> values) {
-        if (values.isEmpty()) return 0.0f;
-
-        float sum = 0.0f;
-        for (float value : values) {
-            sum += value;
-        }
-        return sum / values.size();
-    }
-
     /**
      * Update fall detection threshold
      */
@@ -447,13 +835,14 @@ public class TinyMLProcessor {
      * Learn from a false alarm to improve future detection
      */
     public void learnFromFalseAlarm(SensorDataCollector.SensorDataWindow dataWindow, float confidence) {
-        if (dataWindow == null || dataWindow.accelerometerData.isEmpty()) {
+        if (dataWindow == null || dataWindow.isEmpty()) {
             Log.w(TAG, "Cannot learn from false alarm - no data available");
             return;
         }
 
-        // Extract features from the false alarm
-        MotionFeatures features = extractMotionFeatures(dataWindow);
+        // Extract features from the false alarm (called off the analysis thread, so not
+        // into the shared per-window instance)
+        MotionFeatures features = extractMotionFeatures(dataWindow, new MotionFeatures());
 
         // Let the learning engine learn from this pattern
         learningEngine.learnFromFalseAlarm(features, confidence);
@@ -461,6 +850,12 @@ public class TinyMLProcessor {
         Log.i(TAG, "Learned from false alarm - confidence: " + confidence);
     }
 
+    private FallDetectionResult obtainResult() {
+        FallDetectionResult result = resultPool.acquire();
+        result.timestamp = System.currentTimeMillis();
+        return result;
+    }
+
     /**
      * Get learning statistics
      */
@@ -476,6 +871,49 @@ public class TinyMLProcessor {
         Log.i(TAG, "TinyML learning reset");
     }
 
+    /**
+     * Wall time per TFLite inference in nanoseconds, or null when running rule-based
+     */
+    public LatencyHistogram getInferenceLatency() {
+        return modelSession != null ? modelSession.getLatency() : null;
+    }
+
+    /**
+     * Model version in use: {@link ModelRegistry#BUNDLED_VERSION} for the bundled model,
+     * -1 when running rule-based
+     */
+    public int getActiveModelVersion() {
+        return activeModelVersion;
+    }
+
+    /**
+     * Interpreter configuration of the running model
+     */
+    public InterpreterTuner.Config getInterpreterConfig() {
+        return sessionConfig;
+    }
+
+    /**
+     * What the newest accepted model reads, including one that is about to be swapped in
+     */
+    public ModelInputSpec getInputSpec() {
+        return acceptedInputSpec;
+    }
+
+    /**
+     * Sensors detection reads: what the newest accepted model reads, or what the
+     * rule-based detector's features need without a model. A window the model fails
+     * on still falls back to the rule-based detector, with a gyroscope-less tilt
+     * estimate if the model did not read the gyroscope.
+     */
+    public int[] getSensorTypes() {
+        return modelAccepted ? acceptedInputSpec.getSensorTypes() : RULE_BASED_SENSOR_TYPES.clone();
+    }
+
+    public ModelRegistry getModelRegistry() {
+        return modelRegistry;
+    }
+
     /**
      * Check if TensorFlow Lite model is loaded
      */
@@ -487,9 +925,10 @@ public class TinyMLProcessor {
      * Get model information
      */
     public String getModelInfo() {
-        if (isModelLoaded && tflite != null) {
-            return String.format("TensorFlow Lite model loaded - Input: %d, Output: %d",
-                INPUT_SIZE, OUTPUT_SIZE);
+        if (isModelLoaded && modelSession != null) {
+            return String.format("TensorFlow Lite model v%d loaded - Input: %s, Output: %s, %s, latency: %s",
+                activeModelVersion, modelSession.getInputSpec(), modelSession.getOutputSpec(), sessionConfig,
+                modelSession.getLatency().getSummary(1000, "us"));
         } else {
             return "Rule-based fall detection (TFLite model not available)";
         }
@@ -497,33 +936,59 @@ public class TinyMLProcessor {
 
     /**
      * Clean up resources
+     * Safe while windows are still being analysed: the model is closed between two
+     * inferences and later windows go to the rule-based detector.
      */
     public void cleanup() {
-        if (tflite != null) {
-            tflite.close();
-            tflite = null;
+        synchronized (this) {
+            if (modelLoader != null) {
+                modelLoader.shutdownNow();
+                modelLoader = null;
+            }
+        }
+        synchronized (inferenceLock) {
+            closed = true;
+            PendingModel pending = pendingModel.getAndSet(null);
+            if (pending != null) {
+                pending.session.close();
+            }
+            if (modelSession != null) {
+                Log.d(TAG, "Inference latency " + modelSession.getLatency().getSummary(1000, "us"));
+                modelSession.close();
+                modelSession = null;
+            }
+            isModelLoaded = false;
+            modelAccepted = false;
         }
-        isModelLoaded = false;
         Log.d(TAG, "TinyML processor cleaned up");
     }
 
     /**
      * Motion features extracted from sensor data
+     * Filled in place for every window, so a reference is only valid while that window is processed.
      */
     public static class MotionFeatures {
-        final float maxMagnitude;
-        final float minMagnitude;
-        final float avgMagnitude;
-        final float standardDeviation;
-        final float maxJerk;
-        final float orientationChange;
-        final float dominantFrequency;
-        final float avgVerticalAccel;
-        final float avgHorizontalMagnitude;
-
-        MotionFeatures(float maxMagnitude, float minMagnitude, float avgMagnitude,
-                      float standardDeviation, float maxJerk, float orientationChange,
-                      float dominantFrequency, float avgVerticalAccel, float avgHorizontalMagnitude) {
+        float maxMagnitude;
+        float minMagnitude;
+        float avgMagnitude;
+        float standardDeviation;
+        float maxJerk;
+        float orientationChange;
+        float dominantFrequency;
+        // Earth-frame vertical acceleration without gravity (m/s², -1g in free fall)
+        float avgVerticalAccel;
+        float minVerticalAccel;
+        float maxVerticalAccel;
+        float avgHorizontalMagnitude;
+        float cumulativeTilt;
+        // Share of the magnitude spectrum power above 8Hz
+        float highBandShare;
+
+        MotionFeatures set(float maxMagnitude, float minMagnitude, float avgMagnitude,
+                           float standardDeviation, float maxJerk, float orientationChange,
+                           float dominantFrequency, float avgVerticalAccel, float minVerticalAccel,
+                           float maxVerticalAccel, float avgHorizontalMagnitude, float cumulativeTilt,
+                           float highBandShare) {
             this.maxMagnitude = maxMagnitude;
             this.minMagnitude = minMagnitude;
             this.avgMagnitude = avgMagnitude;
@@ -532,30 +997,113 @@ public class TinyMLProcessor {
             this.orientationChange = orientationChange;
             this.dominantFrequency = dominantFrequency;
             this.avgVerticalAccel = avgVerticalAccel;
+            this.minVerticalAccel = minVerticalAccel;
+            this.maxVerticalAccel = maxVerticalAccel;
             this.avgHorizontalMagnitude = avgHorizontalMagnitude;
+            this.cumulativeTilt = cumulativeTilt;
+            this.highBandShare = highBandShare;
+            return this;
         }
     }
 
     /**
      * Result class for fall detection
+     * Results from {@link #processSensorData} are pooled and valid until {@link #recycle()}.
+     * The details text is only built when asked for.
      */
     public static class FallDetectionResult {
-        public final boolean isFall;
-        public final float confidence;
-        public final String details;
-        public final long timestamp;
+        private static final int KIND_MESSAGE = 0;
+        private static final int KIND_INFERENCE = 1;
+        private static final int KIND_RULES = 2;
+
+        public boolean isFall;
+        public float confidence;
+        public long timestamp;
+
+        // Inputs of the details text
+        private int kind = KIND_MESSAGE;
+        private String message;
+        private float originalConfidence;
+        private boolean similarToFalseAlarm;
+        private float maxMagnitude;
+        private float minMagnitude;
+        private float maxJerk;
+        private float orientationChange;
+        private float standardDeviation;
+
+        private final TinyMLProcessor owner;
 
         public FallDetectionResult(boolean isFall, float confidence, String details) {
+            this.owner = null;
             this.isFall = isFall;
             this.confidence = confidence;
-            this.details = details;
+            this.message = details;
             this.timestamp = System.currentTimeMillis();
         }
 
+        FallDetectionResult(TinyMLProcessor owner) {
+            this.owner = owner;
+        }
+
+        FallDetectionResult setMessage(String message) {
+            this.kind = KIND_MESSAGE;
+            this.isFall = false;
+            this.confidence = 0.0f;
+            this.message = message;
+            return this;
+        }
+
+        FallDetectionResult setInference(boolean isFall, float probability) {
+            this.kind = KIND_INFERENCE;
+            this.isFall = isFall;
+            this.confidence = probability;
+            return this;
+        }
+
+        FallDetectionResult setRules(boolean isFall, float confidence, float originalConfidence,
+                                     boolean similarToFalseAlarm, MotionFeatures features) {
+            this.kind = KIND_RULES;
+            this.isFall = isFall;
+            this.confidence = confidence;
+            this.originalConfidence = originalConfidence;
+            this.similarToFalseAlarm = similarToFalseAlarm;
+            this.maxMagnitude = features.maxMagnitude;
+            this.minMagnitude = features.minMagnitude;
+            this.maxJerk = features.maxJerk;
+            this.orientationChange = features.orientationChange;
+            this.standardDeviation = features.standardDeviation;
+            return this;
+        }
+
+        public String getDetails() {
+            switch (kind) {
+                case KIND_INFERENCE:
+                    return String.format("TFLite inference - Fall probability: %.3f", confidence);
+                case KIND_RULES:
+                    return String.format(
+                        "TinyML - Impact: %.1f, FreeFall: %.1f, Jerk: %.1f, Orient: %.1f°, StdDev: %.2f, Conf: %.3f%s%s",
+                        maxMagnitude, minMagnitude, maxJerk, orientationChange, standardDeviation, confidence,
+                        (originalConfidence != confidence) ? String.format(" (adj from %.3f)", originalConfidence) : "",
+                        similarToFalseAlarm ? " [Similar to false alarm]" : ""
+                    );
+                default:
+                    return message;
+            }
+        }
+
+        /**
+         * Hand the result back to its processor for reuse. Do not touch it afterwards.
+         */
+        public void recycle() {
+            if (owner != null) {
+                owner.resultPool.release(this);
+            }
+        }
+
         @Override
         public String toString() {
             return String.format("Fall: %s, Confidence: %.3f, Details: %s",
-                isFall, confidence, details);
+                isFall, confidence, getDetails());
         }
     }
 }
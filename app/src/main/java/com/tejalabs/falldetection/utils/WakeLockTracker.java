@@ -0,0 +1,126 @@
+package com.tejalabs.falldetection.utils;
+
+import android.os.PowerManager;
+import android.os.SystemClock;
+
+/**
+ * Partial wake lock wrapper that records how long the lock is actually held
+ * Acquires are counted, so several holders can share one lock: the underlying
+ * lock is taken by the first acquire and dropped by the last release. A timeout
+ * bounds every hold, and held time stops at the timeout if a release never comes.
+ */
+public class WakeLockTracker {
+
+    private static final long MS_PER_HOUR = 60L * 60L * 1000L;
+
+    private final PowerManager.WakeLock wakeLock;
+    private final long createdAt;
+
+    private int holders = 0;
+    private long heldSince = -1;
+    private long heldUntil = Long.MAX_VALUE;
+    private long totalHeldMs = 0;
+    private long acquireCount = 0;
+
+    public WakeLockTracker(PowerManager powerManager, String tag) {
+        this.wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, tag);
+        this.wakeLock.setReferenceCounted(false);
+        this.createdAt = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Hold the lock until released
+     */
+    public synchronized void acquire() {
+        long now = SystemClock.elapsedRealtime();
+        expireIfNeeded(now);
+        holders++;
+        if (heldSince < 0) {
+            heldSince = now;
+            acquireCount++;
+        }
+        heldUntil = Long.MAX_VALUE;
+        wakeLock.acquire();
+    }
+
+    /**
+     * Hold the lock until released or until {@code timeoutMs} has passed
+     */
+    public synchronized void acquire(long timeoutMs) {
+        long now = SystemClock.elapsedRealtime();
+        expireIfNeeded(now);
+        holders++;
+        if (heldSince < 0) {
+            heldSince = now;
+            heldUntil = now + timeoutMs;
+            acquireCount++;
+        } else if (heldUntil != Long.MAX_VALUE) {
+            heldUntil = Math.max(heldUntil, now + timeoutMs);
+        }
+        if (heldUntil != Long.MAX_VALUE) {
+            wakeLock.acquire(heldUntil - now);
+        }
+    }
+
+    public synchronized void release() {
+        long now = SystemClock.elapsedRealtime();
+        expireIfNeeded(now);
+        if (holders == 0) {
+            return;
+        }
+        if (--holders == 0) {
+            totalHeldMs += now - heldSince;
+            heldSince = -1;
+            heldUntil = Long.MAX_VALUE;
+            if (wakeLock.isHeld()) {
+                wakeLock.release();
+            }
+        }
+    }
+
+    public synchronized boolean isHeld() {
+        expireIfNeeded(SystemClock.elapsedRealtime());
+        return holders > 0;
+    }
+
+    /**
+     * Total time the lock has been held since this tracker was created
+     */
+    public synchronized long getHeldTimeMs() {
+        long now = SystemClock.elapsedRealtime();
+        expireIfNeeded(now);
+        return heldSince < 0 ? totalHeldMs : totalHeldMs + now - heldSince;
+    }
+
+    /**
+     * Average held time per hour of tracked time (ms per hour)
+     */
+    public long getHeldMsPerHour() {
+        long tracked = SystemClock.elapsedRealtime() - createdAt;
+        return tracked <= 0 ? 0 : getHeldTimeMs() * MS_PER_HOUR / tracked;
+    }
+
+    /**
+     * Number of times the lock went from released to held
+     */
+    public synchronized long getAcquireCount() {
+        return acquireCount;
+    }
+
+    public String getSummary() {
+        return "held " + getHeldTimeMs() + "ms (" + getHeldMsPerHour() + "ms/h), acquired "
+            + getAcquireCount() + " times";
+    }
+
+    /**
+     * Account for a timed hold that ran out without a release
+     */
+    private void expireIfNeeded(long now) {
+        if (heldSince >= 0 && now >= heldUntil) {
+            totalHeldMs += heldUntil - heldSince;
+            heldSince = -1;
+            heldUntil = Long.MAX_VALUE;
+            holders = 0;
+        }
+    }
+}
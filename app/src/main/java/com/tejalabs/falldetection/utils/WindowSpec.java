@@ -0,0 +1,83 @@
+package com.tejalabs.falldetection.utils;
+
+/**
+ * Geometry of an analysis window: how many accelerometer samples it spans and how
+ * many new samples arrive between two consecutive windows
+ * Sizes are in samples, so at a reduced sampling rate a window covers more time.
+ */
+public final class WindowSpec {
+
+    // Rate the duration based factory converts at
+    public static final int NOMINAL_SAMPLE_RATE_HZ = 50;
+
+    /** 1 second window every 0.5 seconds, for impact and free-fall features */
+    public static final WindowSpec IMPACT = new WindowSpec("impact", 50, 25);
+
+    /** 10 second window every second, for posture and stillness after an event */
+    public static final WindowSpec POSTURE = new WindowSpec("posture", 500, 50);
+
+    private final String name;
+    private final int size;
+    private final int hop;
+
+    /**
+     * @param size samples per window, at least 2
+     * @param hop new samples between windows, from 1 to {@code size}
+     */
+    public WindowSpec(String name, int size, int hop) {
+        if (size < 2) {
+            throw new IllegalArgumentException("Window size must be at least 2: " + size);
+        }
+        if (hop < 1 || hop > size) {
+            throw new IllegalArgumentException("Hop must be between 1 and the window size: " + hop);
+        }
+        this.name = name;
+        this.size = size;
+        this.hop = hop;
+    }
+
+    /**
+     * Window of {@code durationMs} every {@code hopMs} at the nominal 50Hz
+     */
+    public static WindowSpec ofDuration(String name, long durationMs, long hopMs) {
+        return new WindowSpec(name, (int) (durationMs * NOMINAL_SAMPLE_RATE_HZ / 1000),
+            (int) Math.max(1, hopMs * NOMINAL_SAMPLE_RATE_HZ / 1000));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getHop() {
+        return hop;
+    }
+
+    /**
+     * Time between windows at the nominal rate
+     */
+    public long getHopNs() {
+        return hop * 1000000000L / NOMINAL_SAMPLE_RATE_HZ;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof WindowSpec)) return false;
+        WindowSpec spec = (WindowSpec) other;
+        return size == spec.size && hop == spec.hop && name.equals(spec.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return (name.hashCode() * 31 + size) * 31 + hop;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + size + " samples, hop " + hop + ")";
+    }
+}
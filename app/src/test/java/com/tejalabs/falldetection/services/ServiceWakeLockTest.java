@@ -0,0 +1,25 @@
+package com.tejalabs.falldetection.services;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks when the service holds its permanent wake lock
+ */
+public class ServiceWakeLockTest {
+
+    @Test
+    public void heldOnlyWhileMonitoringWithoutWakeUpSensors() {
+        assertTrue(FallDetectionService.isServiceWakeLockNeeded(true, false));
+        // Low-power mode: wake-up sensors and the per-analysis lock wake the CPU
+        assertFalse(FallDetectionService.isServiceWakeLockNeeded(true, true));
+    }
+
+    @Test
+    public void releasedWhileStoppedOrPaused() {
+        // Stopping and pausing monitoring leave isMonitoring false, whatever the mode
+        assertFalse(FallDetectionService.isServiceWakeLockNeeded(false, false));
+        assertFalse(FallDetectionService.isServiceWakeLockNeeded(false, true));
+    }
+}
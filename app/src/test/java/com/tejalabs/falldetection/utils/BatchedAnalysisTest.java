@@ -0,0 +1,95 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that windows of one sensor batch reach a batch listener together and in order,
+ * and that batched processing gives the same results as one window at a time
+ */
+public class BatchedAnalysisTest {
+
+    private static final long PERIOD_NS = 20000000L; // 50Hz
+    private static final float IMPACT = 40.0f;
+
+    private final List<Runnable> deferredAnalysis = new ArrayList<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private long lastWindowEnd = -1;
+    private int windows = 0;
+    private int fallsInBatches = 0;
+    private int fallsOneByOne = 0;
+
+    @Test
+    public void deliversQueuedWindowsAsOrderedBatches() {
+        final TinyMLProcessor processor = new TinyMLProcessor(SharedPreferencesManager.DEFAULT_SENSITIVITY_LEVEL);
+        final TinyMLProcessor.FallDetectionResult[] results =
+            new TinyMLProcessor.FallDetectionResult[SensorDataCollector.MAX_ANALYSIS_BATCH];
+
+        SensorDataCollector collector = new SensorDataCollector(new ManualSensorSource());
+        collector.setAnalysisExecutor(deferredAnalysis::add);
+        collector.setTriggerThresholds(processor.getTriggerImpactThreshold(), processor.getTriggerFreeFallThreshold());
+        collector.setDataListener(new SensorDataCollector.BatchDataListener() {
+            @Override
+            public void onDataBatch(SensorDataCollector.SensorDataWindow[] batch, int count) {
+                batchSizes.add(count);
+                processor.processSensorData(batch, count, results);
+                for (int i = 0; i < count; i++) {
+                    long end = batch[i].t(batch[i].size() - 1);
+                    assertTrue(end > lastWindowEnd);
+                    lastWindowEnd = end;
+                    windows++;
+
+                    TinyMLProcessor.FallDetectionResult single = processor.processSensorData(batch[i]);
+                    assertEquals(single.isFall, results[i].isFall);
+                    assertEquals(single.confidence, results[i].confidence, 0.0001f);
+                    fallsInBatches += results[i].isFall ? 1 : 0;
+                    fallsOneByOne += single.isFall ? 1 : 0;
+                    single.recycle();
+                    results[i].recycle();
+                }
+            }
+
+            @Override
+            public void onDataProcessed(SensorDataCollector.SensorDataWindow dataWindow) {
+                fail("Triggered windows should arrive in batches");
+            }
+
+            @Override
+            public void onFallDetected(float confidence) {
+            }
+        });
+        assertTrue(collector.startCollection());
+
+        // Ten seconds delivered as one FIFO batch: a free fall and a 100ms impact, then shaking
+        for (int i = 0; i < 500; i++) {
+            float z = 9.81f;
+            if (i >= 100 && i < 115) {
+                z = 1.0f;
+            } else if (i >= 115 && i < 120) {
+                z = IMPACT;
+            } else if (i == 300 || i == 340 || i == 380 || i == 420 || i == 460) {
+                z = IMPACT;
+            }
+            collector.onSensorSample(Sensor.TYPE_ACCELEROMETER, i * PERIOD_NS, 0.0f, 0.0f, z);
+        }
+        collector.onBatchComplete();
+        for (Runnable task : deferredAnalysis) {
+            task.run();
+        }
+        collector.stopCollection();
+
+        assertEquals(collector.getWindowsAnalyzed(), windows);
+        // More windows than fit one batch: a full batch, then the rest
+        assertTrue(windows > SensorDataCollector.MAX_ANALYSIS_BATCH);
+        assertEquals(2, batchSizes.size());
+        assertEquals(SensorDataCollector.MAX_ANALYSIS_BATCH, (int) batchSizes.get(0));
+        assertEquals(fallsOneByOne, fallsInBatches);
+        assertTrue(fallsInBatches > 0);
+    }
+}
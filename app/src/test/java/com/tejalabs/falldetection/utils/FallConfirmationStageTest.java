@@ -0,0 +1,170 @@
+package com.tejalabs.falldetection.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs synthetic traces through the detector followed by the confirmation stage
+ */
+public class FallConfirmationStageTest {
+
+    // Hard sit-downs stay below the detector's thresholds, so those runs promote every
+    // strong impact to a candidate to exercise the stage itself
+    private static final float FORCED_CANDIDATE_MAGNITUDE = 15.0f;
+    private static final float FORCED_CANDIDATE_CONFIDENCE = 0.8f;
+
+    @Test
+    public void confirmsFallsFollowedByLyingStill() throws Exception {
+        for (int seed = 0; seed < 20; seed++) {
+            Run run = run(new SyntheticTraceGenerator.Builder()
+                .then(SyntheticTraceGenerator.Activity.STILL, 2000)
+                .then(SyntheticTraceGenerator.Activity.FALL)
+                .noise(0.2f)
+                .seed(seed)
+                .build(), 20000, false);
+            assertEquals("seed " + seed, 1, run.candidates);
+            assertEquals("seed " + seed, 1, run.confirmed);
+        }
+    }
+
+    @Test
+    public void confirmsForcedFallCandidatesAfterWaiting() throws Exception {
+        for (int seed = 0; seed < 20; seed++) {
+            Run run = run(new SyntheticTraceGenerator.Builder()
+                .then(SyntheticTraceGenerator.Activity.STILL, 2000)
+                .then(SyntheticTraceGenerator.Activity.FALL)
+                .noise(0.2f)
+                .seed(seed)
+                .build(), 20000, true);
+            assertEquals("seed " + seed, 1, run.confirmed);
+            assertEquals("seed " + seed, 0, run.earlyConfirmed);
+        }
+    }
+
+    @Test
+    public void rejectsHardSitDownsFollowedByMovement() throws Exception {
+        for (int seed = 0; seed < 20; seed++) {
+            Run run = run(new SyntheticTraceGenerator.Builder()
+                .then(SyntheticTraceGenerator.Activity.STILL, 2000)
+                .then(SyntheticTraceGenerator.Activity.SITTING_DOWN_HARD, 2500)
+                .then(SyntheticTraceGenerator.Activity.WALKING, 10000)
+                .then(SyntheticTraceGenerator.Activity.STILL, 5000)
+                .noise(0.2f)
+                .seed(seed)
+                .build(), 20000, true);
+            assertEquals("seed " + seed, 1, run.candidates);
+            assertEquals("seed " + seed, 1, run.rejected);
+        }
+    }
+
+    @Test
+    public void rejectsHardSitDownsFollowedBySittingStill() throws Exception {
+        for (int seed = 0; seed < 20; seed++) {
+            Run run = run(new SyntheticTraceGenerator.Builder()
+                .then(SyntheticTraceGenerator.Activity.STILL, 2000)
+                .then(SyntheticTraceGenerator.Activity.SITTING_DOWN_HARD)
+                .noise(0.2f)
+                .seed(seed)
+                .build(), 20000, true);
+            assertEquals("seed " + seed, 1, run.candidates);
+            assertEquals("seed " + seed, 1, run.rejected);
+        }
+    }
+
+    @Test
+    public void earlyConfirmationSkipsTheWait() {
+        FallConfirmationStage stage = new FallConfirmationStage();
+        assertEquals(FallConfirmationStage.Outcome.CONFIRMED, stage.onCandidate(0.96f, 0));
+        assertEquals(FallConfirmationStage.State.IDLE, stage.getState());
+
+        // A weaker candidate waits, then a stronger window of the same event promotes it
+        assertEquals(FallConfirmationStage.Outcome.NONE, stage.onCandidate(0.7f, 5000000000L));
+        assertEquals(FallConfirmationStage.State.CONFIRMING, stage.getState());
+        assertEquals(FallConfirmationStage.Outcome.CONFIRMED, stage.onCandidate(0.97f, 5500000000L));
+        assertEquals(2, stage.getEarlyConfirmedCount());
+    }
+
+    @Test
+    public void deadlineDecidesWhenWindowsStop() {
+        FallConfirmationStage stage = new FallConfirmationStage();
+        long deadlineNs = stage.getDeadlineMs() * 1000000L;
+        assertEquals(FallConfirmationStage.Outcome.NONE, stage.onDeadline(deadlineNs));
+
+        // No window at all after the candidate: escalated once the deadline passes
+        assertEquals(FallConfirmationStage.Outcome.NONE, stage.onCandidate(0.8f, 0));
+        assertEquals(FallConfirmationStage.Outcome.NONE, stage.onDeadline(deadlineNs - 1));
+        assertEquals(FallConfirmationStage.State.CONFIRMING, stage.getState());
+        assertEquals(FallConfirmationStage.Outcome.CONFIRMED, stage.onDeadline(deadlineNs));
+        assertEquals(FallConfirmationStage.State.IDLE, stage.getState());
+
+        // Windows showing the person upright and still, then nothing: decided on what was seen
+        long start = 60000000000L;
+        float[] upright = new float[SensorDataCollector.SensorDataWindow.FEATURE_COUNT];
+        upright[SensorDataCollector.SensorDataWindow.FEATURE_Z_MEAN] = 9.81f;
+        for (long t = start - 8000000000L; t < start; t += 1000000000L) {
+            stage.onWindow(upright, t);
+        }
+        assertEquals(FallConfirmationStage.Outcome.NONE, stage.onCandidate(0.8f, start));
+        for (long t = start + 2000000000L; t <= start + 4000000000L; t += 1000000000L) {
+            assertEquals(FallConfirmationStage.Outcome.NONE, stage.onWindow(upright, t));
+        }
+        assertEquals(FallConfirmationStage.Outcome.REJECTED, stage.onDeadline(start + deadlineNs));
+        assertEquals(2, stage.getDeadlineCount());
+    }
+
+    private static class Run {
+        long candidates;
+        long confirmed;
+        long earlyConfirmed;
+        long rejected;
+    }
+
+    private static Run run(SyntheticTraceGenerator generator, long durationMs, final boolean forceCandidates)
+            throws Exception {
+        SyntheticSensorSource source = new SyntheticSensorSource(generator, durationMs * 1000000L,
+            PlaybackSensorSource.Speed.AS_FAST_AS_POSSIBLE);
+        SensorDataCollector collector = new SensorDataCollector(source);
+        final TinyMLProcessor processor = new TinyMLProcessor(SharedPreferencesManager.DEFAULT_SENSITIVITY_LEVEL);
+        final FallConfirmationStage stage = new FallConfirmationStage();
+        final Run run = new Run();
+
+        collector.setDataListener(new SensorDataCollector.SensorDataListener() {
+            @Override
+            public void onDataProcessed(SensorDataCollector.SensorDataWindow dataWindow) {
+                long end = dataWindow.t(dataWindow.size() - 1);
+                if (forceCandidates) {
+                    float peak = dataWindow.features[SensorDataCollector.SensorDataWindow.FEATURE_MAGNITUDE_MAX];
+                    if (peak > FORCED_CANDIDATE_MAGNITUDE) {
+                        stage.onCandidate(FORCED_CANDIDATE_CONFIDENCE, end);
+                    }
+                    return;
+                }
+                TinyMLProcessor.FallDetectionResult result = processor.processSensorData(dataWindow);
+                if (result.isFall) {
+                    stage.onCandidate(result.confidence, end);
+                }
+                result.recycle();
+            }
+
+            @Override
+            public void onFallDetected(float confidence) {
+            }
+        });
+        collector.addWindowListener(FallConfirmationStage.WINDOW,
+            window -> stage.onWindow(window.features, window.t(window.size() - 1)));
+        collector.setAnalysisExecutor(Runnable::run);
+        collector.setAdaptiveSamplingEnabled(true);
+        collector.setTriggerThresholds(processor.getTriggerImpactThreshold(), processor.getTriggerFreeFallThreshold());
+
+        assertTrue(collector.startCollection());
+        assertTrue(source.awaitFinished(10 * 60 * 1000));
+        collector.stopCollection();
+
+        run.candidates = stage.getCandidateCount();
+        run.confirmed = stage.getConfirmedCount();
+        run.earlyConfirmed = stage.getEarlyConfirmedCount();
+        run.rejected = stage.getRejectedCount();
+        return run;
+    }
+}
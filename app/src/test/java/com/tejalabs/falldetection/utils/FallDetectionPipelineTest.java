@@ -0,0 +1,146 @@
+package com.tejalabs.falldetection.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs synthetic traces through the collector and the rule-based detector
+ */
+public class FallDetectionPipelineTest {
+
+    private static final long FALL_DEBOUNCE_NS = 3000000000L;
+
+    @Test
+    public void detectsFalls() throws Exception {
+        int detected = 0;
+        for (int seed = 0; seed < 20; seed++) {
+            Run run = run(scripted(SyntheticTraceGenerator.Activity.FALL, seed), 9000, true);
+            detected += run.detections > 0 ? 1 : 0;
+        }
+        assertEquals(20, detected);
+    }
+
+    @Test
+    public void detectsFallsAfterLongStillnessAtTheLowRate() throws Exception {
+        // Over 30s of stillness drops the rate to 10Hz before the fall starts, so its
+        // first samples arrive 100ms apart and a 100ms impact can fall between them
+        int detected = 0;
+        for (int seed = 0; seed < 10; seed++) {
+            SyntheticTraceGenerator generator = new SyntheticTraceGenerator.Builder()
+                .then(SyntheticTraceGenerator.Activity.STILL, 40000)
+                .then(SyntheticTraceGenerator.Activity.FALL)
+                .noise(0.2f)
+                .seed(seed)
+                .build();
+            Run run = run(generator, 40000 + 9000, true, true);
+            assertTrue("seed " + seed, run.rateSwitches >= 2);
+            detected += run.detections > 0 ? 1 : 0;
+        }
+        assertEquals(10, detected);
+    }
+
+    @Test
+    public void ignoresDailyActivities() throws Exception {
+        SyntheticTraceGenerator.Activity[] activities = {
+            SyntheticTraceGenerator.Activity.STILL,
+            SyntheticTraceGenerator.Activity.WALKING,
+            SyntheticTraceGenerator.Activity.STAIRS,
+            SyntheticTraceGenerator.Activity.SITTING_DOWN_HARD
+        };
+        for (SyntheticTraceGenerator.Activity activity : activities) {
+            for (int seed = 0; seed < 10; seed++) {
+                Run run = run(scripted(activity, seed), 2000 + activity.defaultDurationMs + 2000, true);
+                assertEquals(activity + " seed " + seed, 0, run.detections);
+            }
+        }
+    }
+
+    @Test
+    public void falsePositiveRateOverAnHourOfDailyActivities() throws Exception {
+        SyntheticTraceGenerator generator = new SyntheticTraceGenerator.Builder()
+            .randomActivities(0.0)
+            .noise(0.2f)
+            .seed(11)
+            .build();
+        Run run = run(generator, 60 * 60 * 1000, true);
+
+        // Hard phone drops ring on the floor and are told apart by their spectrum
+        assertTrue("false positives " + run.detections, run.detections <= 5);
+    }
+
+    @Test
+    public void analysesEveryWindowWithoutTheCascade() throws Exception {
+        SyntheticTraceGenerator generator = new SyntheticTraceGenerator.Builder()
+            .randomActivities(0.05)
+            .noise(0.2f)
+            .seed(5)
+            .build();
+
+        // Every window goes through the detector: 25 new samples (0.5s) per window at a fixed 50Hz
+        Run run = run(generator, 20000 * 500L + 1000, false, false);
+        assertTrue("windows " + run.windows, run.windows >= 20000);
+        assertTrue("falls generated " + generator.getFallCount(), generator.getFallCount() > 0);
+        assertTrue("detections " + run.detections, run.detections > 0);
+    }
+
+    private static SyntheticTraceGenerator scripted(SyntheticTraceGenerator.Activity activity, long seed) {
+        return new SyntheticTraceGenerator.Builder()
+            .then(SyntheticTraceGenerator.Activity.STILL, 2000)
+            .then(activity)
+            .noise(0.2f)
+            .seed(seed)
+            .build();
+    }
+
+    private static class Run {
+        long windows;
+        int detections;
+        long rateSwitches;
+    }
+
+    private static Run run(SyntheticTraceGenerator generator, long durationMs, boolean cascade) throws Exception {
+        return run(generator, durationMs, cascade, SharedPreferencesManager.DEFAULT_ADAPTIVE_SAMPLING_ENABLED);
+    }
+
+    /**
+     * Play {@code durationMs} of the generator as fast as possible, analysing windows
+     * on the delivery thread. Detections closer together than FALL_DEBOUNCE_NS count once.
+     */
+    private static Run run(SyntheticTraceGenerator generator, long durationMs, boolean cascade,
+                           boolean adaptiveSampling) throws Exception {
+        SyntheticSensorSource source = new SyntheticSensorSource(generator, durationMs * 1000000L,
+            PlaybackSensorSource.Speed.AS_FAST_AS_POSSIBLE);
+        SensorDataCollector collector = new SensorDataCollector(source);
+        final TinyMLProcessor processor = new TinyMLProcessor(SharedPreferencesManager.DEFAULT_SENSITIVITY_LEVEL);
+        final Run run = new Run();
+        final long[] lastDetection = {-FALL_DEBOUNCE_NS};
+
+        collector.setDataListener(new SensorDataCollector.SensorDataListener() {
+            @Override
+            public void onDataProcessed(SensorDataCollector.SensorDataWindow dataWindow) {
+                run.windows++;
+                TinyMLProcessor.FallDetectionResult result = processor.processSensorData(dataWindow);
+                long time = dataWindow.t(dataWindow.size() - 1);
+                if (result.isFall && time - lastDetection[0] >= FALL_DEBOUNCE_NS) {
+                    run.detections++;
+                    lastDetection[0] = time;
+                }
+            }
+
+            @Override
+            public void onFallDetected(float confidence) {
+            }
+        });
+        collector.setAnalysisExecutor(Runnable::run);
+        collector.setCascadeEnabled(cascade);
+        collector.setAdaptiveSamplingEnabled(adaptiveSampling);
+        collector.setTriggerThresholds(processor.getTriggerImpactThreshold(), processor.getTriggerFreeFallThreshold());
+
+        assertTrue(collector.startCollection());
+        assertTrue(source.awaitFinished(10 * 60 * 1000));
+        run.rateSwitches = collector.getSamplingRateSwitchCount();
+        collector.stopCollection();
+        return run;
+    }
+}
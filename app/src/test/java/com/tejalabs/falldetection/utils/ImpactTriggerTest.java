@@ -0,0 +1,113 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the first cascade stage: trigger samples, the thresholds derived from the
+ * sensitivity setting, and windows skipped or analysed as those thresholds change
+ */
+public class ImpactTriggerTest {
+
+    private static final long PERIOD_NS = 20000000L; // 50Hz
+
+    @Test
+    public void countsRunsOfTriggerSamplesOnce() {
+        ImpactTrigger trigger = new ImpactTrigger();
+        assertFalse(trigger.onSample(0, 9.81f));
+        assertFalse(trigger.hasTriggeredSince(0));
+
+        // A three-sample impact, then a free fall
+        assertTrue(trigger.onSample(1, 20.0f));
+        assertTrue(trigger.onSample(2, 30.0f));
+        assertTrue(trigger.onSample(3, 15.0f));
+        assertFalse(trigger.onSample(4, 9.81f));
+        assertTrue(trigger.onSample(5, 2.0f));
+
+        assertEquals(2, trigger.getTriggerCount());
+        assertTrue(trigger.hasTriggeredSince(5));
+        assertFalse(trigger.hasTriggeredSince(6));
+
+        trigger.reset();
+        assertEquals(0, trigger.getTriggerCount());
+        assertFalse(trigger.hasTriggeredSince(0));
+    }
+
+    @Test
+    public void thresholdsFollowSensitivity() {
+        float previousImpact = Float.MAX_VALUE;
+        for (int level = 1; level <= 5; level++) {
+            TinyMLProcessor processor = new TinyMLProcessor(level);
+            float impact = processor.getTriggerImpactThreshold();
+            // More sensitive settings trigger on weaker impacts
+            assertTrue("level " + level, impact < previousImpact);
+            previousImpact = impact;
+            // Never gates out a sample the free-fall rule would catch
+            assertTrue(processor.getTriggerFreeFallThreshold() >= ImpactTrigger.DEFAULT_FREE_FALL_THRESHOLD);
+        }
+    }
+
+    @Test
+    public void runningCascadeUsesUpdatedThresholds() {
+        List<Runnable> deferredAnalysis = new ArrayList<>();
+        SensorDataCollector collector = new SensorDataCollector(new ManualSensorSource());
+        collector.setAnalysisExecutor(deferredAnalysis::add);
+        collector.setDataListener(new SensorDataCollector.SensorDataListener() {
+            @Override
+            public void onDataProcessed(SensorDataCollector.SensorDataWindow dataWindow) {
+            }
+
+            @Override
+            public void onFallDetected(float confidence) {
+            }
+        });
+        TinyMLProcessor low = new TinyMLProcessor(2);
+        collector.setTriggerThresholds(low.getTriggerImpactThreshold(), low.getTriggerFreeFallThreshold());
+        assertTrue(collector.startCollection());
+
+        // A 30 m/s² bump is below the low-sensitivity trigger: every window is skipped
+        long sample = feedBump(collector, 0);
+        runAll(deferredAnalysis);
+        assertEquals(0, collector.getWindowsAnalyzed());
+        assertTrue(collector.getWindowsSkipped() > 0);
+
+        // The sensitivity preference changes while monitoring and the service re-applies it
+        TinyMLProcessor high = new TinyMLProcessor(4);
+        collector.setTriggerThresholds(high.getTriggerImpactThreshold(), high.getTriggerFreeFallThreshold());
+        feedBump(collector, sample);
+        runAll(deferredAnalysis);
+        collector.stopCollection();
+
+        // Windows holding the bump now reach full analysis, still windows do not
+        assertTrue(collector.getWindowsAnalyzed() > 0);
+        assertTrue(collector.getWindowsAnalyzed() <= 2);
+        assertEquals(1, collector.getTriggerCount());
+    }
+
+    /**
+     * Two seconds upright with a three-sample bump in the middle
+     *
+     * @return the next sample index
+     */
+    private static long feedBump(SensorDataCollector collector, long first) {
+        for (long i = first; i < first + 100; i++) {
+            float z = i - first >= 50 && i - first < 53 ? 30.0f : 9.81f;
+            collector.onSensorSample(Sensor.TYPE_ACCELEROMETER, i * PERIOD_NS, 0.0f, 0.0f, z);
+        }
+        collector.onBatchComplete();
+        return first + 100;
+    }
+
+    private static void runAll(List<Runnable> tasks) {
+        for (Runnable task : tasks) {
+            task.run();
+        }
+        tasks.clear();
+    }
+}
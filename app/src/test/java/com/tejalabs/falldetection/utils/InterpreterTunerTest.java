@@ -0,0 +1,116 @@
+package com.tejalabs.falldetection.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that calibration prefers steady latency, skips unsupported delegates and is
+ * repeated only for a new model or a new build
+ */
+public class InterpreterTunerTest {
+
+    private static final String MODEL_A = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+    private static final String MODEL_B = "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb";
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("tuning").toFile();
+        directory.deleteOnExit();
+    }
+
+    @Test
+    public void picksSteadyConfigurationAndSkipsFailures() {
+        FakeTuner tuner = new FakeTuner(directory, "build-1");
+        InterpreterTuner.Config config = tune(tuner, MODEL_A);
+
+        // CPU 4 threads is fastest on average but jittery; 2 threads with XNNPACK is steadier
+        assertEquals(new InterpreterTuner.Config(2, true, false), config);
+        assertEquals(InterpreterTuner.CANDIDATES.length, tuner.measured.size());
+    }
+
+    @Test
+    public void reusesResultsUntilModelOrBuildChanges() {
+        tune(new FakeTuner(directory, "build-1"), MODEL_A);
+
+        FakeTuner reopened = new FakeTuner(directory, "build-1");
+        assertNotNull(reopened.lookup(MODEL_A));
+        tune(reopened, MODEL_A);
+        assertTrue(reopened.measured.isEmpty());
+
+        // A new model is calibrated, the first one is kept
+        assertNull(reopened.lookup(MODEL_B));
+        tune(reopened, MODEL_B);
+        assertFalse(reopened.measured.isEmpty());
+        assertNotNull(reopened.lookup(MODEL_A));
+
+        // After a system update every model is calibrated again
+        FakeTuner updated = new FakeTuner(directory, "build-2");
+        assertNull(updated.lookup(MODEL_A));
+        tune(updated, MODEL_A);
+        assertEquals(InterpreterTuner.CANDIDATES.length, updated.measured.size());
+    }
+
+    @Test
+    public void worksWithoutBuildFingerprint() {
+        // Build.FINGERPRINT is null outside a device
+        tune(new FakeTuner(directory, null), MODEL_A);
+        assertNotNull(new FakeTuner(directory, null).lookup(MODEL_A));
+        assertNull(new FakeTuner(directory, "build-1").lookup(MODEL_A));
+
+        tune(new FakeTuner(directory, "build-1"), MODEL_B);
+        assertNull(new FakeTuner(directory, null).lookup(MODEL_B));
+    }
+
+    @Test
+    public void summarizesLatencyAndVariance() {
+        long[] times = new long[100];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = i < 90 ? 1000 : 11000;
+        }
+        InterpreterTuner.Benchmark benchmark = InterpreterTuner.summarize(InterpreterTuner.Config.DEFAULT, times);
+        assertEquals(2000, benchmark.meanNs);
+        assertEquals(3000, benchmark.stdDevNs);
+        assertEquals(11000, benchmark.p90Ns);
+    }
+
+    private static InterpreterTuner.Config tune(InterpreterTuner tuner, String sha256) {
+        return tuner.getConfig(sha256, ByteBuffer.allocate(16), new float[][]{{0.0f, 0.0f, 1.0f}});
+    }
+
+    /**
+     * Reports made-up latencies instead of running an interpreter
+     */
+    private static class FakeTuner extends InterpreterTuner {
+        final List<Config> measured = new ArrayList<>();
+
+        FakeTuner(File directory, String fingerprint) {
+            super(directory, fingerprint);
+        }
+
+        @Override
+        Benchmark measure(Config config, ByteBuffer model, float[][] referenceSamples) {
+            measured.add(config);
+            if (config.nnapi) {
+                throw new IllegalArgumentException("NNAPI not supported");
+            }
+            if (config.threads == 4) {
+                return new Benchmark(config, 300000, 250000, 700000);
+            }
+            if (config.threads == 2 && config.xnnpack) {
+                return new Benchmark(config, 400000, 20000, 430000);
+            }
+            return new Benchmark(config, 600000, 20000, 630000);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+/**
+ * Source that delivers nothing by itself, tests push samples into the collector directly
+ */
+class ManualSensorSource implements SensorSource {
+    @Override
+    public boolean hasSensor(int sensorType) {
+        return sensorType == Sensor.TYPE_ACCELEROMETER;
+    }
+
+    @Override
+    public boolean start(Listener listener, int samplingPeriodUs, int maxReportLatencyUs, boolean lowPower) {
+        return true;
+    }
+
+    @Override
+    public void setOptionalSensors(int[] sensorTypes) {
+    }
+
+    @Override
+    public void setSamplingPeriod(int samplingPeriodUs) {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public long getClockNanos() {
+        return 0;
+    }
+
+    @Override
+    public int getReportLatencyUs() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowPowerActive() {
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return "manual";
+    }
+}
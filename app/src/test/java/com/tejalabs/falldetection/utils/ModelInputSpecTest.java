@@ -0,0 +1,249 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks assembling multi-channel model inputs from a window and registering only
+ * the sensors the model reads
+ */
+public class ModelInputSpecTest {
+
+    @Test
+    public void fillsChannelsInterleavedPerSample() {
+        SensorDataCollector.SensorDataWindow window = window(4);
+        ModelInputSpec spec = new ModelInputSpec.Builder(6)
+            .add(ModelInputSpec.Channel.LINEAR_ACCELERATION, 10.0f)
+            .add(ModelInputSpec.Channel.GYROSCOPE, 2.0f)
+            .add(ModelInputSpec.Channel.TILT, 1.0f)
+            .build();
+        assertEquals(9, spec.getValuesPerSample());
+        assertEquals(54, spec.getInputSize());
+
+        float[] input = new float[1 + spec.getInputSize()];
+        input[input.length - 1] = 5.0f;
+        spec.fill(window, input, 1);
+
+        for (int s = 0; s < 4; s++) {
+            int base = 1 + s * 9;
+            // Accelerometer (s, 0, 9.81 + s) minus gravity along up (0, 0, 1)
+            assertEquals(s / 10.0f, input[base], 0.0001f);
+            assertEquals(s / 10.0f, input[base + 2], 0.0001f);
+            // Gyroscope (0.5 s, ...) scaled by 2 rad/s and clamped
+            assertEquals(Math.min(1.0f, 0.25f * s), input[base + 3], 0.0001f);
+            assertEquals(1.0f, input[base + 8], 0.0f);
+        }
+        // Short window: zero padding up to the input size
+        assertEquals(0.0f, input[1 + 4 * 9], 0.0f);
+        assertEquals(0.0f, input[input.length - 1], 0.0f);
+    }
+
+    @Test
+    public void readsSecondaryStreamsBySequence() {
+        // Accelerometer samples 10..19; the aligned gyroscope only holds 12..16
+        SensorRingBuffer accelerometer = new SensorRingBuffer(32);
+        SensorRingBuffer gyroscope = new SensorRingBuffer(32);
+        accelerometer.skipTo(10);
+        gyroscope.skipTo(12);
+        for (int seq = 10; seq < 20; seq++) {
+            accelerometer.append(seq, seq, 0.0f, 0.0f);
+            if (seq >= 12 && seq < 17) {
+                gyroscope.append(seq, 0.1f * seq, 0.0f, 0.0f);
+            }
+        }
+        SensorDataCollector.SensorDataWindow window = new SensorDataCollector.SensorDataWindow(
+            accelerometer.newSlice(), gyroscope.newSlice(), new SensorRingBuffer(1).newSlice(),
+            new SensorRingBuffer(1).newSlice(), new float[SensorDataCollector.SensorDataWindow.FEATURE_COUNT]);
+        window.accelerometer.setEndingAt(20, 10);
+        window.gyroscope.setEndingAt(20, 10);
+
+        ModelInputSpec spec = new ModelInputSpec.Builder(10)
+            .add(ModelInputSpec.Channel.ACCELEROMETER, 20.0f)
+            .add(ModelInputSpec.Channel.GYROSCOPE, 2.0f)
+            .add(ModelInputSpec.Channel.MAGNETIC_FIELD, 60.0f)
+            .build();
+        float[] input = new float[spec.getInputSize()];
+        spec.fill(window, input, 0);
+        float[] copied = new float[spec.getInputSize()];
+        spec.fill(window.snapshot(), copied, 0);
+
+        for (int s = 0; s < 10; s++) {
+            int seq = 10 + s;
+            int base = s * 9;
+            assertEquals(seq / 20.0f, input[base], 0.0001f);
+            // Zero where the gyroscope has no sample, its own sample elsewhere
+            float gyro = seq >= 12 && seq < 17 ? 0.1f * seq / 2.0f : 0.0f;
+            assertEquals("sample " + seq, gyro, input[base + 3], 0.0001f);
+            // No magnetometer samples at all
+            assertEquals(0.0f, input[base + 6], 0.0f);
+        }
+        // Copies keep the sequence numbers, so they fill the same input
+        assertArrayEquals(input, copied, 0.0f);
+    }
+
+    @Test
+    public void defaultSpecReadsScaledAccelerometer() {
+        SensorDataCollector.SensorDataWindow window = window(60);
+        float[] input = new float[ModelInputSpec.DEFAULT.getInputSize()];
+        ModelInputSpec.DEFAULT.fill(window, input, 0);
+
+        // The last 50 of 60 samples, ±20 m/s² scaled to ±1
+        assertEquals(10 / 20.0f, input[0], 0.0001f);
+        assertEquals(Math.min(1.0f, (9.81f + 59) / 20.0f), input[149], 0.0001f);
+        assertArrayEquals(new int[]{Sensor.TYPE_ACCELEROMETER}, ModelInputSpec.DEFAULT.getSensorTypes());
+    }
+
+    @Test
+    public void registryKeepsInputSpec() throws IOException {
+        File directory = Files.createTempDirectory("models").toFile();
+        directory.deleteOnExit();
+        ModelInputSpec spec = new ModelInputSpec.Builder(25)
+            .add(ModelInputSpec.Channel.ACCELEROMETER, 20.0f)
+            .add(ModelInputSpec.Channel.MAGNETIC_FIELD, 60.0f)
+            .build();
+        new ModelRegistry(directory).install(new ByteArrayInputStream(new byte[64]), 1, null, "test", spec);
+        new ModelRegistry(directory).install(new ByteArrayInputStream(new byte[64]), 2, null, "test");
+
+        ModelRegistry reopened = new ModelRegistry(directory);
+        ModelInputSpec read = reopened.getVersion(1).getInputSpec();
+        assertEquals(25, read.getWindowSamples());
+        assertEquals(ModelInputSpec.Channel.MAGNETIC_FIELD, read.getChannels().get(1).getChannel());
+        assertEquals(60.0f, read.getChannels().get(1).getRange(), 0.0f);
+        assertEquals(ModelInputSpec.DEFAULT.getInputSize(), reopened.getVersion(2).getInputSpec().getInputSize());
+    }
+
+    @Test
+    public void specsCannotBeChanged() {
+        ModelInputSpec.Builder builder = new ModelInputSpec.Builder(50).add(ModelInputSpec.Channel.ACCELEROMETER, 20.0f);
+        ModelInputSpec spec = builder.build();
+        builder.add(ModelInputSpec.Channel.GYROSCOPE, 2.0f);
+        assertEquals(1, spec.getChannels().size());
+        try {
+            spec.getChannels().clear();
+            fail("channels can be changed");
+        } catch (UnsupportedOperationException expected) {
+        }
+        assertEquals(150, ModelInputSpec.DEFAULT.getInputSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInputsLongerThanThePrimaryWindow() {
+        new ModelInputSpec.Builder(WindowSpec.IMPACT.getSize() + 1)
+            .add(ModelInputSpec.Channel.ACCELEROMETER, 20.0f)
+            .build();
+    }
+
+    @Test
+    public void registryDropsInvalidSpecsReadBack() throws IOException {
+        File directory = Files.createTempDirectory("models").toFile();
+        directory.deleteOnExit();
+        ModelRegistry registry = new ModelRegistry(directory);
+        registry.install(new ByteArrayInputStream(new byte[64]), 1, null, "test", ModelInputSpec.DEFAULT);
+        registry.install(new ByteArrayInputStream(new byte[64]), 2, null, "test", ModelInputSpec.DEFAULT);
+        registry.activate(1);
+        registry.activate(2);
+
+        // The index is edited to a negative range, which the builder would have refused
+        File index = new File(directory, "models.json");
+        String json = new String(Files.readAllBytes(index.toPath()), "UTF-8");
+        int second = json.indexOf("\"version\":2");
+        json = json.substring(0, second) + json.substring(second).replaceFirst("20\\.0", "-20.0");
+        Files.write(index.toPath(), json.getBytes("UTF-8"));
+
+        ModelRegistry reopened = new ModelRegistry(directory);
+        assertNull(reopened.getVersion(2));
+        assertEquals(1, reopened.getActiveVersion());
+        assertEquals(20.0f, reopened.getVersion(1).getInputSpec().getChannels().get(0).getRange(), 0.0f);
+    }
+
+    @Test
+    public void orientationChannelsNeedTheGyroscope() {
+        ModelInputSpec tilt = new ModelInputSpec.Builder(50).add(ModelInputSpec.Channel.TILT, 1.0f).build();
+        assertArrayEquals(new int[]{Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_GYROSCOPE}, tilt.getSensorTypes());
+        ModelInputSpec linear = new ModelInputSpec.Builder(50)
+            .add(ModelInputSpec.Channel.MAGNETIC_FIELD, 60.0f)
+            .add(ModelInputSpec.Channel.LINEAR_ACCELERATION, 20.0f)
+            .build();
+        assertArrayEquals(new int[]{Sensor.TYPE_MAGNETIC_FIELD, Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_GYROSCOPE},
+            linear.getSensorTypes());
+    }
+
+    @Test
+    public void registersOnlySensorsInUse() {
+        RecordingSource source = new RecordingSource();
+        SensorDataCollector collector = new SensorDataCollector(source);
+        // The rule-based detector's tilt features need the gyroscope, nothing reads the magnetometer
+        collector.setRequiredSensors(new TinyMLProcessor(SharedPreferencesManager.DEFAULT_SENSITIVITY_LEVEL)
+            .getSensorTypes());
+        assertTrue(collector.startCollection());
+        assertArrayEquals(new int[]{Sensor.TYPE_GYROSCOPE}, source.optionalSensors);
+        assertTrue(collector.getHealthMonitor().getChannel(Sensor.TYPE_GYROSCOPE).isExpected());
+        assertFalse(collector.getHealthMonitor().getChannel(Sensor.TYPE_MAGNETIC_FIELD).isExpected());
+
+        // A model reading raw accelerometer samples needs no optional sensor
+        collector.setRequiredSensors(ModelInputSpec.DEFAULT.getSensorTypes());
+        assertArrayEquals(new int[0], source.optionalSensors);
+        assertFalse(collector.getHealthMonitor().getChannel(Sensor.TYPE_GYROSCOPE).isExpected());
+
+        // A model reading the magnetometer registers it while collecting
+        collector.setRequiredSensors(new ModelInputSpec.Builder(50)
+            .add(ModelInputSpec.Channel.MAGNETIC_FIELD, 60.0f).build().getSensorTypes());
+        assertArrayEquals(new int[]{Sensor.TYPE_MAGNETIC_FIELD}, source.optionalSensors);
+        assertTrue(collector.getHealthMonitor().getChannel(Sensor.TYPE_MAGNETIC_FIELD).isExpected());
+
+        // Tilt comes from the orientation estimate: the gyroscope is registered again
+        collector.setRequiredSensors(new ModelInputSpec.Builder(50)
+            .add(ModelInputSpec.Channel.TILT, 1.0f).build().getSensorTypes());
+        assertArrayEquals(new int[]{Sensor.TYPE_GYROSCOPE}, source.optionalSensors);
+        assertTrue(collector.getHealthMonitor().getChannel(Sensor.TYPE_GYROSCOPE).isExpected());
+        assertFalse(collector.getHealthMonitor().getChannel(Sensor.TYPE_MAGNETIC_FIELD).isExpected());
+        collector.stopCollection();
+    }
+
+    /**
+     * Window of {@code size} samples: accelerometer (i, 0, 9.81 + i), gyroscope
+     * (0.5 i, 0, 0), device upright
+     */
+    private static SensorDataCollector.SensorDataWindow window(int size) {
+        SensorRingBuffer accelerometer = new SensorRingBuffer(64);
+        SensorRingBuffer gyroscope = new SensorRingBuffer(64);
+        SensorRingBuffer magnetometer = new SensorRingBuffer(64);
+        SensorRingBuffer orientation = new SensorRingBuffer(64);
+        for (int i = 0; i < size; i++) {
+            accelerometer.append(i, i, 0.0f, 9.81f + i);
+            gyroscope.append(i, 0.5f * i, 0.0f, 0.0f);
+            magnetometer.append(i, 20.0f, 0.0f, -40.0f);
+            orientation.append(i, 0.0f, 0.0f, 1.0f);
+        }
+        SensorDataCollector.SensorDataWindow window = new SensorDataCollector.SensorDataWindow(
+            accelerometer.newSlice(), gyroscope.newSlice(), magnetometer.newSlice(), orientation.newSlice(),
+            new float[SensorDataCollector.SensorDataWindow.FEATURE_COUNT]);
+        window.accelerometer.setEndingAt(size, size);
+        window.gyroscope.setEndingAt(size, size);
+        window.magnetometer.setEndingAt(size, size);
+        window.orientation.setEndingAt(size, size);
+        return window;
+    }
+
+    private static class RecordingSource extends ManualSensorSource {
+        int[] optionalSensors;
+
+        @Override
+        public boolean hasSensor(int sensorType) {
+            return true;
+        }
+
+        @Override
+        public void setOptionalSensors(int[] sensorTypes) {
+            optionalSensors = sensorTypes.clone();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.tejalabs.falldetection.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks installing, activating and rolling back model versions. Swapping the
+ * processor over to them needs the TFLite runtime, see the instrumented ModelSwapTest.
+ */
+public class ModelRegistryTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("models").toFile();
+        directory.deleteOnExit();
+    }
+
+    @Test
+    public void installsVersionsWithChecksums() throws IOException {
+        ModelRegistry registry = new ModelRegistry(directory);
+        ModelRegistry.ModelVersion installed = install(registry, 1, model(1), null);
+        assertEquals(64, installed.getSha256().length());
+        assertEquals(model(1).length, installed.getSizeBytes());
+
+        // The checksum must match, and a rejected file leaves nothing behind
+        try {
+            install(registry, 2, model(2), installed.getSha256());
+            fail("Checksum mismatch accepted");
+        } catch (IOException expected) {
+            // Expected
+        }
+        assertNull(registry.getVersion(2));
+        assertEquals(0, directory.listFiles((dir, name) -> name.contains("v2")).length);
+
+        // Installing does not activate
+        assertNull(registry.getActive());
+        assertEquals(ModelRegistry.BUNDLED_VERSION, registry.getActiveVersion());
+        assertEquals(model(1).length, registry.load(installed).capacity());
+    }
+
+    @Test
+    public void activatesRollsBackAndPersists() throws IOException {
+        ModelRegistry registry = new ModelRegistry(directory);
+        for (int version = 1; version <= 5; version++) {
+            install(registry, version, model(version), null);
+            registry.activate(version);
+        }
+        assertEquals(5, registry.getActiveVersion());
+        assertEquals(4, registry.getPreviousVersion());
+
+        // Old versions are pruned, the active and previous one are kept
+        assertEquals(3, registry.getVersions().size());
+        assertNull(registry.getVersion(1));
+
+        // A failed active version falls back to the previous one
+        registry.remove(5);
+        assertEquals(4, registry.getActiveVersion());
+
+        ModelRegistry reopened = new ModelRegistry(directory);
+        assertEquals(4, reopened.getActive().getVersion());
+        assertEquals(registry.getVersions().size(), reopened.getVersions().size());
+    }
+
+    private static ModelRegistry.ModelVersion install(ModelRegistry registry, int version, byte[] contents,
+                                                      String sha256) throws IOException {
+        return registry.install(new ByteArrayInputStream(contents), version, sha256, "test model");
+    }
+
+    private static byte[] model(int version) {
+        byte[] contents = new byte[1024 + version];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = (byte) (i * 31 + version);
+        }
+        return contents;
+    }
+}
@@ -0,0 +1,99 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that several window resolutions are cut from the same sample storage
+ */
+public class MultiResolutionWindowTest {
+
+    private static final long PERIOD_NS = 20000000L; // 50Hz
+
+    private int impactWindows = 0;
+    private int postureWindows = 0;
+
+    @Test
+    public void deliversEachResolutionAtItsOwnHop() {
+        SensorDataCollector collector = new SensorDataCollector(new ManualSensorSource());
+        collector.setAnalysisExecutor(Runnable::run);
+        collector.setCascadeEnabled(false);
+        collector.setDataListener(new SensorDataCollector.SensorDataListener() {
+            @Override
+            public void onDataProcessed(SensorDataCollector.SensorDataWindow dataWindow) {
+                impactWindows++;
+                assertEquals(WindowSpec.IMPACT, dataWindow.getSpec());
+                assertEquals(50, dataWindow.size());
+            }
+
+            @Override
+            public void onFallDetected(float confidence) {
+            }
+        });
+        collector.addWindowListener(WindowSpec.POSTURE, window -> {
+            postureWindows++;
+            assertEquals(WindowSpec.POSTURE, window.getSpec());
+            assertEquals(500, window.size());
+
+            // Features describe the whole 10 seconds, not just the last impact window
+            float sum = 0.0f;
+            for (int i = 0; i < window.size(); i++) {
+                sum += window.y(i);
+            }
+            assertEquals(sum / window.size(),
+                window.features[SensorDataCollector.SensorDataWindow.FEATURE_Y_MEAN], 0.001f);
+            assertEquals(10.0f, (window.t(window.size() - 1) - window.t(0)) / 1e9f, 0.05f);
+        });
+        assertTrue(collector.startCollection());
+
+        // 20 seconds, gravity slowly moving from y to x
+        for (int i = 0; i < 1000; i++) {
+            float angle = i / 1000.0f * 1.5f;
+            collector.onSensorSample(Sensor.TYPE_ACCELEROMETER, i * PERIOD_NS,
+                9.81f * (float) Math.sin(angle), 9.81f * (float) Math.cos(angle), 0.0f);
+            collector.onBatchComplete();
+        }
+        collector.stopCollection();
+
+        // First impact window after 50 samples then every 25, posture after 500 then every 50
+        assertEquals(39, impactWindows);
+        assertEquals(11, postureWindows);
+        assertEquals(0, collector.getCoalescedWindowCount());
+    }
+
+    @Test
+    public void usesConfiguredPrimaryGeometry() {
+        SensorDataCollector collector = new SensorDataCollector(new ManualSensorSource());
+        collector.setAnalysisExecutor(Runnable::run);
+        collector.setCascadeEnabled(false);
+        collector.setWindowSpec(WindowSpec.ofDuration("two seconds", 2000, 1000));
+        collector.setDataListener(new SensorDataCollector.SensorDataListener() {
+            @Override
+            public void onDataProcessed(SensorDataCollector.SensorDataWindow dataWindow) {
+                impactWindows++;
+                assertEquals(100, dataWindow.size());
+            }
+
+            @Override
+            public void onFallDetected(float confidence) {
+            }
+        });
+        assertTrue(collector.startCollection());
+
+        for (int i = 0; i < 500; i++) {
+            collector.onSensorSample(Sensor.TYPE_ACCELEROMETER, i * PERIOD_NS, 0.0f, 0.0f, 9.81f);
+            collector.onBatchComplete();
+        }
+        collector.stopCollection();
+
+        assertEquals(9, impactWindows);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWindowsLargerThanTheBuffers() {
+        new SensorDataCollector(new ManualSensorSource()).setWindowSpec(new WindowSpec("minute", 3000, 50));
+    }
+}
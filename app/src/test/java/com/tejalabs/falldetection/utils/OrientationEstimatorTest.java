@@ -0,0 +1,66 @@
+package com.tejalabs.falldetection.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the orientation estimate and the earth-frame acceleration derived from it
+ */
+public class OrientationEstimatorTest {
+
+    private static final long PERIOD_NS = 20000000L; // 50Hz
+    private static final float G = OrientationEstimator.GRAVITY;
+
+    @Test
+    public void followsTheGyroscopeThroughARotation() {
+        OrientationEstimator estimator = new OrientationEstimator();
+        estimator.onAccelerometer(0, 0.0f, 0.0f, G);
+
+        // Turn 90 degrees about the device x axis in one second; gravity moves from z to y
+        float rate = (float) (Math.PI / 2);
+        float tilt = 0.0f;
+        for (int i = 1; i <= 50; i++) {
+            double angle = rate * i * PERIOD_NS / 1e9;
+            estimator.onGyroscope(rate, 0.0f, 0.0f);
+            estimator.onAccelerometer(i * PERIOD_NS, 0.0f, G * (float) Math.sin(angle), G * (float) Math.cos(angle));
+            tilt += estimator.getTiltStepDegrees();
+        }
+
+        assertEquals(90.0f, tilt, 3.0f);
+        assertEquals(1.0f, estimator.getUpY(), 0.01f);
+        assertEquals(0.0f, estimator.getVerticalAcceleration(), 0.2f);
+    }
+
+    @Test
+    public void ignoresAccelerationFarFromGravityForCorrection() {
+        OrientationEstimator estimator = new OrientationEstimator();
+        estimator.onAccelerometer(0, 0.0f, 0.0f, G);
+
+        // Half a second of free fall: the estimate holds and vertical reads -1g
+        for (int i = 1; i <= 25; i++) {
+            estimator.onAccelerometer(i * PERIOD_NS, 0.1f, 0.0f, 0.2f);
+            assertEquals(-G, estimator.getVerticalAcceleration(), 0.3f);
+        }
+        assertEquals(1.0f, estimator.getUpZ(), 0.001f);
+
+        // A sideways push while upright is horizontal, not vertical
+        estimator.onAccelerometer(26 * PERIOD_NS, 5.0f, 0.0f, G);
+        assertEquals(5.0f, estimator.getHorizontalAcceleration(), 0.1f);
+        assertEquals(0.0f, estimator.getVerticalAcceleration(), 0.1f);
+    }
+
+    @Test
+    public void settlesOnGravityWithoutAGyroscope() {
+        OrientationEstimator estimator = new OrientationEstimator();
+        estimator.onAccelerometer(0, 0.0f, 0.0f, G);
+
+        // Phone laid on its side, no rotation rate reported
+        for (int i = 1; i <= 250; i++) {
+            estimator.onAccelerometer(i * PERIOD_NS, G, 0.0f, 0.0f);
+        }
+        assertEquals(1.0f, estimator.getUpX(), 0.01f);
+        assertEquals(90.0f, OrientationEstimator.angleBetween(0.0f, 0.0f, 1.0f,
+            estimator.getUpX(), estimator.getUpY(), estimator.getUpZ()), 1.0f);
+    }
+}
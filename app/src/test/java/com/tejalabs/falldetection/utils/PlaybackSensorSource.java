@@ -0,0 +1,231 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+import android.util.Log;
+
+/**
+ * Base for sources that play back samples from memory or a generator
+ * Samples are delivered on a plain Java thread, either paced by their timestamps
+ * or as fast as the pipeline accepts them. Uses no Android framework classes apart
+ * from Log and the Sensor type constants, so it runs in JVM unit tests and on a build
+ * machine.
+ */
+public abstract class PlaybackSensorSource implements SensorSource {
+
+    private static final String TAG = "PlaybackSensorSource";
+
+    public enum Speed {
+        // Deliver each sample when its timestamp is due, like a real sensor
+        REAL_TIME,
+        // Deliver samples back to back, for throughput measurements
+        AS_FAST_AS_POSSIBLE
+    }
+
+    // Samples per batch when running as fast as possible, about half a second at 50Hz
+    public static final int DEFAULT_BATCH_SIZE = 25;
+
+    /**
+     * Holder filled in by {@link #nextSample}
+     */
+    protected static final class Sample {
+        public int sensorType;
+        public long timestampNs;
+        public float x;
+        public float y;
+        public float z;
+    }
+
+    private final Speed speed;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    // Optional sensors to deliver, null for all; samples of other sensors are skipped
+    private volatile int[] optionalSensors;
+
+    private Thread playbackThread;
+    private volatile boolean isRunning = false;
+    private volatile boolean isFinished = false;
+    private final Object finishedLock = new Object();
+
+    // Clock: trace time of the first sample and wall time it was mapped to
+    private volatile long traceStartNs = 0;
+    private volatile long wallStartNs = 0;
+    private volatile long lastTimestampNs = 0;
+    private volatile long deliveredSamples = 0;
+
+    protected PlaybackSensorSource(Speed speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Fill {@code out} with the next sample
+     *
+     * @return false once there are no more samples
+     */
+    protected abstract boolean nextSample(Sample out);
+
+    /**
+     * Called on the playback thread before the first sample
+     */
+    protected void onPlaybackStart(int samplingPeriodUs) {
+    }
+
+    /**
+     * Number of samples per delivery when running as fast as possible
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public void setOptionalSensors(int[] sensorTypes) {
+        optionalSensors = sensorTypes.clone();
+    }
+
+    @Override
+    public boolean start(final Listener listener, final int samplingPeriodUs, int maxReportLatencyUs,
+                         boolean lowPower) {
+        if (isRunning) {
+            return true;
+        }
+
+        isRunning = true;
+        isFinished = false;
+        deliveredSamples = 0;
+        playbackThread = new Thread(() -> play(listener, samplingPeriodUs), "FallDetection-" + getName());
+        playbackThread.start();
+        return true;
+    }
+
+    @Override
+    public void stop() {
+        isRunning = false;
+        Thread thread = playbackThread;
+        if (thread != null && thread != Thread.currentThread()) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        playbackThread = null;
+    }
+
+    private void play(Listener listener, int samplingPeriodUs) {
+        onPlaybackStart(samplingPeriodUs);
+
+        Sample sample = new Sample();
+        int inBatch = 0;
+        boolean first = true;
+
+        try {
+            while (isRunning && nextSample(sample)) {
+                if (!isDelivered(sample.sensorType)) {
+                    continue;
+                }
+                if (first) {
+                    traceStartNs = sample.timestampNs;
+                    wallStartNs = System.nanoTime();
+                    first = false;
+                }
+
+                if (speed == Speed.REAL_TIME) {
+                    long dueInNs = (sample.timestampNs - traceStartNs) - (System.nanoTime() - wallStartNs);
+                    if (dueInNs > 0) {
+                        // Everything due so far forms one delivery, like a sensor dispatch round
+                        if (inBatch > 0) {
+                            listener.onBatchComplete();
+                            inBatch = 0;
+                        }
+                        Thread.sleep(dueInNs / 1000000L, (int) (dueInNs % 1000000L));
+                    }
+                }
+
+                lastTimestampNs = sample.timestampNs;
+                listener.onSensorSample(sample.sensorType, sample.timestampNs, sample.x, sample.y, sample.z);
+                deliveredSamples++;
+
+                if (++inBatch >= batchSize && speed == Speed.AS_FAST_AS_POSSIBLE) {
+                    listener.onBatchComplete();
+                    inBatch = 0;
+                }
+            }
+            if (inBatch > 0) {
+                listener.onBatchComplete();
+            }
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Playback interrupted");
+        } finally {
+            synchronized (finishedLock) {
+                isFinished = true;
+                finishedLock.notifyAll();
+            }
+        }
+    }
+
+    private boolean isDelivered(int sensorType) {
+        int[] wanted = optionalSensors;
+        if (wanted == null || sensorType == Sensor.TYPE_ACCELEROMETER) {
+            return true;
+        }
+        for (int type : wanted) {
+            if (type == sensorType) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wait until every sample has been delivered or playback was stopped
+     *
+     * @return false if the timeout elapsed first
+     */
+    public boolean awaitFinished(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (finishedLock) {
+            while (!isFinished) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                finishedLock.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    public long getDeliveredSampleCount() {
+        return deliveredSamples;
+    }
+
+    public Speed getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Trace time corresponding to now. When running as fast as possible samples are
+     * never late, so this is the timestamp of the last delivered sample.
+     */
+    @Override
+    public long getClockNanos() {
+        if (speed == Speed.REAL_TIME) {
+            return traceStartNs + (System.nanoTime() - wallStartNs);
+        }
+        return lastTimestampNs;
+    }
+
+    @Override
+    public int getReportLatencyUs() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowPowerActive() {
+        return false;
+    }
+}
@@ -0,0 +1,156 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Replays a recorded sensor trace
+ *
+ * Trace format is CSV with one sample per line: {@code timestamp_ns,sensor,x,y,z}.
+ * The sensor column is {@code accelerometer}, {@code gyroscope}, {@code magnetometer}
+ * or a numeric sensor type. Empty lines, lines starting with '#' and a header line
+ * are ignored. Samples must be in timestamp order.
+ *
+ * The whole trace is parsed up front into primitive arrays, so parsing does not
+ * show up in throughput measurements. The recorded rate is kept, requests to
+ * change the sampling period are ignored.
+ */
+public class ReplaySensorSource extends PlaybackSensorSource {
+
+    private final String name;
+    private final int[] types;
+    private final long[] timestamps;
+    private final float[] values;
+    private final int sampleCount;
+    private int position = 0;
+
+    private ReplaySensorSource(String name, int[] types, long[] timestamps, float[] values,
+                               int sampleCount, Speed speed) {
+        super(speed);
+        this.name = name;
+        this.types = types;
+        this.timestamps = timestamps;
+        this.values = values;
+        this.sampleCount = sampleCount;
+    }
+
+    public static ReplaySensorSource fromFile(File file, Speed speed) throws IOException {
+        try (Reader reader = new FileReader(file)) {
+            return fromCsv(file.getName(), reader, speed);
+        }
+    }
+
+    public static ReplaySensorSource fromCsv(String name, Reader reader, Speed speed) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        int[] types = new int[1024];
+        long[] timestamps = new long[1024];
+        float[] values = new float[1024 * 3];
+        int count = 0;
+        int lineNumber = 0;
+
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] fields = line.split(",");
+            if (fields.length < 5) {
+                throw new IOException("Line " + lineNumber + ": expected 5 fields, got " + fields.length);
+            }
+
+            long timestamp;
+            try {
+                timestamp = Long.parseLong(fields[0].trim());
+            } catch (NumberFormatException e) {
+                if (count == 0) {
+                    continue; // Header line
+                }
+                throw new IOException("Line " + lineNumber + ": bad timestamp " + fields[0]);
+            }
+
+            if (count == types.length) {
+                types = Arrays.copyOf(types, count * 2);
+                timestamps = Arrays.copyOf(timestamps, count * 2);
+                values = Arrays.copyOf(values, count * 2 * 3);
+            }
+
+            try {
+                types[count] = parseSensorType(fields[1].trim());
+                timestamps[count] = timestamp;
+                values[count * 3] = Float.parseFloat(fields[2].trim());
+                values[count * 3 + 1] = Float.parseFloat(fields[3].trim());
+                values[count * 3 + 2] = Float.parseFloat(fields[4].trim());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+            }
+            count++;
+        }
+
+        return new ReplaySensorSource(name, types, timestamps, values, count, speed);
+    }
+
+    private static int parseSensorType(String field) {
+        switch (field) {
+            case "accelerometer":
+                return Sensor.TYPE_ACCELEROMETER;
+            case "gyroscope":
+                return Sensor.TYPE_GYROSCOPE;
+            case "magnetometer":
+                return Sensor.TYPE_MAGNETIC_FIELD;
+            default:
+                return Integer.parseInt(field);
+        }
+    }
+
+    @Override
+    protected void onPlaybackStart(int samplingPeriodUs) {
+        position = 0;
+    }
+
+    @Override
+    protected boolean nextSample(Sample out) {
+        if (position >= sampleCount) {
+            return false;
+        }
+        out.sensorType = types[position];
+        out.timestampNs = timestamps[position];
+        out.x = values[position * 3];
+        out.y = values[position * 3 + 1];
+        out.z = values[position * 3 + 2];
+        position++;
+        return true;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    @Override
+    public boolean hasSensor(int sensorType) {
+        for (int i = 0; i < sampleCount; i++) {
+            if (types[i] == sensorType) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void setSamplingPeriod(int samplingPeriodUs) {
+        // Recorded data keeps its rate
+    }
+
+    @Override
+    public String getName() {
+        return "replay-" + name;
+    }
+}
@@ -0,0 +1,135 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks dropping to the low sampling rate during stillness, and that windows and
+ * features sampled at that rate keep their meaning
+ */
+public class SamplingRateControllerTest {
+
+    private static final long FULL_PERIOD_NS = 20000000L; // 50Hz
+    private static final long LOW_PERIOD_NS = 100000000L; // 10Hz
+    private static final long SECOND_NS = 1000000000L;
+
+    @Test
+    public void dropsAfterThirtySecondsOfStillness() {
+        SamplingRateController controller = new SamplingRateController();
+        long t = 0;
+        for (; t < 29 * SECOND_NS; t += FULL_PERIOD_NS) {
+            assertEquals(SamplingRateController.Mode.FULL, controller.onSample(t, 9.81f));
+        }
+
+        // Movement restarts the stillness timer
+        for (int i = 0; i < 25; i++, t += FULL_PERIOD_NS) {
+            controller.onSample(t, i % 2 == 0 ? 14.0f : 6.0f);
+        }
+        long movedAt = t;
+        SamplingRateController.Mode mode = SamplingRateController.Mode.FULL;
+        for (; mode == SamplingRateController.Mode.FULL; t += FULL_PERIOD_NS) {
+            mode = controller.onSample(t, 9.81f);
+        }
+        assertTrue(t - movedAt >= 30 * SECOND_NS);
+        assertTrue(t - movedAt < 32 * SECOND_NS);
+        assertEquals(1, controller.getSwitchCount());
+    }
+
+    @Test
+    public void wakesOnTheFirstMovingSample() {
+        SamplingRateController controller = new SamplingRateController();
+        long t = 0;
+        while (controller.onSample(t, 9.81f) == SamplingRateController.Mode.FULL) {
+            t += FULL_PERIOD_NS;
+        }
+        long lowFrom = t;
+        t += LOW_PERIOD_NS;
+
+        // Small wobbles keep the low rate, one clear deviation restores full rate
+        for (int i = 0; i < 50; i++, t += LOW_PERIOD_NS) {
+            assertEquals(SamplingRateController.Mode.LOW, controller.onSample(t, 9.81f + (i % 2) * 1.0f));
+        }
+        assertEquals(SamplingRateController.Mode.FULL, controller.onSample(t, 2.0f));
+        assertEquals(2, controller.getSwitchCount());
+        assertEquals(t - lowFrom, controller.getLowModeDurationNs(t + SECOND_NS));
+    }
+
+    @Test
+    public void lowRateWindowSpansFiveSeconds() {
+        List<SensorDataCollector.SensorDataWindow> windows = new ArrayList<>();
+        SensorDataCollector collector = new SensorDataCollector(new ManualSensorSource());
+        collector.setAnalysisExecutor(Runnable::run);
+        collector.setCascadeEnabled(false);
+        collector.setAdaptiveSamplingEnabled(true);
+        collector.setDataListener(new SensorDataCollector.SensorDataListener() {
+            @Override
+            public void onDataProcessed(SensorDataCollector.SensorDataWindow dataWindow) {
+                windows.add(dataWindow.snapshot());
+            }
+
+            @Override
+            public void onFallDetected(float confidence) {
+            }
+        });
+        assertTrue(collector.startCollection());
+
+        // The manual source delivers whatever rate it is fed: 50Hz until the switch, then 10Hz
+        long t = 0;
+        while (collector.getSamplingMode() == SamplingRateController.Mode.FULL) {
+            collector.onSensorSample(Sensor.TYPE_ACCELEROMETER, t, 0.0f, 0.0f, 9.81f);
+            collector.onBatchComplete();
+            t += FULL_PERIOD_NS;
+        }
+        windows.clear();
+        for (int i = 0; i < 100; i++, t += LOW_PERIOD_NS) {
+            collector.onSensorSample(Sensor.TYPE_ACCELEROMETER, t, 0.0f, 0.0f, 9.81f);
+            collector.onBatchComplete();
+        }
+        collector.stopCollection();
+
+        // The last window holds only low-rate samples: 50 samples cover 5 seconds
+        SensorDataCollector.SensorDataWindow window = windows.get(windows.size() - 1);
+        assertEquals(WindowSpec.IMPACT.getSize(), window.size());
+        assertEquals(49 * LOW_PERIOD_NS, window.t(window.size() - 1) - window.t(0));
+        assertEquals(10.0f, window.getSampleRateHz(), 0.001f);
+    }
+
+    @Test
+    public void jerkIsRescaledToTheNominalRate() {
+        TinyMLProcessor processor = new TinyMLProcessor(SharedPreferencesManager.DEFAULT_SENSITIVITY_LEVEL);
+        // The same 10 m/s² step between neighbouring samples, 100ms and 20ms apart
+        SensorDataCollector.SensorDataWindow slow = window(LOW_PERIOD_NS, 10.0f);
+        SensorDataCollector.SensorDataWindow fast = window(FULL_PERIOD_NS, 10.0f);
+
+        TinyMLProcessor.MotionFeatures features = new TinyMLProcessor.MotionFeatures();
+        assertEquals(2.0f, processor.extractMotionFeatures(slow, features).maxJerk, 0.001f);
+        assertEquals(10.0f, processor.extractMotionFeatures(fast, features).maxJerk, 0.001f);
+    }
+
+    /**
+     * Still 50-sample window at {@code periodNs} whose features report a largest
+     * per-sample step of {@code maxStep}
+     */
+    private static SensorDataCollector.SensorDataWindow window(long periodNs, float maxStep) {
+        SensorRingBuffer accelerometer = new SensorRingBuffer(64);
+        SensorRingBuffer orientation = new SensorRingBuffer(64);
+        for (int i = 0; i < 50; i++) {
+            accelerometer.append(i * periodNs, 0.0f, 0.0f, 9.81f);
+            orientation.append(i * periodNs, 0.0f, 0.0f, 1.0f);
+        }
+        float[] features = new float[SensorDataCollector.SensorDataWindow.FEATURE_COUNT];
+        features[SensorDataCollector.SensorDataWindow.FEATURE_MAX_JERK] = maxStep;
+        SensorDataCollector.SensorDataWindow window = new SensorDataCollector.SensorDataWindow(
+            accelerometer.newSlice(), new SensorRingBuffer(1).newSlice(), new SensorRingBuffer(1).newSlice(),
+            orientation.newSlice(), features);
+        window.accelerometer.setEndingAt(50, 50);
+        window.orientation.setEndingAt(50, 50);
+        return window;
+    }
+}
@@ -0,0 +1,143 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks rate, gap and stall detection of the sensor health monitor
+ */
+public class SensorHealthMonitorTest {
+
+    private static final long PERIOD_NS = 20000000L; // 50Hz
+    private static final long SECOND_NS = 1000000000L;
+
+    @Test
+    public void steadyDeliveryIsHealthy() {
+        SensorHealthMonitor monitor = new SensorHealthMonitor();
+        monitor.start(0, PERIOD_NS, Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_GYROSCOPE);
+
+        long t = deliver(monitor, 0, 1000, PERIOD_NS, true);
+        assertEquals(SensorHealthMonitor.Status.OK, monitor.check(t, 0));
+        t = deliver(monitor, t, 500, PERIOD_NS, true);
+        assertEquals(SensorHealthMonitor.Status.OK, monitor.check(t, 0));
+
+        SensorHealthMonitor.Channel accelerometer = monitor.getChannel(Sensor.TYPE_ACCELEROMETER);
+        assertEquals(50.0f, accelerometer.getEffectiveRateHz(), 0.5f);
+        assertEquals(0, accelerometer.getGapCount());
+        assertEquals(1500, accelerometer.getSampleCount());
+        assertFalse(monitor.getChannel(Sensor.TYPE_MAGNETIC_FIELD).isExpected());
+    }
+
+    @Test
+    public void throttledDeliveryIsDegraded() {
+        SensorHealthMonitor monitor = new SensorHealthMonitor();
+        monitor.start(0, PERIOD_NS, Sensor.TYPE_ACCELEROMETER);
+
+        long t = deliver(monitor, 0, 500, PERIOD_NS, false);
+        monitor.check(t, 0);
+
+        // Throttled to 20Hz, every interval is a gap of 2.5 periods: jitter but no gaps
+        t = deliver(monitor, t, 200, 50000000L, false);
+        assertEquals(SensorHealthMonitor.Status.DEGRADED, monitor.check(t, 0));
+        SensorHealthMonitor.Channel accelerometer = monitor.getChannel(Sensor.TYPE_ACCELEROMETER);
+        assertEquals(20.0f, accelerometer.getEffectiveRateHz(), 0.5f);
+        assertEquals(0, accelerometer.getGapCount());
+        assertTrue(accelerometer.getJitter().getPercentile(90) >= 25000000L);
+
+        // A rate switch is not judged against the old period
+        monitor.setSamplingPeriod(100000000L);
+        t = deliver(monitor, t, 100, 100000000L, false);
+        assertEquals(SensorHealthMonitor.Status.OK, monitor.check(t, 0));
+        t = deliver(monitor, t, 100, 100000000L, false);
+        assertEquals(SensorHealthMonitor.Status.OK, monitor.check(t, 0));
+        assertEquals(10.0f, monitor.getExpectedRateHz(), 0.01f);
+    }
+
+    @Test
+    public void silentSensorIsStalledAndGapsAreCounted() {
+        SensorHealthMonitor monitor = new SensorHealthMonitor();
+        monitor.start(0, PERIOD_NS, Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_GYROSCOPE);
+
+        // Only the accelerometer delivers, with one half-second hole
+        long t = deliver(monitor, 0, 100, PERIOD_NS, false);
+        t = deliver(monitor, t + SECOND_NS / 2, 100, PERIOD_NS, false);
+        assertEquals(SensorHealthMonitor.Status.OK, monitor.check(t, 0));
+
+        t = deliver(monitor, t, 250, PERIOD_NS, false);
+        assertEquals(SensorHealthMonitor.Status.STALLED, monitor.check(t, 0));
+        assertEquals(SensorHealthMonitor.Status.STALLED,
+            monitor.getChannel(Sensor.TYPE_GYROSCOPE).getStatus());
+        assertEquals(SensorHealthMonitor.Status.OK,
+            monitor.getChannel(Sensor.TYPE_ACCELEROMETER).getStatus());
+
+        SensorHealthMonitor.Channel accelerometer = monitor.getChannel(Sensor.TYPE_ACCELEROMETER);
+        assertEquals(1, accelerometer.getGapCount());
+        assertEquals(SECOND_NS / 2 + PERIOD_NS, accelerometer.getMaxGapNs());
+
+        // The FIFO report latency is not a stall
+        monitor.start(t, PERIOD_NS, Sensor.TYPE_ACCELEROMETER);
+        t = deliver(monitor, t, 100, PERIOD_NS, false);
+        assertEquals(SensorHealthMonitor.Status.OK, monitor.check(t + 8 * SECOND_NS, 10 * SECOND_NS));
+        assertEquals(SensorHealthMonitor.Status.STALLED, monitor.check(t + 8 * SECOND_NS, 0));
+    }
+
+    @Test
+    public void collectorReregistersWhenDeliveryStaysUnhealthy() {
+        final long[] clock = { 0 };
+        final int[] registrations = { 0 };
+        SensorDataCollector collector = new SensorDataCollector(new ManualSensorSource() {
+            @Override
+            public long getClockNanos() {
+                return clock[0];
+            }
+
+            @Override
+            public void setSamplingPeriod(int samplingPeriodUs) {
+                registrations[0]++;
+            }
+        });
+        collector.setAnalysisExecutor(Runnable::run);
+        collector.setCascadeEnabled(false);
+        assertTrue(collector.startCollection());
+
+        for (int i = 0; i < 500; i++) {
+            clock[0] = i * PERIOD_NS;
+            collector.onSensorSample(Sensor.TYPE_ACCELEROMETER, clock[0], 0.0f, 0.0f, 9.81f);
+            collector.onBatchComplete();
+        }
+        assertEquals(SensorHealthMonitor.Status.OK, collector.checkHealth());
+
+        // Delivery stops: the first unhealthy check only reports, the second re-registers
+        clock[0] += 10 * SECOND_NS;
+        assertEquals(SensorHealthMonitor.Status.STALLED, collector.checkHealth());
+        assertEquals(0, registrations[0]);
+        clock[0] += 10 * SECOND_NS;
+        assertEquals(SensorHealthMonitor.Status.STALLED, collector.checkHealth());
+        assertEquals(1, registrations[0]);
+        assertEquals(1, collector.getRegistrationRestartCount());
+
+        // Backed off for a minute even though it is still stalled
+        clock[0] += 10 * SECOND_NS;
+        collector.checkHealth();
+        clock[0] += 10 * SECOND_NS;
+        collector.checkHealth();
+        assertEquals(1, registrations[0]);
+        collector.stopCollection();
+    }
+
+    private static long deliver(SensorHealthMonitor monitor, long start, int samples, long periodNs,
+                                boolean withGyroscope) {
+        long t = start;
+        for (int i = 0; i < samples; i++) {
+            t += periodNs;
+            monitor.onSample(Sensor.TYPE_ACCELEROMETER, t);
+            if (withGyroscope) {
+                monitor.onSample(Sensor.TYPE_GYROSCOPE, t + 1000000L);
+            }
+        }
+        return t;
+    }
+}
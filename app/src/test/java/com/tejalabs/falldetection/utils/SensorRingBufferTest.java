@@ -0,0 +1,34 @@
+package com.tejalabs.falldetection.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks bulk reads from the ring buffer, including runs that wrap around its end
+ */
+public class SensorRingBufferTest {
+
+    @Test
+    public void copiesInterleavedValuesAcrossTheWrap() {
+        SensorRingBuffer buffer = new SensorRingBuffer(8);
+        for (int i = 0; i < 13; i++) {
+            buffer.append(i, i, i + 0.1f, i + 0.2f);
+        }
+
+        // Samples 5..12 are held, 8..12 sit at the start of the array
+        SensorRingBuffer.Slice slice = buffer.newSlice();
+        slice.setEndingAt(buffer.getNextSequence(), 8);
+        float[] target = new float[3 + 6 * 3];
+        slice.copyValues(1, 6, target, 3);
+
+        assertEquals(0.0f, target[0], 0.0f);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(slice.x(1 + i), target[3 + i * 3], 0.0f);
+            assertEquals(slice.y(1 + i), target[4 + i * 3], 0.0f);
+            assertEquals(slice.z(1 + i), target[5 + i * 3], 0.0f);
+        }
+        assertEquals(6.0f, target[3], 0.0f);
+        assertEquals(11.2f, target[20], 0.0001f);
+    }
+}
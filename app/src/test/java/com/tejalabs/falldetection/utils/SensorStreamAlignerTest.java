@@ -0,0 +1,64 @@
+package com.tejalabs.falldetection.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks resampling a secondary stream onto accelerometer sequence numbers, and that
+ * re-registering the sensors does not interpolate across the gap
+ */
+public class SensorStreamAlignerTest {
+
+    @Test
+    public void interpolatesBetweenSecondarySamples() {
+        SensorRingBuffer primary = new SensorRingBuffer(16);
+        SensorStreamAligner aligner = new SensorStreamAligner(primary, 16);
+        for (int t = 0; t < 5; t++) {
+            primary.append(t, 0.0f, 0.0f, 0.0f);
+        }
+        aligner.addSample(0, 0.0f, 0.0f, 0.0f);
+        aligner.addSample(4, 4.0f, 8.0f, -4.0f);
+
+        SensorRingBuffer aligned = aligner.getAlignedBuffer();
+        assertEquals(5, aligned.getNextSequence());
+        for (int seq = 0; seq < 5; seq++) {
+            assertEquals(seq, aligned.getX(seq), 0.0001f);
+            assertEquals(2.0f * seq, aligned.getY(seq), 0.0001f);
+        }
+
+        // Newer primary samples hold the latest value once alignment is forced
+        primary.append(5, 0.0f, 0.0f, 0.0f);
+        aligner.alignUpTo(primary.getNextSequence());
+        assertEquals(4.0f, aligned.getX(5), 0.0f);
+    }
+
+    @Test
+    public void doesNotInterpolateAcrossReregistration() {
+        SensorRingBuffer primary = new SensorRingBuffer(16);
+        SensorStreamAligner aligner = new SensorStreamAligner(primary, 16);
+        for (int t = 0; t < 7; t++) {
+            primary.append(t, 0.0f, 0.0f, 0.0f);
+        }
+        aligner.addSample(0, 0.0f, 0.0f, 0.0f);
+        aligner.addSample(4, 4.0f, 0.0f, 0.0f);
+
+        // Sensors unregistered after t = 6 and delivering again from t = 20
+        aligner.restart();
+        for (int t = 20; t < 24; t++) {
+            primary.append(t, 0.0f, 0.0f, 0.0f);
+        }
+        aligner.addSample(22, 100.0f, 0.0f, 0.0f);
+        aligner.alignUpTo(primary.getNextSequence());
+
+        SensorRingBuffer aligned = aligner.getAlignedBuffer();
+        assertEquals(primary.getNextSequence(), aligned.getNextSequence());
+        // Before the gap: the last value from before it
+        assertEquals(4.0f, aligned.getX(5), 0.0f);
+        assertEquals(4.0f, aligned.getX(6), 0.0f);
+        // After the gap: the first value after it, never a ramp from 4 to 100
+        for (long seq = 7; seq < 11; seq++) {
+            assertEquals(100.0f, aligned.getX(seq), 0.0f);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.tejalabs.falldetection.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the sliding spectrum against known tones, across resyncs and on long windows
+ */
+public class SlidingDftTest {
+
+    private static final float RATE_HZ = 50.0f;
+
+    @Test
+    public void findsToneOnTopOfGravity() {
+        SlidingDft spectrum = new SlidingDft(50, 1);
+        assertEquals(25, spectrum.getBinCount());
+
+        // Long enough to cross several resyncs
+        for (int i = 0; i < 10000; i++) {
+            spectrum.add(9.81f + 2.0f * (float) Math.sin(2 * Math.PI * 12.0 * i / RATE_HZ));
+        }
+        assertEquals(12.0f, spectrum.getDominantFrequency(RATE_HZ), 0.001f);
+        // A² / 2, and the constant part counts for nothing
+        assertEquals(2.0f, spectrum.getBandPower(8.0f, Float.MAX_VALUE, RATE_HZ), 0.01f);
+        assertEquals(0.0f, spectrum.getBandPower(0.5f, 8.0f, RATE_HZ), 0.01f);
+    }
+
+    @Test
+    public void tracksEveryBinOfLongWindows() {
+        // From 0.5Hz up to Nyquist at 0.1Hz resolution
+        SlidingDft spectrum = new SlidingDft(500, 5);
+        assertEquals(246, spectrum.getBinCount());
+        assertEquals(0.5f, spectrum.getFrequency(0, RATE_HZ), 0.001f);
+        assertEquals(25.0f, spectrum.getFrequency(245, RATE_HZ), 0.001f);
+
+        // A walking cadence that falls between whole hertz
+        for (int i = 0; i < 500; i++) {
+            spectrum.add(9.81f + (float) Math.sin(2 * Math.PI * 1.8 * i / RATE_HZ));
+        }
+        assertEquals(1.8f, spectrum.getDominantFrequency(RATE_HZ), 0.001f);
+        assertEquals(0.5f, spectrum.getBandPower(0.5f, 3.0f, RATE_HZ), 0.01f);
+        assertEquals(0.0f, spectrum.getBandPower(3.0f, Float.MAX_VALUE, RATE_HZ), 0.01f);
+    }
+
+    @Test
+    public void forgetsValuesThatLeftTheWindow() {
+        SlidingDft spectrum = new SlidingDft(50, 1);
+        for (int i = 0; i < 50; i++) {
+            spectrum.add((float) Math.sin(2 * Math.PI * 20.0 * i / RATE_HZ));
+        }
+        for (int i = 0; i < 50; i++) {
+            spectrum.add(9.81f);
+        }
+        assertEquals(0.0f, spectrum.getBandPower(0.0f, Float.MAX_VALUE, RATE_HZ), 0.0001f);
+
+        spectrum.clear();
+        assertEquals(0.0f, spectrum.getDominantFrequency(RATE_HZ), 0.0f);
+        assertFalse(spectrum.isFull());
+    }
+}
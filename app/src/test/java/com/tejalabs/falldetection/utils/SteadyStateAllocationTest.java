@@ -0,0 +1,102 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Guards the allocation-free steady state of the monitoring path: storing samples,
+ * windowing, statistics and rule-based detection must not allocate per window
+ */
+public class SteadyStateAllocationTest {
+
+    private static final int WARM_UP_WINDOWS = 20000;
+    private static final int MEASURED_WINDOWS = 20000;
+    private static final int SAMPLES_PER_WINDOW = 25;
+
+    // Slack for the measurement itself
+    private static final long ALLOWED_BYTES = 4096;
+
+    private float[] samples;
+    private SensorDataCollector collector;
+    private TinyMLProcessor processor;
+    private long timestampNs = 0;
+    private int position = 0;
+    private int windows = 0;
+    private int falls = 0;
+
+    @Test
+    public void monitoringDoesNotAllocatePerWindow() {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        // Samples are generated up front so only the pipeline runs while measuring
+        samples = generate(60 * 60 * 50);
+        processor = new TinyMLProcessor(SharedPreferencesManager.DEFAULT_SENSITIVITY_LEVEL);
+        collector = new SensorDataCollector(new ManualSensorSource());
+        collector.setAnalysisExecutor(Runnable::run);
+        collector.setCascadeEnabled(false); // Every window reaches the detector
+        collector.setDataListener(new SensorDataCollector.SensorDataListener() {
+            @Override
+            public void onDataProcessed(SensorDataCollector.SensorDataWindow dataWindow) {
+                windows++;
+                TinyMLProcessor.FallDetectionResult result = processor.processSensorData(dataWindow);
+                if (result.isFall) {
+                    falls++;
+                }
+                result.recycle();
+            }
+
+            @Override
+            public void onFallDetected(float confidence) {
+            }
+        });
+        assertTrue(collector.startCollection());
+
+        feedWindows(WARM_UP_WINDOWS);
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        feedWindows(MEASURED_WINDOWS);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        collector.stopCollection();
+        assertTrue("detector never saw a fall", falls > 0);
+        assertTrue("allocated " + allocated + " bytes", allocated <= ALLOWED_BYTES);
+    }
+
+    private void feedWindows(int count) {
+        int target = windows + count;
+        while (windows < target) {
+            int offset = position * 3;
+            collector.onSensorSample(Sensor.TYPE_ACCELEROMETER, timestampNs,
+                samples[offset], samples[offset + 1], samples[offset + 2]);
+            collector.onBatchComplete();
+            timestampNs += 20000000L;
+            position = (position + 1) % (samples.length / 3);
+        }
+    }
+
+    private static float[] generate(int count) {
+        SyntheticTraceGenerator generator = new SyntheticTraceGenerator.Builder()
+            .randomActivities(0.2)
+            .noise(0.2f)
+            .seed(3)
+            .build();
+        float[] values = new float[count * 3];
+        float[] accelerometer = new float[3];
+        float[] gyroscope = new float[3];
+        for (int i = 0; i < count; i++) {
+            generator.sample(i * 20000000L, accelerometer, gyroscope);
+            System.arraycopy(accelerometer, 0, values, i * 3, 3);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,154 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the streamed window features, spectrum included, with direct passes over
+ * every window for window sizes of 1, 5 and 20 seconds (the longest window the
+ * collector takes)
+ */
+public class StreamedFeaturesTest {
+
+    private static final long PERIOD_NS = 20000000L; // 50Hz
+    private static final int WINDOWS = 40;
+
+    @Test
+    public void streamedFeaturesMatchPerWindowPasses() {
+        for (int size : new int[]{50, 250, 1000}) {
+            compare(size);
+        }
+    }
+
+    private void compare(final int size) {
+        final int hop = size / 2;
+        final int[] windows = new int[1];
+
+        SensorDataCollector collector = new SensorDataCollector(new ManualSensorSource());
+        collector.setWindowSpec(new WindowSpec("streamed", size, hop));
+        collector.setCascadeEnabled(false);
+        collector.setAdaptiveSamplingEnabled(false);
+        collector.setAnalysisExecutor(Runnable::run);
+        collector.setDataListener(new SensorDataCollector.SensorDataListener() {
+            @Override
+            public void onDataProcessed(SensorDataCollector.SensorDataWindow window) {
+                float[] reference = perWindowPasses(window);
+                windows[0]++;
+
+                float[] streamed = window.features;
+                assertEquals(reference[0], streamed[SensorDataCollector.SensorDataWindow.FEATURE_MAGNITUDE_MEAN],
+                    0.001f);
+                assertEquals(reference[1], streamed[SensorDataCollector.SensorDataWindow.FEATURE_MAGNITUDE_STD],
+                    0.001f);
+                assertEquals(reference[2], streamed[SensorDataCollector.SensorDataWindow.FEATURE_MAGNITUDE_MAX],
+                    0.0f);
+                assertEquals(reference[3], streamed[SensorDataCollector.SensorDataWindow.FEATURE_MAGNITUDE_MIN],
+                    0.0f);
+                assertEquals(reference[4], streamed[SensorDataCollector.SensorDataWindow.FEATURE_MAX_JERK],
+                    0.0001f);
+                assertEquals(reference[5], streamed[SensorDataCollector.SensorDataWindow.FEATURE_DOMINANT_FREQUENCY],
+                    0.01f);
+                for (int band = 0; band < 3; band++) {
+                    assertEquals(reference[6 + band],
+                        streamed[SensorDataCollector.SensorDataWindow.FEATURE_BAND_POWER_LOW + band],
+                        0.001f + 0.001f * reference[6 + band]);
+                }
+            }
+
+            @Override
+            public void onFallDetected(float confidence) {
+            }
+        });
+        assertTrue(collector.startCollection());
+
+        // Walking-like motion with noise
+        Random random = new Random(size);
+        int samples = size + hop * (WINDOWS - 1);
+        for (int i = 0; i < samples; i++) {
+            float phase = (float) (2 * Math.PI * 1.8 * i / 50.0);
+            float x = 0.8f * (float) Math.sin(phase) + 0.3f * (float) random.nextGaussian();
+            float y = 0.3f * (float) random.nextGaussian();
+            float z = 9.81f + 2.5f * (float) Math.sin(2 * phase) + 0.3f * (float) random.nextGaussian();
+            collector.onSensorSample(Sensor.TYPE_ACCELEROMETER, i * PERIOD_NS, x, y, z);
+            collector.onBatchComplete();
+        }
+        collector.stopCollection();
+
+        assertEquals(WINDOWS, windows[0]);
+    }
+
+    /**
+     * Magnitude mean, standard deviation, max, min, largest step, dominant frequency and
+     * band powers, one pass per feature (and per DFT bin) like an extractor without
+     * streaming statistics
+     */
+    private static float[] perWindowPasses(SensorDataCollector.SensorDataWindow window) {
+        int n = window.size();
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += magnitude(window, i);
+        }
+        float mean = (float) (sum / n);
+
+        double squares = 0;
+        for (int i = 0; i < n; i++) {
+            float d = magnitude(window, i) - mean;
+            squares += d * d;
+        }
+
+        float max = -Float.MAX_VALUE;
+        float min = Float.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            max = Math.max(max, magnitude(window, i));
+            min = Math.min(min, magnitude(window, i));
+        }
+
+        float jerk = 0.0f;
+        for (int i = 1; i < n; i++) {
+            jerk = Math.max(jerk, Math.abs(magnitude(window, i) - magnitude(window, i - 1)));
+        }
+
+        // The same bins the collector tracks, every one from 0.5Hz up to Nyquist
+        float rate = window.getSampleRateHz();
+        int first = Math.max(1, (int) Math.ceil(SensorDataCollector.SensorDataWindow.BAND_LOW_MIN_HZ * n / 50.0f));
+        float dominant = 0.0f;
+        float strongest = 0.0f;
+        float[] bands = new float[3];
+        for (int k = first; k <= n / 2; k++) {
+            double re = 0;
+            double im = 0;
+            for (int i = 0; i < n; i++) {
+                double angle = -2 * Math.PI * k * i / n;
+                re += magnitude(window, i) * Math.cos(angle);
+                im += magnitude(window, i) * Math.sin(angle);
+            }
+            float power = (float) (2 * (re * re + im * im) / ((double) n * n));
+            float frequency = k * rate / n;
+            if (power > strongest) {
+                strongest = power;
+                dominant = frequency;
+            }
+            if (frequency >= SensorDataCollector.SensorDataWindow.BAND_HIGH_MIN_HZ) {
+                bands[2] += power;
+            } else if (frequency >= SensorDataCollector.SensorDataWindow.BAND_MID_MIN_HZ) {
+                bands[1] += power;
+            } else if (frequency >= SensorDataCollector.SensorDataWindow.BAND_LOW_MIN_HZ) {
+                bands[0] += power;
+            }
+        }
+        return new float[]{mean, (float) Math.sqrt(squares / n), max, min, jerk, dominant,
+            bands[0], bands[1], bands[2]};
+    }
+
+    private static float magnitude(SensorDataCollector.SensorDataWindow window, int i) {
+        float x = window.x(i);
+        float y = window.y(i);
+        float z = window.z(i);
+        return (float) Math.sqrt(x * x + y * y + z * z);
+    }
+}
@@ -0,0 +1,108 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import java.util.Random;
+
+/**
+ * Generates accelerometer and gyroscope samples from a signal model
+ * Samples are computed on the fly, so arbitrarily long runs need no memory. The
+ * sampling period follows the collector, including adaptive rate switches.
+ */
+public class SyntheticSensorSource extends PlaybackSensorSource {
+
+    /**
+     * Signal as a function of time
+     */
+    public interface SignalModel {
+        /**
+         * Fill the accelerometer (m/s²) and gyroscope (rad/s) values at {@code timeNs}
+         */
+        void sample(long timeNs, float[] accelerometer, float[] gyroscope);
+    }
+
+    private static final float GRAVITY = 9.81f;
+
+    private final SignalModel model;
+    private final long durationNs;
+
+    private volatile long samplingPeriodNs;
+    private long timeNs;
+    private boolean gyroscopePending = false;
+    private final float[] accelerometer = new float[3];
+    private final float[] gyroscope = new float[3];
+
+    /**
+     * @param durationNs length of the generated signal, 0 or less to run until stopped
+     */
+    public SyntheticSensorSource(SignalModel model, long durationNs, Speed speed) {
+        super(speed);
+        this.model = model;
+        this.durationNs = durationNs;
+    }
+
+    /**
+     * A phone lying still, flat on its back, with Gaussian sensor noise
+     */
+    public static SignalModel stationary(final float noise, long seed) {
+        final Random random = new Random(seed);
+        return (timeNs, accelerometer, gyroscope) -> {
+            accelerometer[0] = (float) random.nextGaussian() * noise;
+            accelerometer[1] = (float) random.nextGaussian() * noise;
+            accelerometer[2] = GRAVITY + (float) random.nextGaussian() * noise;
+            gyroscope[0] = (float) random.nextGaussian() * noise * 0.1f;
+            gyroscope[1] = (float) random.nextGaussian() * noise * 0.1f;
+            gyroscope[2] = (float) random.nextGaussian() * noise * 0.1f;
+        };
+    }
+
+    @Override
+    protected void onPlaybackStart(int samplingPeriodUs) {
+        setSamplingPeriod(samplingPeriodUs);
+        timeNs = 0;
+        gyroscopePending = false;
+    }
+
+    @Override
+    protected boolean nextSample(Sample out) {
+        // Each instant yields an accelerometer sample followed by a gyroscope sample
+        if (gyroscopePending) {
+            gyroscopePending = false;
+            fill(out, Sensor.TYPE_GYROSCOPE, gyroscope);
+            timeNs += samplingPeriodNs;
+            return true;
+        }
+
+        if (durationNs > 0 && timeNs >= durationNs) {
+            return false;
+        }
+
+        model.sample(timeNs, accelerometer, gyroscope);
+        fill(out, Sensor.TYPE_ACCELEROMETER, accelerometer);
+        gyroscopePending = true;
+        return true;
+    }
+
+    private void fill(Sample out, int sensorType, float[] values) {
+        out.sensorType = sensorType;
+        out.timestampNs = timeNs;
+        out.x = values[0];
+        out.y = values[1];
+        out.z = values[2];
+    }
+
+    @Override
+    public boolean hasSensor(int sensorType) {
+        return sensorType == Sensor.TYPE_ACCELEROMETER || sensorType == Sensor.TYPE_GYROSCOPE;
+    }
+
+    @Override
+    public void setSamplingPeriod(int samplingPeriodUs) {
+        this.samplingPeriodNs = Math.max(1, samplingPeriodUs) * 1000L;
+    }
+
+    @Override
+    public String getName() {
+        return "synthetic";
+    }
+}
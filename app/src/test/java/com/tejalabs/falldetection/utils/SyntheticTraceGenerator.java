@@ -0,0 +1,413 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthesises accelerometer and gyroscope signals for falls and activities of daily living
+ *
+ * The signal is a sequence of activity segments. A scripted sequence is played first;
+ * after it the generator either stops (the signal holds still) or keeps drawing random
+ * activities, which allows runs of any length. Amplitudes, step rates and timing are
+ * drawn per segment from a seeded generator, so a seed reproduces the same trace at
+ * a given sampling rate.
+ *
+ * Device frame: upright in a trouser pocket gravity is on +y, lying on the back after
+ * a fall it is on +x, and flat on the floor after a drop it is on +z.
+ */
+public class SyntheticTraceGenerator implements SyntheticSensorSource.SignalModel {
+
+    public enum Activity {
+        STILL(5000),
+        WALKING(10000),
+        STAIRS(8000),
+        SITTING_DOWN_HARD(4000),
+        PHONE_DROP(4000),
+        FALL(6000);
+
+        public final long defaultDurationMs;
+
+        Activity(long defaultDurationMs) {
+            this.defaultDurationMs = defaultDurationMs;
+        }
+
+        public boolean isFall() {
+            return this == FALL;
+        }
+    }
+
+    /**
+     * One activity in the generated signal, times in signal nanoseconds
+     */
+    public static class Segment {
+        public final Activity activity;
+        public final long startNs;
+        public final long durationNs;
+
+        Segment(Activity activity, long startNs, long durationNs) {
+            this.activity = activity;
+            this.startNs = startNs;
+            this.durationNs = durationNs;
+        }
+
+        public long getEndNs() {
+            return startNs + durationNs;
+        }
+
+        @Override
+        public String toString() {
+            return activity + "@" + (startNs / 1000000) + "ms";
+        }
+    }
+
+    private static final float GRAVITY = 9.81f;
+    private static final long NS_PER_MS = 1000000L;
+
+    // Segments kept for ground-truth lookups in endless runs
+    private static final int SEGMENT_HISTORY = 256;
+
+    // Postures as gravity directions in the device frame
+    private static final float[] UPRIGHT = {0.0f, 1.0f, 0.0f};
+    private static final float[] LYING = {1.0f, 0.0f, 0.0f};
+    private static final float[] FLAT = {0.0f, 0.0f, 1.0f};
+    private static final float[] SITTING = {0.0f, 0.5f, 0.866f};
+
+    private final List<Activity> script;
+    private final List<Long> scriptDurationsMs;
+    private final boolean randomAfterScript;
+    private final double fallProbability;
+    private final float noise;
+    private final Random parameters;
+    private final Random noiseSource;
+
+    // Current segment and its randomised parameters
+    private int scriptIndex = 0;
+    private Segment segment;
+    private final ArrayDeque<Segment> history = new ArrayDeque<>();
+    private final float[] startPosture = UPRIGHT.clone();
+    private final float[] endPosture = UPRIGHT.clone();
+    private float amplitude;
+    private float frequency;
+    private float eventTimeS;
+    private float eventLengthS;
+    private float peak;
+    private long fallCount = 0;
+
+    private SyntheticTraceGenerator(Builder builder) {
+        this.script = new ArrayList<>(builder.script);
+        this.scriptDurationsMs = new ArrayList<>(builder.durationsMs);
+        this.randomAfterScript = builder.randomAfterScript;
+        this.fallProbability = builder.fallProbability;
+        this.noise = builder.noise;
+        this.parameters = new Random(builder.seed);
+        this.noiseSource = new Random(builder.seed ^ 0x5DEECE66DL);
+    }
+
+    public static class Builder {
+        private final List<Activity> script = new ArrayList<>();
+        private final List<Long> durationsMs = new ArrayList<>();
+        private boolean randomAfterScript = false;
+        private double fallProbability = 0.0;
+        private float noise = 0.1f;
+        private long seed = 1;
+
+        /**
+         * Append an activity to the script, with its default duration
+         */
+        public Builder then(Activity activity) {
+            return then(activity, activity.defaultDurationMs);
+        }
+
+        public Builder then(Activity activity, long durationMs) {
+            script.add(activity);
+            durationsMs.add(durationMs);
+            return this;
+        }
+
+        /**
+         * After the script, keep generating random activities. Each is a fall with the
+         * given probability, otherwise an activity of daily living.
+         */
+        public Builder randomActivities(double fallProbability) {
+            this.randomAfterScript = true;
+            this.fallProbability = fallProbability;
+            return this;
+        }
+
+        /**
+         * Standard deviation of the accelerometer noise (m/s²). Gyroscope noise is a tenth of it.
+         */
+        public Builder noise(float noise) {
+            this.noise = noise;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SyntheticTraceGenerator build() {
+            return new SyntheticTraceGenerator(this);
+        }
+    }
+
+    @Override
+    public void sample(long timeNs, float[] accelerometer, float[] gyroscope) {
+        while (segment == null || timeNs >= segment.getEndNs()) {
+            startNextSegment(segment == null ? 0 : segment.getEndNs());
+        }
+
+        float t = (timeNs - segment.startNs) / 1e9f;
+
+        // Start from the posture, rotating towards the end posture where the activity changes it
+        float transition = postureTransition(segment.activity, t);
+        float gx = lerp(startPosture[0], endPosture[0], transition);
+        float gy = lerp(startPosture[1], endPosture[1], transition);
+        float gz = lerp(startPosture[2], endPosture[2], transition);
+        float norm = (float) Math.sqrt(gx * gx + gy * gy + gz * gz);
+        gx /= norm;
+        gy /= norm;
+        gz /= norm;
+
+        // Magnitude scale along gravity, plus lateral and rotational components
+        float scale = 1.0f;
+        float lateral = 0.0f;
+        float rotation = 0.0f;
+
+        switch (segment.activity) {
+            case STILL:
+                break;
+
+            case WALKING:
+            case STAIRS: {
+                double phase = 2.0 * Math.PI * frequency * t;
+                // Sharpened step impacts: heel strikes are brief peaks, not a sine
+                float step = (float) Math.pow(0.5 + 0.5 * Math.sin(phase), 3.0) * 2.0f - 0.5f;
+                scale = 1.0f + amplitude * step / GRAVITY;
+                lateral = 0.3f * amplitude * (float) Math.sin(phase / 2.0);
+                rotation = 0.4f * (float) Math.cos(phase / 2.0);
+                break;
+            }
+
+            case SITTING_DOWN_HARD:
+                if (t < eventTimeS && t > eventTimeS - eventLengthS) {
+                    scale = 0.6f; // lowering the body
+                }
+                scale += pulse(t, eventTimeS, 0.04f, peak / GRAVITY - 1.0f);
+                rotation = t < eventTimeS + 0.2f && t > eventTimeS - eventLengthS ? 1.5f : 0.0f;
+                break;
+
+            case PHONE_DROP:
+                if (t > eventTimeS - eventLengthS && t < eventTimeS) {
+                    scale = 0.03f; // free fall
+                    rotation = amplitude;
+                }
+                scale += pulse(t, eventTimeS, 0.012f, peak / GRAVITY)
+                    + pulse(t, eventTimeS + 0.12f, 0.01f, 0.3f * peak / GRAVITY); // bounce
+                break;
+
+            case FALL:
+                if (t > eventTimeS - eventLengthS - 0.3f && t <= eventTimeS - eventLengthS) {
+                    // Stumble before losing balance
+                    scale = 1.0f + 0.4f * (float) Math.sin(2.0 * Math.PI * 4.0 * t);
+                    rotation = 1.0f;
+                } else if (t > eventTimeS - eventLengthS && t < eventTimeS) {
+                    scale = 0.15f; // near free fall
+                    rotation = amplitude;
+                }
+                scale += pulse(t, eventTimeS, 0.03f, peak / GRAVITY)
+                    + dampedOscillation(t - eventTimeS, 0.3f * peak / GRAVITY);
+                break;
+        }
+
+        accelerometer[0] = GRAVITY * scale * gx + lateral * gy + gaussian(noise);
+        accelerometer[1] = GRAVITY * scale * gy - lateral * gx + gaussian(noise);
+        accelerometer[2] = GRAVITY * scale * gz + gaussian(noise);
+        gyroscope[0] = rotation * 0.2f + gaussian(noise * 0.1f);
+        gyroscope[1] = rotation * 0.3f + gaussian(noise * 0.1f);
+        gyroscope[2] = rotation + gaussian(noise * 0.1f);
+    }
+
+    /**
+     * Move to the next segment starting at {@code startNs}
+     */
+    private void startNextSegment(long startNs) {
+        Activity activity;
+        long durationMs;
+        if (scriptIndex < script.size()) {
+            activity = script.get(scriptIndex);
+            durationMs = scriptDurationsMs.get(scriptIndex);
+            scriptIndex++;
+        } else if (randomAfterScript) {
+            activity = randomActivity();
+            durationMs = activity.defaultDurationMs;
+        } else {
+            // Script finished: hold still from here on
+            activity = Activity.STILL;
+            durationMs = Long.MAX_VALUE / NS_PER_MS / 4;
+        }
+
+        System.arraycopy(endPosture, 0, startPosture, 0, 3);
+        segment = new Segment(activity, startNs, durationMs * NS_PER_MS);
+        history.addLast(segment);
+        if (history.size() > SEGMENT_HISTORY) {
+            history.removeFirst();
+        }
+        randomiseParameters(activity);
+    }
+
+    private Activity randomActivity() {
+        if (parameters.nextDouble() < fallProbability) {
+            return Activity.FALL;
+        }
+        // Falls and drops leave the phone lying down, so stand up first
+        if (endPosture[1] < 0.9f) {
+            return Activity.WALKING;
+        }
+        Activity[] adl = {Activity.STILL, Activity.WALKING, Activity.STAIRS,
+            Activity.SITTING_DOWN_HARD, Activity.PHONE_DROP};
+        return adl[parameters.nextInt(adl.length)];
+    }
+
+    private void randomiseParameters(Activity activity) {
+        float[] target = startPosture;
+        switch (activity) {
+            case STILL:
+                break;
+            case WALKING:
+                amplitude = uniform(2.5f, 3.5f);
+                frequency = uniform(1.7f, 2.2f);
+                target = UPRIGHT;
+                break;
+            case STAIRS:
+                amplitude = uniform(4.0f, 5.0f);
+                frequency = uniform(1.3f, 1.7f);
+                target = UPRIGHT;
+                break;
+            case SITTING_DOWN_HARD:
+                eventTimeS = uniform(0.8f, 1.2f);
+                eventLengthS = uniform(0.4f, 0.6f);
+                peak = uniform(16.0f, 22.0f);
+                target = SITTING;
+                break;
+            case PHONE_DROP:
+                eventTimeS = uniform(0.8f, 1.2f);
+                eventLengthS = uniform(0.3f, 0.45f); // about 0.5 to 1m
+                peak = uniform(35.0f, 70.0f);
+                amplitude = uniform(2.0f, 6.0f);
+                target = FLAT;
+                break;
+            case FALL:
+                eventTimeS = uniform(1.0f, 1.5f);
+                eventLengthS = uniform(0.3f, 0.5f);
+                peak = uniform(28.0f, 40.0f);
+                amplitude = uniform(3.0f, 5.0f);
+                target = LYING;
+                fallCount++;
+                break;
+        }
+        System.arraycopy(target, 0, endPosture, 0, 3);
+    }
+
+    /**
+     * Progress (0-1) of the posture change within the segment
+     */
+    private float postureTransition(Activity activity, float t) {
+        switch (activity) {
+            case WALKING:
+            case STAIRS:
+                return Math.min(1.0f, t / 1.0f); // Stand up during the first second
+            case SITTING_DOWN_HARD:
+            case PHONE_DROP:
+            case FALL:
+                float start = eventTimeS - eventLengthS;
+                if (t <= start) return 0.0f;
+                if (t >= eventTimeS) return 1.0f;
+                return (t - start) / eventLengthS;
+            default:
+                return 1.0f;
+        }
+    }
+
+    private static float pulse(float t, float center, float width, float height) {
+        float d = (t - center) / width;
+        return d > 4.0f || d < -4.0f ? 0.0f : height * (float) Math.exp(-0.5f * d * d);
+    }
+
+    private static float dampedOscillation(float t, float height) {
+        if (t <= 0.05f || t > 1.0f) return 0.0f;
+        return height * (float) (Math.exp(-6.0 * t) * Math.sin(2.0 * Math.PI * 6.0 * t));
+    }
+
+    private float gaussian(float deviation) {
+        return deviation == 0.0f ? 0.0f : (float) noiseSource.nextGaussian() * deviation;
+    }
+
+    private float uniform(float min, float max) {
+        return min + parameters.nextFloat() * (max - min);
+    }
+
+    private static float lerp(float a, float b, float f) {
+        return a + (b - a) * f;
+    }
+
+    /**
+     * Activity at the given signal time, or null if it is older than the kept history
+     */
+    public Activity getActivityAt(long timeNs) {
+        Iterator<Segment> segments = history.descendingIterator();
+        while (segments.hasNext()) {
+            Segment s = segments.next();
+            if (timeNs >= s.startNs) {
+                return timeNs < s.getEndNs() ? s.activity : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Most recent segments, oldest first
+     */
+    public List<Segment> getRecentSegments() {
+        return new ArrayList<>(history);
+    }
+
+    /**
+     * Number of falls generated so far
+     */
+    public long getFallCount() {
+        return fallCount;
+    }
+
+    /**
+     * Write {@code durationMs} of the signal as a replay trace at {@code rateHz}
+     * (see {@link ReplaySensorSource} for the format)
+     */
+    public void writeTrace(Writer out, int rateHz, long durationMs) throws IOException {
+        float[] accelerometer = new float[3];
+        float[] gyroscope = new float[3];
+        long periodNs = 1000000000L / rateHz;
+        long endNs = durationMs * NS_PER_MS;
+
+        out.write("timestamp_ns,sensor,x,y,z\n");
+        for (long t = 0; t < endNs; t += periodNs) {
+            sample(t, accelerometer, gyroscope);
+            writeLine(out, t, Sensor.TYPE_ACCELEROMETER, accelerometer);
+            writeLine(out, t, Sensor.TYPE_GYROSCOPE, gyroscope);
+        }
+        out.flush();
+    }
+
+    private static void writeLine(Writer out, long timestampNs, int sensorType, float[] values) throws IOException {
+        out.write(timestampNs + "," + (sensorType == Sensor.TYPE_ACCELEROMETER ? "accelerometer" : "gyroscope")
+            + "," + values[0] + "," + values[1] + "," + values[2] + "\n");
+    }
+}
@@ -0,0 +1,147 @@
+package com.tejalabs.falldetection.utils;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that generated traces have the shape of the activities they model
+ */
+public class SyntheticTraceGeneratorTest {
+
+    private static final long PERIOD_NS = 20000000L; // 50Hz
+
+    @Test
+    public void sameSeedGivesSameTrace() {
+        SyntheticTraceGenerator first = generator(SyntheticTraceGenerator.Activity.FALL, 42);
+        SyntheticTraceGenerator second = generator(SyntheticTraceGenerator.Activity.FALL, 42);
+        float[] a1 = new float[3], g1 = new float[3], a2 = new float[3], g2 = new float[3];
+
+        for (long t = 0; t < 10000000000L; t += PERIOD_NS) {
+            first.sample(t, a1, g1);
+            second.sample(t, a2, g2);
+            assertArrayEquals(a1, a2, 0.0f);
+            assertArrayEquals(g1, g2, 0.0f);
+        }
+    }
+
+    @Test
+    public void fallHasFreeFallImpactAndStillness() {
+        for (int seed = 0; seed < 10; seed++) {
+            MagnitudeRange range = measure(generator(SyntheticTraceGenerator.Activity.FALL, seed), 2000, 4000);
+            assertTrue("free fall, min " + range.min, range.min < 4.0f);
+            assertTrue("impact, max " + range.max, range.max > 25.0f);
+
+            // Lying still afterwards, with gravity moved from y to x
+            float[] accelerometer = lastSample(generator(SyntheticTraceGenerator.Activity.FALL, seed), 7500);
+            assertEquals(9.81f, magnitude(accelerometer), 1.0f);
+            assertTrue(Math.abs(accelerometer[0]) > 8.0f);
+        }
+    }
+
+    @Test
+    public void dailyActivitiesStayBelowImpactThreshold() {
+        SyntheticTraceGenerator.Activity[] activities = {
+            SyntheticTraceGenerator.Activity.STILL,
+            SyntheticTraceGenerator.Activity.WALKING,
+            SyntheticTraceGenerator.Activity.STAIRS,
+            SyntheticTraceGenerator.Activity.SITTING_DOWN_HARD
+        };
+        for (SyntheticTraceGenerator.Activity activity : activities) {
+            for (int seed = 0; seed < 10; seed++) {
+                MagnitudeRange range = measure(generator(activity, seed), 2000, 2000 + activity.defaultDurationMs);
+                assertTrue(activity + " max " + range.max, range.max < 25.0f);
+                assertTrue(activity + " min " + range.min, range.min > 4.0f);
+            }
+        }
+    }
+
+    @Test
+    public void reportsActivityAtTime() {
+        SyntheticTraceGenerator generator = generator(SyntheticTraceGenerator.Activity.WALKING, 1);
+        measure(generator, 0, 13000);
+
+        assertEquals(SyntheticTraceGenerator.Activity.STILL, generator.getActivityAt(1000000000L));
+        assertEquals(SyntheticTraceGenerator.Activity.WALKING, generator.getActivityAt(5000000000L));
+        assertEquals(SyntheticTraceGenerator.Activity.STILL, generator.getActivityAt(12500000000L));
+    }
+
+    @Test
+    public void writtenTraceReplaysThroughCollector() throws Exception {
+        StringWriter trace = new StringWriter();
+        generator(SyntheticTraceGenerator.Activity.WALKING, 3).writeTrace(trace, 50, 6000);
+
+        ReplaySensorSource source = ReplaySensorSource.fromCsv("walking", new StringReader(trace.toString()),
+            PlaybackSensorSource.Speed.AS_FAST_AS_POSSIBLE);
+        assertEquals(2 * 300, source.getSampleCount());
+
+        SensorDataCollector collector = new SensorDataCollector(source);
+        final int[] windows = {0};
+        collector.setDataListener(new SensorDataCollector.SensorDataListener() {
+            @Override
+            public void onDataProcessed(SensorDataCollector.SensorDataWindow dataWindow) {
+                windows[0]++;
+                assertEquals(50, dataWindow.size());
+                assertEquals(50.0f, dataWindow.getSampleRateHz(), 0.5f);
+            }
+
+            @Override
+            public void onFallDetected(float confidence) {
+            }
+        });
+        collector.setAnalysisExecutor(Runnable::run);
+        collector.setCascadeEnabled(false);
+
+        assertTrue(collector.startCollection());
+        assertTrue(source.awaitFinished(10000));
+        collector.stopCollection();
+
+        // 300 samples, first window after 50, then one every 25
+        assertEquals(11, windows[0]);
+    }
+
+    private static SyntheticTraceGenerator generator(SyntheticTraceGenerator.Activity activity, long seed) {
+        return new SyntheticTraceGenerator.Builder()
+            .then(SyntheticTraceGenerator.Activity.STILL, 2000)
+            .then(activity)
+            .noise(0.2f)
+            .seed(seed)
+            .build();
+    }
+
+    private static class MagnitudeRange {
+        float min = Float.MAX_VALUE;
+        float max = 0.0f;
+    }
+
+    private static MagnitudeRange measure(SyntheticTraceGenerator generator, long fromMs, long toMs) {
+        MagnitudeRange range = new MagnitudeRange();
+        float[] accelerometer = new float[3];
+        float[] gyroscope = new float[3];
+        for (long t = 0; t < toMs * 1000000L; t += PERIOD_NS) {
+            generator.sample(t, accelerometer, gyroscope);
+            if (t >= fromMs * 1000000L) {
+                float magnitude = magnitude(accelerometer);
+                range.min = Math.min(range.min, magnitude);
+                range.max = Math.max(range.max, magnitude);
+            }
+        }
+        return range;
+    }
+
+    private static float[] lastSample(SyntheticTraceGenerator generator, long atMs) {
+        float[] accelerometer = new float[3];
+        float[] gyroscope = new float[3];
+        for (long t = 0; t <= atMs * 1000000L; t += PERIOD_NS) {
+            generator.sample(t, accelerometer, gyroscope);
+        }
+        return accelerometer;
+    }
+
+    private static float magnitude(float[] v) {
+        return (float) Math.sqrt(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
+    }
+}
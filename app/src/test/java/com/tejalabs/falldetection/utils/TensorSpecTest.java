@@ -0,0 +1,74 @@
+package com.tejalabs.falldetection.utils;
+
+import org.junit.Test;
+import org.tensorflow.lite.DataType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks quantizing inputs and dequantizing outputs of int8 and uint8 models
+ */
+public class TensorSpecTest {
+
+    @Test
+    public void quantizesAndDequantizesInt8() {
+        TensorSpec spec = new TensorSpec(DataType.INT8, new int[]{1, 50, 3}, 1.0f / 128, 0);
+        assertEquals(150, spec.getElements());
+        assertTrue(spec.isQuantized());
+
+        float[] values = {0.0f, 0.5f, -0.5f, -1.0f, 1.0f, 2.0f};
+        ByteBuffer buffer = ByteBuffer.allocateDirect(values.length);
+        spec.write(values, values.length, buffer, null);
+        assertEquals(64, buffer.get(1));
+        assertEquals(-128, buffer.get(3));
+        // Out of range values saturate
+        assertEquals(127, buffer.get(4));
+        assertEquals(127, buffer.get(5));
+
+        float[] read = new float[values.length];
+        spec.read(buffer, null, values.length, read);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(values[i], read[i], 1.0f / 128);
+        }
+    }
+
+    @Test
+    public void quantizesAndDequantizesUint8WithZeroPoint() {
+        TensorSpec spec = new TensorSpec(DataType.UINT8, new int[]{1, 2}, 1.0f / 255, 0);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(2);
+        spec.write(new float[]{0.98f, -0.1f}, 2, buffer, null);
+        assertEquals(250, buffer.get(0) & 0xff);
+        assertEquals(0, buffer.get(1));
+
+        TensorSpec centred = new TensorSpec(DataType.UINT8, new int[]{1, 1}, 0.5f, 128);
+        float[] read = new float[1];
+        centred.read(ByteBuffer.allocateDirect(1).put(0, (byte) 200), null, 1, read);
+        assertEquals(36.0f, read[0], 0.0f);
+    }
+
+    @Test
+    public void rejectsUnsupportedTensors() {
+        try {
+            new TensorSpec(DataType.INT32, new int[]{1, 150}, 0.0f, 0);
+            fail("int32 input accepted");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+        try {
+            new TensorSpec(DataType.INT8, new int[]{1, 150}, 0.0f, 0);
+            fail("int8 tensor without scale accepted");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+        // Float tensors have no quantization
+        TensorSpec floats = new TensorSpec(DataType.FLOAT32, new int[]{1, 2}, 0.0f, 0);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(8).order(ByteOrder.nativeOrder());
+        floats.write(new float[]{0.25f, 0.75f}, 2, buffer, buffer.asFloatBuffer());
+        float[] read = new float[2];
+        floats.read(buffer, buffer.asFloatBuffer(), 2, read);
+        assertEquals(0.75f, read[1], 0.0f);
+    }
+}
@@ -0,0 +1,111 @@
+package com.tejalabs.falldetection.utils;
+
+import android.hardware.Sensor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the hand-off between the sensor and analysis threads when analysis falls behind
+ */
+public class WindowBackPressureTest {
+
+    private static final long PERIOD_NS = 20000000L; // 50Hz
+    private static final float IMPACT = 40.0f;
+
+    private final List<Runnable> deferredAnalysis = new ArrayList<>();
+    private final List<Float> triggeredPeaks = new ArrayList<>();
+    private int untriggeredWindows = 0;
+
+    @Test
+    public void keepsTriggeredWindowsWhileAnalysisIsStalled() throws Exception {
+        SensorDataCollector collector = newCollector();
+        assertTrue(collector.startCollection());
+
+        // 50s of stillness with two impacts while the analysis thread does nothing.
+        // The first impact's samples are overwritten in the collector's buffers long
+        // before analysis resumes.
+        for (int i = 0; i < 2500; i++) {
+            float z = i == 300 || i == 2000 ? IMPACT : 9.81f;
+            collector.onSensorSample(Sensor.TYPE_ACCELEROMETER, i * PERIOD_NS, 0.0f, 0.0f, z);
+            collector.onBatchComplete();
+        }
+        assertTrue(collector.getDroppedWindowCount() > 0);
+        assertEquals(0, collector.getDroppedTriggeredWindowCount());
+        assertTrue(collector.getQueueDepth() <= 16 + 4);
+
+        // Let the queued windows go stale, then resume analysis
+        Thread.sleep(600);
+        runDeferredAnalysis();
+        collector.stopCollection();
+
+        // Each impact falls into two overlapping windows, all four arrive intact
+        assertEquals(4, triggeredPeaks.size());
+        for (float peak : triggeredPeaks) {
+            assertEquals(IMPACT, peak, 0.001f);
+        }
+        // The untriggered windows queued before the stall are stale and coalesced
+        assertEquals(0, untriggeredWindows);
+        assertTrue(collector.getCoalescedWindowCount() > 0);
+        assertEquals(0, collector.getQueueDepth());
+    }
+
+    @Test
+    public void analysesEveryWindowWhenKeepingUp() {
+        SensorDataCollector collector = newCollector();
+        assertTrue(collector.startCollection());
+
+        for (int i = 0; i < 2500; i++) {
+            float z = i == 300 ? IMPACT : 9.81f;
+            collector.onSensorSample(Sensor.TYPE_ACCELEROMETER, i * PERIOD_NS, 0.0f, 0.0f, z);
+            collector.onBatchComplete();
+            runDeferredAnalysis();
+        }
+        collector.stopCollection();
+
+        // 2500 samples, first window after 50, then one every 25
+        assertEquals(99, collector.getWindowsAnalyzed());
+        assertEquals(2, triggeredPeaks.size());
+        assertEquals(97, untriggeredWindows);
+        assertEquals(0, collector.getDroppedWindowCount());
+        assertEquals(0, collector.getCoalescedWindowCount());
+        assertEquals(1, collector.getMaxQueueDepth());
+    }
+
+    private SensorDataCollector newCollector() {
+        SensorDataCollector collector = new SensorDataCollector(new ManualSensorSource());
+        collector.setAnalysisExecutor(deferredAnalysis::add);
+        collector.setCascadeEnabled(false); // Every window is queued
+        collector.setDataListener(new SensorDataCollector.SensorDataListener() {
+            @Override
+            public void onDataProcessed(SensorDataCollector.SensorDataWindow dataWindow) {
+                if (!dataWindow.isTriggered()) {
+                    untriggeredWindows++;
+                    return;
+                }
+                float peak = 0.0f;
+                for (int i = 0; i < dataWindow.size(); i++) {
+                    peak = Math.max(peak, dataWindow.z(i));
+                }
+                assertEquals(50, dataWindow.size());
+                triggeredPeaks.add(peak);
+            }
+
+            @Override
+            public void onFallDetected(float confidence) {
+            }
+        });
+        return collector;
+    }
+
+    private void runDeferredAnalysis() {
+        for (Runnable task : deferredAnalysis) {
+            task.run();
+        }
+        deferredAnalysis.clear();
+    }
+}